@@ -0,0 +1,80 @@
+package org.squidmin.benchmark;
+
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKey;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+
+/**
+ * Shared schema and generated rows for the benchmarks. Rows look like the ones the client reads: three bound
+ * columns with a few versions each, plus unbound columns, and keys in the {@code segmentA#segmentB#segmentC} layout.
+ */
+final class BenchmarkData {
+
+
+    static final String tableId = "benchmark_table";
+    static final String family = "test_col_fam";
+    static final List<String> qualifiers = Arrays.asList("val_1", "val_2", "val_3");
+    static final List<String> unboundQualifiers = Arrays.asList("x_audit", "x_debug");
+
+
+    private BenchmarkData() { }
+
+    static BigtableStructure structure() {
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName(family);
+        mapping.setQualifierNames(new LinkedHashSet<>(qualifiers));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        return btStructure;
+    }
+
+    static DtoExample dto(int i) {
+        return DtoExample.builder()
+            .rowKey(new RowKey("segmentA_" + i, "segmentB", "segmentC_" + i))
+            .fieldA("value_a_" + i)
+            .fieldB("value_b_" + i)
+            .fieldC("value_c_" + i)
+            .build();
+    }
+
+    /**
+     * Rows with {@code versions} versions of each bound column and one of each unbound column. Timestamps grow with
+     * the row index, so the last row is the latest.
+     */
+    static List<Row> rows(int count, int versions) {
+        List<Row> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<RowCell> cells = new ArrayList<>();
+            for (String qualifier : qualifiers) {
+                for (int version = versions; version > 0; version--) {
+                    cells.add(cell(qualifier, 1_000_000L * i + version, "value_" + qualifier + "_" + version));
+                }
+            }
+            for (String qualifier : unboundQualifiers) {
+                cells.add(cell(qualifier, 1_000_000L * i, "unbound"));
+            }
+            rows.add(Row.create(ByteString.copyFromUtf8(dto(i).getRowKey().toString()), cells));
+        }
+        return rows;
+    }
+
+    private static RowCell cell(String qualifier, long timestamp, String value) {
+        return RowCell.create(
+            family, ByteString.copyFromUtf8(qualifier), timestamp, Collections.emptyList(), ByteString.copyFromUtf8(value)
+        );
+    }
+
+
+}
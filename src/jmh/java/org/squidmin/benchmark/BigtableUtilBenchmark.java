@@ -0,0 +1,160 @@
+package org.squidmin.benchmark;
+
+
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.BulkWriterProperties;
+import org.squidmin.config.TransportProperties;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BigtableRowWrapper;
+import org.squidmin.model.DtoExample;
+import org.squidmin.util.BigtableUtil;
+import org.squidmin.util.CompiledSchema;
+import org.squidmin.util.TabularRowRenderer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * The {@link BigtableUtil} helpers on the read and write paths, next to the {@link CompiledSchema} encoders that
+ * replaced some of them.
+ * <p>
+ * {@code echo} logs each row, so the benchmark measures rendering a row into its table text, which is the work
+ * {@code echo} adds on top of the logger.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BigtableUtilBenchmark {
+
+
+    private BigtableClientManager clientManager;
+    private CompiledSchema schema;
+    private TabularRowRenderer renderer;
+    private DtoExample dto;
+    private String rowKey;
+
+
+    /**
+     * The manager is created against an emulator address that is never dialled: none of the measured calls reach
+     * the network.
+     */
+    @Setup(Level.Trial)
+    public void setup() throws IOException, InvalidSchemaException {
+        TransportProperties transportProperties = new TransportProperties();
+        transportProperties.setEmulatorHost("localhost:8086");
+        clientManager = new BigtableClientManager(
+            "project", "instance", BenchmarkData.structure(), new BulkWriterProperties(), transportProperties
+        );
+        schema = clientManager.getCompiledSchema();
+        renderer = new TabularRowRenderer(clientManager.getMaxQualifierLength());
+        dto = BenchmarkData.dto(42);
+        rowKey = dto.getRowKey().toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        clientManager.destroy();
+    }
+
+    @Benchmark
+    public BulkMutation singleRowAsBulkMutation() throws InvalidSchemaException {
+        return BigtableUtil.singleRowAsBulkMutation(BenchmarkData.tableId, clientManager, dto);
+    }
+
+    @Benchmark
+    public RowMutation getRowMutation() throws InvalidSchemaException {
+        return BigtableUtil.getRowMutation(
+            BenchmarkData.tableId, rowKey, schema, BigtableUtil.createValuesList(dto)
+        );
+    }
+
+    @Benchmark
+    public RowMutation compiledSchemaToRowMutation() {
+        return schema.toRowMutation(BenchmarkData.tableId, dto);
+    }
+
+    @Benchmark
+    public BigtableRowWrapper getLatestRow(Rows rows) {
+        return BigtableUtil.getLatestRow(rows.rows);
+    }
+
+    @Benchmark
+    public String echo(EchoedRow echoed) {
+        StringBuilder out = new StringBuilder();
+        renderer.render(echoed.row, out);
+        return out.toString();
+    }
+
+    @Benchmark
+    public List<String> createValuesList() {
+        return BigtableUtil.createValuesList(dto);
+    }
+
+    @Benchmark
+    public String rowKeyToString() {
+        return dto.getRowKey().toString();
+    }
+
+
+    /**
+     * {@code rowCount} rows handed to {@code getLatestRow}, with {@code versions} versions of each column.
+     */
+    @State(Scope.Thread)
+    public static class Rows {
+
+        @Param({"10", "1000"})
+        private int rowCount;
+
+        @Param({"1", "3"})
+        private int versions;
+
+        private List<Row> rows;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            rows = BenchmarkData.rows(rowCount, versions);
+        }
+
+    }
+
+    /**
+     * The row rendered by {@code echo}, with {@code versions} versions of each column.
+     */
+    @State(Scope.Thread)
+    public static class EchoedRow {
+
+        @Param({"1", "3"})
+        private int versions;
+
+        private Row row;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            row = BenchmarkData.rows(1, versions).get(0);
+        }
+
+    }
+
+
+}
@@ -0,0 +1,119 @@
+package org.squidmin.benchmark;
+
+
+import com.google.cloud.bigtable.data.v2.models.DefaultRowAdapter;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowAdapter;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.RowKey;
+import org.squidmin.util.DtoRowAdapter;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+
+/**
+ * Compares decoding read responses into {@link DtoExample} through {@code Row} objects with decoding them directly
+ * through {@link DtoRowAdapter}. Cells are fed to the row builders the way the client's row merger does, so no
+ * server is needed. Each row has two versions of the three bound columns and two unbound columns.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowDecodingBenchmark {
+
+
+    private static final int rows = 1024;
+
+    private final ByteString[] keys = new ByteString[rows];
+    private final ByteString[] boundQualifiers = BenchmarkData.qualifiers.stream()
+        .map(ByteString::copyFromUtf8).toArray(ByteString[]::new);
+    private final ByteString[] otherQualifiers = BenchmarkData.unboundQualifiers.stream()
+        .map(ByteString::copyFromUtf8).toArray(ByteString[]::new);
+    private final ByteString value = ByteString.copyFromUtf8("value_0123456789");
+
+    private RowAdapter.RowBuilder<Row> rowBuilder;
+    private RowAdapter.RowBuilder<DtoExample> dtoBuilder;
+
+
+    @Setup
+    public void setup() throws InvalidSchemaException {
+        for (int i = 0; i < rows; i++) {
+            keys[i] = ByteString.copyFromUtf8(String.format("segmentA_%d#segmentB#segmentC_%d", i, i));
+        }
+        rowBuilder = new DefaultRowAdapter().createRowBuilder();
+        dtoBuilder = DtoRowAdapter.forDtoExample(BenchmarkData.structure()).createRowBuilder();
+    }
+
+    /**
+     * The {@code Row} read path: decode into a {@code Row}, then copy the newest cell of each column out of it.
+     */
+    @Benchmark
+    @OperationsPerInvocation(rows)
+    public void rowThenDto(Blackhole blackhole) {
+        decode(rowBuilder, RowDecodingBenchmark::toDto, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(rows)
+    public void dtoRowAdapter(Blackhole blackhole) {
+        decode(dtoBuilder, Function.identity(), blackhole);
+    }
+
+    private <R> void decode(RowAdapter.RowBuilder<R> builder, Function<R, DtoExample> toDto, Blackhole blackhole) {
+        for (ByteString key : keys) {
+            builder.startRow(key);
+            for (ByteString qualifier : boundQualifiers) {
+                cell(builder, qualifier, 2);
+                cell(builder, qualifier, 1);
+            }
+            for (ByteString qualifier : otherQualifiers) {
+                cell(builder, qualifier, 2);
+            }
+            blackhole.consume(toDto.apply(builder.finishRow()));
+            builder.reset();
+        }
+    }
+
+    private void cell(RowAdapter.RowBuilder<?> builder, ByteString qualifier, long timestamp) {
+        builder.startCell(BenchmarkData.family, qualifier, timestamp, Collections.emptyList(), value.size());
+        builder.cellValue(value);
+        builder.finishCell();
+    }
+
+    private static DtoExample toDto(Row row) {
+        String[] segments = row.getKey().toStringUtf8().split(RowKey.delim, 3);
+        DtoExample dto = DtoExample.builder().rowKey(new RowKey(segments[0], segments[1], segments[2])).build();
+        dto.setFieldA(latestValue(row, BenchmarkData.qualifiers.get(0)));
+        dto.setFieldB(latestValue(row, BenchmarkData.qualifiers.get(1)));
+        dto.setFieldC(latestValue(row, BenchmarkData.qualifiers.get(2)));
+        return dto;
+    }
+
+    private static String latestValue(Row row, String qualifier) {
+        List<RowCell> cells = row.getCells(BenchmarkData.family, qualifier);
+        return cells.isEmpty() ? null : cells.get(0).getValue().toStringUtf8();
+    }
+
+
+}
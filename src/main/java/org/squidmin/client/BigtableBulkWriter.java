@@ -0,0 +1,315 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.MutateRowsException;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.squidmin.config.BulkWriterProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Buffers row mutations for a single table and sends them as {@link BulkMutation} batches.
+ * <p>
+ * A batch is sent when the buffer reaches {@code maxBatchEntries} or {@code maxBatchBytes}, or when
+ * {@code flushInterval} elapses. {@link #add(RowMutationEntry)} returns immediately with a per-entry future,
+ * and only blocks once {@code maxInFlightBytes} worth of entries are buffered or awaiting a response.
+ * <p>
+ * With a {@link WriteThrottle}, every batch takes one permit per entry before it is sent. Batches wait for their
+ * permits without holding a thread; their entries still count towards {@code maxInFlightBytes}, so {@link #add}
+ * blocks once the throttle holds back that much.
+ */
+@Slf4j
+public class BigtableBulkWriter implements AutoCloseable {
+
+
+    @Getter
+    private final String tableId;
+    private final BigtableDataClient dataClient;
+    private final int maxBatchEntries;
+    private final long maxBatchBytes;
+    private final int maxInFlightBytes;
+    private final WriteThrottle throttle;
+
+    private final Semaphore inFlightBytes;
+    private final ScheduledExecutorService flushScheduler;
+    private final Set<ApiFuture<Void>> outstandingBatches = ConcurrentHashMap.newKeySet();
+
+    private final Object bufferLock = new Object();
+    private List<PendingEntry> buffer = new ArrayList<>();
+    private long bufferedBytes = 0;
+    private volatile boolean closed = false;
+
+    @Getter
+    private final AtomicLong entriesWritten = new AtomicLong();
+    @Getter
+    private final AtomicLong entriesFailed = new AtomicLong();
+    @Getter
+    private final AtomicLong batchesSent = new AtomicLong();
+
+
+    public BigtableBulkWriter(String tableId, BigtableDataClient dataClient, BulkWriterProperties properties) {
+        this(tableId, dataClient, properties, null);
+    }
+
+    public BigtableBulkWriter(
+        String tableId,
+        BigtableDataClient dataClient,
+        BulkWriterProperties properties,
+        WriteThrottle throttle) {
+        this.tableId = tableId;
+        this.throttle = throttle;
+        this.dataClient = dataClient;
+        this.maxBatchEntries = properties.getMaxBatchEntries();
+        this.maxBatchBytes = properties.getMaxBatchBytes();
+        this.maxInFlightBytes = (int) Math.min(Integer.MAX_VALUE, properties.getMaxInFlightBytes());
+        this.inFlightBytes = new Semaphore(maxInFlightBytes);
+
+        long flushIntervalMillis = properties.getFlushInterval().toMillis();
+        flushScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "bigtable-bulk-writer-" + tableId);
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushScheduler.scheduleWithFixedDelay(
+            this::sendBuffered, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    /**
+     * Buffers a mutation. The returned future completes when the batch containing the entry has been applied,
+     * and fails with that entry's own error if Bigtable rejected it.
+     */
+    public ApiFuture<Void> add(RowMutationEntry entry) throws InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Bulk writer for table " + tableId + " is closed.");
+        }
+        int entryBytes = (int) Math.min(maxInFlightBytes, entry.toProto().getSerializedSize());
+        inFlightBytes.acquire(entryBytes);
+
+        SettableApiFuture<Void> result = SettableApiFuture.create();
+        List<PendingEntry> batch = null;
+        synchronized (bufferLock) {
+            if (closed) {
+                inFlightBytes.release(entryBytes);
+                throw new IllegalStateException("Bulk writer for table " + tableId + " is closed.");
+            }
+            buffer.add(new PendingEntry(entry, result, entryBytes));
+            bufferedBytes += entryBytes;
+            if (buffer.size() >= maxBatchEntries || bufferedBytes >= maxBatchBytes) {
+                batch = drainBuffer();
+            }
+        }
+        if (null != batch) {
+            send(batch);
+        }
+        return result;
+    }
+
+    /**
+     * Sends whatever is buffered and waits until every batch sent so far has completed.
+     */
+    public void flush() throws InterruptedException {
+        sendBuffered();
+        List<ApiFuture<Void>> pending = new ArrayList<>(outstandingBatches);
+        try {
+            ApiFutures.successfulAsList(pending).get();
+        } catch (ExecutionException e) {
+            log.error("Unexpected failure while waiting for bulk mutations on table {}", tableId, e);
+        }
+    }
+
+    /**
+     * Stops accepting entries, sends the remaining buffer and waits for every batch. The buffer is drained under
+     * the same lock {@link #add} buffers under, so an entry is either rejected or part of the final drain.
+     */
+    @Override
+    public void close() {
+        List<PendingEntry> batch;
+        synchronized (bufferLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            batch = buffer.isEmpty() ? null : drainBuffer();
+        }
+        flushScheduler.shutdownNow();
+        if (null != batch) {
+            send(batch);
+        }
+        try {
+            flush();
+        } catch (InterruptedException e) {
+            log.error("Interrupted while draining bulk writer for table {}", tableId);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public long getBufferedBytes() {
+        synchronized (bufferLock) {
+            return bufferedBytes;
+        }
+    }
+
+    public int getOutstandingBatchCount() { return outstandingBatches.size(); }
+
+    private void sendBuffered() {
+        List<PendingEntry> batch;
+        synchronized (bufferLock) {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            batch = drainBuffer();
+        }
+        send(batch);
+    }
+
+    private List<PendingEntry> drainBuffer() {
+        List<PendingEntry> batch = buffer;
+        buffer = new ArrayList<>(maxBatchEntries);
+        bufferedBytes = 0;
+        return batch;
+    }
+
+    private void send(List<PendingEntry> batch) {
+        BulkMutation bulkMutation = BulkMutation.create(tableId);
+        for (PendingEntry pending : batch) {
+            bulkMutation.add(pending.entry);
+        }
+
+        SettableApiFuture<Void> batchDone = SettableApiFuture.create();
+        outstandingBatches.add(batchDone);
+        batchesSent.incrementAndGet();
+
+        if (null == throttle) {
+            send(batch, bulkMutation, null, batchDone);
+            return;
+        }
+        ApiFutures.addCallback(throttle.acquireAsync(batch.size()), new ApiFutureCallback<WriteThrottle.Permit>() {
+            @Override
+            public void onSuccess(WriteThrottle.Permit permit) { send(batch, bulkMutation, permit, batchDone); }
+
+            @Override
+            public void onFailure(Throwable t) { failed(batch, t, null, batchDone); }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Sends a batch admitted by the throttle, or any batch when there is none.
+     */
+    private void send(
+        List<PendingEntry> batch,
+        BulkMutation bulkMutation,
+        WriteThrottle.Permit permit,
+        SettableApiFuture<Void> batchDone) {
+        ApiFuture<Void> rpc;
+        try {
+            rpc = dataClient.bulkMutateRowsAsync(bulkMutation);
+        } catch (RuntimeException e) {
+            rpc = ApiFutures.immediateFailedFuture(e);
+        }
+        ApiFutures.addCallback(rpc, new ApiFutureCallback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                for (PendingEntry pending : batch) {
+                    pending.result.set(null);
+                }
+                entriesWritten.addAndGet(batch.size());
+                release(permit, null);
+                complete(batch, batchDone);
+            }
+
+            @Override
+            public void onFailure(Throwable t) { failed(batch, t, permit, batchDone); }
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Fails the entries of a batch that Bigtable rejected, only those listed when the failure was partial.
+     */
+    private void failed(
+        List<PendingEntry> batch,
+        Throwable t,
+        WriteThrottle.Permit permit,
+        SettableApiFuture<Void> batchDone) {
+        Map<Integer, Throwable> failures = new HashMap<>();
+        if (t instanceof MutateRowsException) {
+            for (MutateRowsException.FailedMutation failed : ((MutateRowsException) t).getFailedMutations()) {
+                failures.put(failed.getIndex(), failed.getError());
+            }
+        } else {
+            for (int index = 0; index < batch.size(); index++) {
+                failures.put(index, t);
+            }
+        }
+        for (int index = 0; index < batch.size(); index++) {
+            Throwable error = failures.get(index);
+            if (null == error) {
+                batch.get(index).result.set(null);
+            } else {
+                batch.get(index).result.setException(error);
+            }
+        }
+        entriesWritten.addAndGet(batch.size() - failures.size());
+        entriesFailed.addAndGet(failures.size());
+        log.error(
+            "{} of {} entries failed in bulk mutation on table {}: {}",
+            failures.size(), batch.size(), tableId, t.getMessage()
+        );
+        release(permit, t);
+        complete(batch, batchDone);
+    }
+
+    private void release(WriteThrottle.Permit permit, Throwable error) {
+        if (null != permit) {
+            throttle.release(permit, error);
+        }
+    }
+
+    private void complete(List<PendingEntry> batch, SettableApiFuture<Void> batchDone) {
+        int releasedBytes = 0;
+        for (PendingEntry pending : batch) {
+            releasedBytes += pending.bytes;
+        }
+        inFlightBytes.release(releasedBytes);
+        outstandingBatches.remove(batchDone);
+        batchDone.set(null);
+    }
+
+
+    private static class PendingEntry {
+
+        private final RowMutationEntry entry;
+        private final SettableApiFuture<Void> result;
+        private final int bytes;
+
+        private PendingEntry(RowMutationEntry entry, SettableApiFuture<Void> result, int bytes) {
+            this.entry = entry;
+            this.result = result;
+            this.bytes = bytes;
+        }
+
+    }
+
+
+}
@@ -1,35 +1,85 @@
 package org.squidmin.client;
 
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.rpc.ApiExceptions;
 import com.google.api.gax.rpc.NotFoundException;
+import com.google.api.gax.rpc.ResponseObserver;
 import com.google.api.gax.rpc.ServerStream;
+import com.google.api.gax.rpc.StreamController;
 import com.google.cloud.bigtable.admin.v2.models.CreateTableRequest;
+import com.google.cloud.bigtable.admin.v2.models.GCRules.GCRule;
 import com.google.cloud.bigtable.admin.v2.models.Table;
-import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
 import com.google.cloud.bigtable.data.v2.models.Query;
 import com.google.cloud.bigtable.data.v2.models.Filters.Filter;
+import com.google.cloud.bigtable.data.v2.models.KeyOffset;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
 import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowAdapter;
 import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.protobuf.ByteString;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Import;
 import org.springframework.stereotype.Component;
 import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.CacheProperties;
+import org.squidmin.config.EchoProperties;
+import org.squidmin.config.MetricsConfig;
+import org.squidmin.config.ReadProperties;
 import org.squidmin.exception.InvalidSchemaException;
 import org.squidmin.model.BigtableRowWrapper;
 import org.squidmin.model.BigtableStructure;
 import org.squidmin.model.DtoExample;
 import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.MultiGetResult;
+import org.squidmin.model.RowKey;
+import org.squidmin.model.RowKeyCodec;
 import org.squidmin.util.BigtableUtil;
+import org.squidmin.util.CompiledSchema;
+import org.squidmin.util.LatestRowReducer;
 import org.squidmin.util.LogFont;
+import org.squidmin.util.RowEcho;
+import org.squidmin.util.RowRenderer;
+import org.squidmin.util.TabularRowRenderer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+import static com.google.cloud.bigtable.admin.v2.models.GCRules.GCRULES;
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
 
-@EnableConfigurationProperties(value = {BigtableStructure.class})
+
+@EnableConfigurationProperties(value = {
+    BigtableStructure.class, ReadProperties.class, CacheProperties.class, EchoProperties.class
+})
+@Import(MetricsConfig.class)
 @Component
 @Getter
 @Slf4j
@@ -39,31 +89,184 @@ public class BigtableClient {
     private final String tableId;
     private final BigtableClientManager clientManager;
     private final BigtableStructure btStructure;
-    private final int rowEchoPadding;
+    private final RowEcho rowKeyEcho;
+    private final RowEcho filterEcho;
+    private final RowEcho filterLatestEcho;
+    private final RowEcho rangeEcho;
+    private final RowEcho tableEcho;
+    private final ReadProperties readProperties;
+    private final RowCache rowCache;
+    private final SingleFlight<List<String>, Row> rowReadFlights;
+    private final SingleFlight<Query, List<Row>> queryFlights;
+    private final ClientMetrics metrics;
+    private final String clientOverride;
+
+    @Getter(AccessLevel.NONE)
+    private final CompiledSchema tableSchema;
+
+    /** Only the client built from a manager owns its connections; views and table handles share them. */
+    @Getter(AccessLevel.NONE)
+    private final boolean owner;
+
 
+    public BigtableClient(String tableId, BigtableClientManager clientManager) {
+        this(tableId, clientManager, new ReadProperties(), new CacheProperties());
+    }
+
+    public BigtableClient(
+        String tableId,
+        BigtableClientManager clientManager,
+        ReadProperties readProperties,
+        CacheProperties cacheProperties) {
+        this(tableId, clientManager, readProperties, cacheProperties, new EchoProperties(), ClientMetrics.disabled);
+    }
 
     @Autowired
-    public BigtableClient(@Value("${bigtable.table-id}") String tableId, BigtableClientManager clientManager) {
+    public BigtableClient(
+        @Value("${bigtable.table-id}") String tableId,
+        BigtableClientManager clientManager,
+        ReadProperties readProperties,
+        CacheProperties cacheProperties,
+        EchoProperties echoProperties,
+        ClientMetrics metrics) {
         this.tableId = tableId;
+        this.metrics = metrics;
         this.clientManager = clientManager;
         this.btStructure = clientManager.getBtStructure();
-        rowEchoPadding = clientManager.getMaxQualifierLength();
+        this.readProperties = readProperties;
+        this.rowCache = cacheProperties.isEnabled() ? new RowCache(cacheProperties) : null;
+        this.rowReadFlights = readProperties.isSingleFlight() ? new SingleFlight<>() : null;
+        this.queryFlights = readProperties.isSingleFlight() ? new SingleFlight<>() : null;
+        RowRenderer renderer = new TabularRowRenderer(clientManager.getMaxQualifierLength());
+        this.rowKeyEcho = RowEcho.forSite(echoProperties, "read-by-row-key", renderer);
+        this.filterEcho = RowEcho.forSite(echoProperties, "read-filter", renderer);
+        this.filterLatestEcho = RowEcho.forSite(echoProperties, "read-filter-latest", renderer);
+        this.rangeEcho = RowEcho.forSite(echoProperties, "read-range", renderer);
+        this.tableEcho = RowEcho.forSite(echoProperties, "read-table", renderer);
+        this.clientOverride = null;
+        this.tableSchema = null;
+        this.owner = true;
+        if (null != clientManager.getWriteThrottle()) {
+            metrics.bindWriteThrottle(clientManager.getWriteThrottle());
+        }
+    }
+
+    private BigtableClient(
+        BigtableClient source,
+        String tableId,
+        BigtableStructure btStructure,
+        CompiledSchema tableSchema,
+        String clientOverride) {
+        this.tableId = tableId;
+        this.metrics = source.metrics;
+        this.clientManager = source.clientManager;
+        this.btStructure = btStructure;
+        this.readProperties = source.readProperties;
+        this.rowCache = source.rowCache;
+        this.rowReadFlights = source.rowReadFlights;
+        this.queryFlights = source.queryFlights;
+        this.rowKeyEcho = source.rowKeyEcho;
+        this.filterEcho = source.filterEcho;
+        this.filterLatestEcho = source.filterLatestEcho;
+        this.rangeEcho = source.rangeEcho;
+        this.tableEcho = source.tableEcho;
+        this.clientOverride = clientOverride;
+        this.tableSchema = tableSchema;
+        this.owner = false;
+    }
+
+    /**
+     * Returns a view of this client that sends every call through the named app profile client, whatever the
+     * configured routing. The view shares the row cache, single-flight and metrics of this client. Buffered writes
+     * keep using the shared bulk writer of each table.
+     *
+     * @throws IllegalArgumentException if no app profile is configured under {@code clientName}
+     */
+    public BigtableClient using(String clientName) {
+        if (null == clientManager.getDataClient(clientName)) {
+            throw new IllegalArgumentException("No app profile client is configured under the name " + clientName);
+        }
+        return new BigtableClient(this, tableId, btStructure, tableSchema, clientName);
+    }
+
+    /**
+     * Returns a view of this client bound to another table, with its own structure and schema, or the defaults when
+     * {@code tableSchema} is {@code null}. See {@link BigtableTables}.
+     */
+    BigtableClient forTable(String tableId, BigtableStructure btStructure, CompiledSchema tableSchema) {
+        return null == tableSchema
+            ? new BigtableClient(this, tableId, this.btStructure, null, clientOverride)
+            : new BigtableClient(this, tableId, btStructure, tableSchema, clientOverride);
+    }
+
+    /**
+     * Schema of the table this client is bound to.
+     */
+    private CompiledSchema schema() throws InvalidSchemaException {
+        return null == tableSchema ? clientManager.getCompiledSchema() : tableSchema;
+    }
+
+    /**
+     * Client an operation is routed to: the override of this view, otherwise the configured app profile client for
+     * the operation, otherwise the default client.
+     */
+    private BigtableDataClient dataClient(String operation) {
+        BigtableDataClient client = null == clientOverride
+            ? clientManager.getDataClientFor(operation)
+            : clientManager.getDataClient(clientOverride);
+        return null == client ? clientManager.getDataClient() : client;
     }
 
     public Table createTable() {
-        return createTable();
+        return createTable(tableId);
     }
 
     public Table createTable(String tableId) {
-        if (!clientManager.getTableAdminClient().exists(tableId)) {
-            log.info("Table does not exist, creating table: {}", tableId);
-            CreateTableRequest createTableRequest = CreateTableRequest.of(tableId);
+        return createTable(tableId, Collections.emptyList());
+    }
 
-            for (FamilyToQualifierMapping mapping : btStructure.getColumnFamilies()) {
-                createTableRequest.addFamily(mapping.getColumnFamilyName());
+    /**
+     * Creates a table pre-split at {@code splitKeys}, so writes are spread over several tablets from the start
+     * instead of waiting for Bigtable to split and rebalance a single one. Column families get the garbage
+     * collection policies declared in the {@link BigtableStructure}.
+     */
+    public Table createTable(String tableId, List<ByteString> splitKeys) {
+        return metrics.operation("create-table").record(() -> createTableIfAbsent(tableId, splitKeys));
+    }
+
+    /**
+     * Creates a table pre-split into {@code splitCount + 1} tablets spread evenly over the row key space, see
+     * {@link RowKeyCodec#splitKeys}. With salted keys the tablets follow the salt buckets.
+     */
+    public Table createTableWithEvenSplits(String tableId, int splitCount) {
+        return createTable(tableId, rowKeyCodec().splitKeys(splitCount));
+    }
+
+    /**
+     * Creates a table pre-split like an existing one, at up to {@code maxSplits} of the keys returned by
+     * {@code sampleRowKeys} for {@code sourceTableId}. When there are more samples, evenly spaced ones are used.
+     */
+    public Table createTableLike(String tableId, String sourceTableId, int maxSplits) {
+        List<ByteString> sampledKeys = dataClient("create-table").sampleRowKeys(sourceTableId).stream()
+            .map(KeyOffset::getKey)
+            .filter(key -> !key.isEmpty())
+            .collect(Collectors.toList());
+        List<ByteString> splitKeys = sampledKeys;
+        if (sampledKeys.size() > maxSplits) {
+            splitKeys = new ArrayList<>(maxSplits);
+            for (int i = 1; i <= maxSplits; i++) {
+                splitKeys.add(sampledKeys.get((int) ((long) i * sampledKeys.size() / (maxSplits + 1))));
             }
-            Table table = clientManager.getTableAdminClient().createTable(createTableRequest);
-            log.info("Table: {} created successfully");
+        }
+        log.info("Using {} of {} sampled keys of table {} as split keys", splitKeys.size(), sampledKeys.size(), sourceTableId);
+        return createTable(tableId, splitKeys);
+    }
+
+    private Table createTableIfAbsent(String tableId, List<ByteString> splitKeys) {
+        if (!clientManager.getTableAdminClient().exists(tableId)) {
+            log.info("Table does not exist, creating table: {}", tableId);
+            Table table = clientManager.getTableAdminClient().createTable(createTableRequest(tableId, splitKeys));
+            log.info("Table: {} created successfully with {} split keys", tableId, splitKeys.size());
             return table;
         } else {
             log.error("Table: {} already exists\n", tableId);
@@ -71,14 +274,186 @@ public class BigtableClient {
         }
     }
 
+    private CreateTableRequest createTableRequest(String tableId, List<ByteString> splitKeys) {
+        CreateTableRequest createTableRequest = CreateTableRequest.of(tableId);
+        for (FamilyToQualifierMapping mapping : btStructure.getColumnFamilies()) {
+            GCRule gcRule = gcRule(mapping);
+            if (null == gcRule) {
+                createTableRequest.addFamily(mapping.getColumnFamilyName());
+            } else {
+                createTableRequest.addFamily(mapping.getColumnFamilyName(), gcRule);
+            }
+        }
+        splitKeys.forEach(createTableRequest::addSplit);
+        return createTableRequest;
+    }
+
+    private static GCRule gcRule(FamilyToQualifierMapping mapping) {
+        GCRule maxVersions = null == mapping.getMaxVersions() ? null : GCRULES.maxVersions(mapping.getMaxVersions());
+        GCRule maxAge = null == mapping.getMaxAge()
+            ? null
+            : GCRULES.maxAge(mapping.getMaxAge().toMillis(), TimeUnit.MILLISECONDS);
+        if (null != maxVersions && null != maxAge) {
+            return GCRULES.union().rule(maxVersions).rule(maxAge);
+        }
+        return null == maxVersions ? maxAge : maxVersions;
+    }
+
+    /**
+     * Writes one row. Bytes written are not counted for a prebuilt {@code RowMutation}, which does not expose its
+     * cells without re-encoding it.
+     */
     public void write(String rowKey, RowMutation rowMutation) {
-        clientManager.getDataClient().mutateRow(rowMutation);
+        throttled(1, () -> metrics.operation("write").run(() -> dataClient("write").mutateRow(rowMutation), 1, 0));
+        if (null != rowCache) {
+            rowCache.invalidate(rowKey);
+        }
         log.info("Successfully wrote row {}", rowKey);
     }
 
+    /**
+     * Applies a mutation without blocking, in its own MutateRow call rather than through the bulk writer.
+     * Cancelling the returned future cancels the call. With write throttling enabled, the call starts once the
+     * throttle admits it, without blocking the caller.
+     */
+    public ApiFuture<Void> writeRowAsync(String rowKey, RowMutation rowMutation) {
+        return throttledAsync(1, () -> metrics.operation("write").recordAsync(
+            () -> invalidateOnCompletion(rowKey, dataClient("write").mutateRowAsync(rowMutation)),
+            result -> 1, result -> 0
+        ));
+    }
+
+    /**
+     * Writes a DTO without blocking, in its own MutateRow call rather than through the bulk writer. With write
+     * throttling enabled, the call starts once the throttle admits it, without blocking the caller.
+     */
+    public ApiFuture<Void> writeSingleRowAsync(DtoExample request) throws InvalidSchemaException {
+        CompiledSchema schema = schema();
+        long bytes = schema.encodedSize(request);
+        return throttledAsync(1, () -> metrics.operation("write-single-row").recordAsync(
+            () -> invalidateOnCompletion(
+                schema.rowKey(request).toStringUtf8(),
+                dataClient("write-single-row").mutateRowAsync(schema.toRowMutation(tableId, request))
+            ),
+            result -> 1, result -> bytes
+        ));
+    }
+
+    /**
+     * Runs a write under the write throttle, when it is enabled, holding one permit per mutated row.
+     *
+     * @throws IllegalStateException if the thread is interrupted while waiting for the throttle
+     */
+    private <E extends Exception> void throttled(int rows, ClientMetrics.Action<E> write) throws E {
+        WriteThrottle throttle = clientManager.getWriteThrottle();
+        if (null == throttle) {
+            write.run();
+            return;
+        }
+        WriteThrottle.Permit permit;
+        try {
+            permit = throttle.acquire(rows);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for write capacity.", e);
+        }
+        try {
+            write.run();
+        } catch (Throwable t) {
+            throttle.release(permit, t);
+            throw t;
+        }
+        throttle.release(permit, null);
+    }
+
+    /**
+     * Starts a write under the write throttle, when it is enabled, and returns the permit when the write completes.
+     * The caller never blocks: the write is chained on the permit and starts on the thread that grants it.
+     * Cancelling the returned future before then gives up the permit without starting the write.
+     */
+    private ApiFuture<Void> throttledAsync(int rows, Supplier<ApiFuture<Void>> write) {
+        WriteThrottle throttle = clientManager.getWriteThrottle();
+        if (null == throttle) {
+            return write.get();
+        }
+        return ApiFutures.transformAsync(throttle.acquireAsync(rows), permit -> {
+            ApiFuture<Void> future;
+            try {
+                future = write.get();
+            } catch (RuntimeException e) {
+                throttle.release(permit, e);
+                throw e;
+            }
+            ApiFutures.addCallback(future, new ApiFutureCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) { throttle.release(permit, null); }
+
+                @Override
+                public void onFailure(Throwable t) { throttle.release(permit, t); }
+            }, MoreExecutors.directExecutor());
+            return future;
+        }, MoreExecutors.directExecutor());
+    }
+
+    private ApiFuture<Void> invalidateOnCompletion(String rowKey, ApiFuture<Void> write) {
+        if (null != rowCache) {
+            write.addListener(() -> rowCache.invalidate(tableId, rowKey), MoreExecutors.directExecutor());
+        }
+        return write;
+    }
+
+    public ApiFuture<Void> writeAsync(RowMutationEntry entry) throws InterruptedException {
+        return writeAsync(tableId, entry);
+    }
+
+    public ApiFuture<Void> writeAsync(String tableId, RowMutationEntry entry) throws InterruptedException {
+        long bytes = metrics.isEnabled() ? ClientMetrics.entryBytes(entry) : 0;
+        return metrics.operation("write-async").recordAsync(() -> addEntry(tableId, entry), result -> 1, result -> bytes);
+    }
+
+    private ApiFuture<Void> addEntry(String tableId, RowMutationEntry entry) throws InterruptedException {
+        if (null == rowCache) {
+            return clientManager.getBulkWriter(tableId).add(entry);
+        }
+        String rowKey = entry.toProto().getRowKey().toStringUtf8();
+        rowCache.invalidate(tableId, rowKey);
+        ApiFuture<Void> result = clientManager.getBulkWriter(tableId).add(entry);
+        result.addListener(() -> rowCache.invalidate(tableId, rowKey), MoreExecutors.directExecutor());
+        return result;
+    }
+
+    public void flush() throws InterruptedException {
+        clientManager.getBulkWriter(tableId).flush();
+    }
+
     public void writeSingleRow(DtoExample request) throws InvalidSchemaException {
-        BulkMutation mutation = BigtableUtil.singleRowAsBulkMutation(tableId, clientManager, request);
-        clientManager.getDataClient().bulkMutateRows(mutation);
+        CompiledSchema schema = schema();
+        throttled(1, () -> metrics.operation("write-single-row").run(
+            () -> dataClient("write-single-row").mutateRow(schema.toRowMutation(tableId, request)),
+            1, schema.encodedSize(request)
+        ));
+        if (null != rowCache) {
+            rowCache.invalidate(tableId, schema.rowKey(request).toStringUtf8());
+        }
+    }
+
+    /**
+     * Writes a batch of DTOs in one bulk mutation, encoded with the compiled schema. A throttled batch holds one
+     * permit per row.
+     */
+    public void writeRows(Collection<DtoExample> requests) throws InvalidSchemaException {
+        CompiledSchema schema = schema();
+        throttled(requests.size(), () -> metrics.operation("write-rows").run(
+            () -> dataClient("write-rows").bulkMutateRows(schema.toBulkMutation(tableId, requests)),
+            requests.size(), schema.encodedSize(requests)
+        ));
+        if (null != rowCache) {
+            requests.forEach(request -> rowCache.invalidate(tableId, schema.rowKey(request).toStringUtf8()));
+        }
+    }
+
+    public ApiFuture<Void> writeAsync(DtoExample request) throws InvalidSchemaException, InterruptedException {
+        return writeAsync(tableId, schema().toEntry(request));
     }
 
     public Row readByRowKey(String rowKey) {
@@ -86,56 +461,404 @@ public class BigtableClient {
     }
 
     public Row readByRowKey(String tableId, String rowKey) {
-        Row row = clientManager.getDataClient().readRow(tableId, rowKey);
+        return metrics.operation("read-by-row-key").record(
+            () -> readRow(tableId, rowKey), ClientMetrics::rowCount, ClientMetrics::rowBytes
+        );
+    }
+
+    /**
+     * Reads a row without blocking, through the row cache and single-flight like {@link #readByRowKey}. The future
+     * holds {@code null} if the row does not exist. Cancelling it cancels the call, unless the call is shared with
+     * other callers.
+     */
+    public ApiFuture<Row> readByRowKeyAsync(String tableId, String rowKey) {
+        return metrics.operation("read-by-row-key").recordAsync(
+            () -> readRowAsync(tableId, rowKey), ClientMetrics::rowCount, ClientMetrics::rowBytes
+        );
+    }
+
+    private ApiFuture<Row> readRowAsync(String tableId, String rowKey) {
+        if (null != rowCache) {
+            Optional<Row> cached = rowCache.getIfPresent(tableId, rowKey);
+            if (null != cached) {
+                return ApiFutures.immediateFuture(cached.orElse(null));
+            }
+        }
+        long generation = null == rowCache ? 0 : rowCache.generation(rowKey);
+        ApiFuture<Row> rpc = null == rowReadFlights
+            ? dataClient("read-by-row-key").readRowAsync(tableId, rowKey)
+            : rowReadFlights.executeAsync(
+                Arrays.asList(tableId, rowKey), () -> dataClient("read-by-row-key").readRowAsync(tableId, rowKey)
+            );
+        if (null == rowCache) {
+            return rpc;
+        }
+        return ApiFutures.transform(rpc, row -> {
+            rowCache.put(tableId, rowKey, row, generation);
+            return row;
+        }, MoreExecutors.directExecutor());
+    }
+
+    private Row readRow(String tableId, String rowKey) {
+        Row row = null == rowCache
+            ? readRowOnce(tableId, rowKey)
+            : rowCache.get(tableId, rowKey, key -> readRowOnce(tableId, key));
+        if (null != row) {
+            rowKeyEcho.echo(row);
+        } else {
+            log.error("Row does not exist: {}", rowKey);
+        }
+        return row;
+    }
+
+    /**
+     * Reads a row by its typed key, encoded with the configured row key format (including the salt bucket, if
+     * enabled). Keys that are not valid UTF-8, such as most {@code ORDERED} keys, bypass the row cache and
+     * single-flight, which are keyed by string.
+     */
+    public Row readByRowKey(String tableId, RowKey rowKey) {
+        return metrics.operation("read-by-row-key").record(
+            () -> readRow(tableId, rowKey), ClientMetrics::rowCount, ClientMetrics::rowBytes
+        );
+    }
+
+    private Row readRow(String tableId, RowKey rowKey) {
+        ByteString key = rowKey.toByteString(rowKeyCodec());
+        if (key.isValidUtf8()) {
+            return readRow(tableId, key.toStringUtf8());
+        }
+        Row row = dataClient("read-by-row-key").readRow(tableId, key);
         if (null != row) {
-            BigtableUtil.echo(row, rowEchoPadding);
+            rowKeyEcho.echo(row);
         } else {
             log.error("Row does not exist: {}", rowKey);
         }
         return row;
     }
 
+    private Row readRowOnce(String tableId, String rowKey) {
+        if (null == rowReadFlights) {
+            return dataClient("read-by-row-key").readRow(tableId, rowKey);
+        }
+        return rowReadFlights.execute(
+            Arrays.asList(tableId, rowKey), () -> dataClient("read-by-row-key").readRow(tableId, rowKey)
+        );
+    }
+
+    public MultiGetResult readByRowKeys(Collection<String> rowKeys) {
+        return readByRowKeys(tableId, rowKeys);
+    }
+
+    public MultiGetResult readByRowKeys(String tableId, Collection<String> rowKeys) {
+        return ApiExceptions.callAndTranslateApiException(readByRowKeysAsync(tableId, rowKeys));
+    }
+
+    public ApiFuture<MultiGetResult> readByRowKeysAsync(Collection<String> rowKeys) {
+        return readByRowKeysAsync(tableId, rowKeys);
+    }
+
+    /**
+     * Reads a set of rows by key. Keys are de-duplicated and packed into ReadRows requests of at most
+     * {@code bigtable.read.max-keys-per-request} keys each; the requests run concurrently. Keys with no row are
+     * returned in {@link MultiGetResult#getMissingKeys()}. When the row cache is enabled only uncached keys are read.
+     */
+    public ApiFuture<MultiGetResult> readByRowKeysAsync(String tableId, Collection<String> rowKeys) {
+        return metrics.operation("read-by-row-keys").recordAsync(
+            () -> multiGet(tableId, rowKeys),
+            result -> result.getRows().size(),
+            result -> ClientMetrics.totalBytes(result.getRows().values())
+        );
+    }
+
+    private ApiFuture<MultiGetResult> multiGet(String tableId, Collection<String> rowKeys) {
+        Set<String> requestedKeys = new LinkedHashSet<>(rowKeys);
+        Map<String, Row> cachedRows = new HashMap<>();
+        Map<String, Long> generations = new HashMap<>();
+        Set<String> keysToRead = requestedKeys;
+        if (null != rowCache) {
+            keysToRead = new LinkedHashSet<>();
+            for (String rowKey : requestedKeys) {
+                Optional<Row> cached = rowCache.getIfPresent(tableId, rowKey);
+                if (null == cached) {
+                    generations.put(rowKey, rowCache.generation(rowKey));
+                    keysToRead.add(rowKey);
+                } else {
+                    cached.ifPresent(row -> cachedRows.put(rowKey, row));
+                }
+            }
+        }
+
+        List<ApiFuture<List<Row>>> batches = new ArrayList<>();
+        for (List<String> batch : Iterables.partition(keysToRead, readProperties.getMaxKeysPerRequest())) {
+            Query query = Query.create(tableId);
+            batch.forEach(query::rowKey);
+            batches.add(readRowsShared("read-by-row-keys", query));
+        }
+        Set<String> readKeys = keysToRead;
+        return ApiFutures.transform(
+            ApiFutures.allAsList(batches),
+            results -> {
+                Map<String, Row> rows = new HashMap<>(requestedKeys.size() * 2);
+                rows.putAll(cachedRows);
+                for (List<Row> result : results) {
+                    for (Row row : result) {
+                        rows.put(row.getKey().toStringUtf8(), row);
+                    }
+                }
+                if (null != rowCache) {
+                    readKeys.forEach(rowKey -> rowCache.put(tableId, rowKey, rows.get(rowKey), generations.get(rowKey)));
+                }
+                Set<String> missingKeys = new LinkedHashSet<>(requestedKeys);
+                missingKeys.removeAll(rows.keySet());
+                return MultiGetResult.builder().rows(rows).missingKeys(missingKeys).build();
+            },
+            MoreExecutors.directExecutor()
+        );
+    }
+
     public List<Row> readFilter(Filter filter) {
         return readFilter(tableId, filter);
     }
 
+    /**
+     * Reads the rows matching a filter. Filtered scans are streamed from their own ReadRows call and never
+     * coalesced, so no shared copy of an unbounded result is held in memory.
+     */
     public List<Row> readFilter(String tableId, Filter filter) {
+        try (Stream<Row> rows = metrics.operation("read-filter").stream(
+            filter, () -> filterEcho.echo(openFilter(tableId, filter)), ClientMetrics::rowBytes)) {
+            return rows.collect(Collectors.toList());
+        } catch (NotFoundException e) {
+            log.error(e.getMessage());
+            return null;
+        }
+    }
+
+    public Stream<Row> streamFilter(Filter filter) {
+        return streamFilter(tableId, filter);
+    }
+
+    /**
+     * Streams the rows matching a filter. Rows are pulled from the server as the stream is consumed; close the
+     * stream to cancel the RPC when stopping early.
+     */
+    public Stream<Row> streamFilter(String tableId, Filter filter) {
+        return metrics.operation("read-filter").stream(
+            filter, () -> openFilter(tableId, filter), ClientMetrics::rowBytes
+        );
+    }
+
+    private Stream<Row> openFilter(String tableId, Filter filter) {
+        return openRows("read-filter", Query.create(tableId).filter(filter));
+    }
+
+    public List<Row> readByRowKeyPrefix(String segmentA) {
+        return readByRowKeyPrefix(tableId, segmentA);
+    }
+
+    /**
+     * Reads every row whose key starts with {@code segmentA}. Unlike a key regex filter, this only scans the
+     * contiguous range of matching keys, or one such range per bucket when keys are salted.
+     */
+    public List<Row> readByRowKeyPrefix(String tableId, String segmentA) {
+        return readRanges(tableId, rowKeyCodec().prefixRanges(segmentA));
+    }
+
+    /**
+     * Reads every row whose key starts with {@code segmentA} and {@code segmentB}.
+     */
+    public List<Row> readByRowKeyPrefix(String tableId, String segmentA, String segmentB) {
+        return readRanges(tableId, rowKeyCodec().prefixRanges(segmentA, segmentB));
+    }
+
+    /**
+     * Reads the rows from {@code start} (inclusive) to {@code end} (exclusive).
+     */
+    public List<Row> readByRowKeyRange(String tableId, RowKey start, RowKey end) {
+        return readRanges(tableId, rowKeyCodec().ranges(start, end));
+    }
+
+    /**
+     * Codec of the compiled schema, or the delimited format when no valid structure is configured.
+     */
+    private RowKeyCodec rowKeyCodec() {
         try {
-            log.info("Reading row using filter:\n{}", filter.toProto().toString());
-            Query query = Query.create(tableId).filter(filter);
-            ServerStream<Row> serverStream = clientManager.getDataClient().readRows(query);
-            return BigtableUtil.echo(serverStream, rowEchoPadding);
+            return schema().getRowKeyCodec();
+        } catch (InvalidSchemaException e) {
+            return RowKeyCodec.delimited();
+        }
+    }
+
+    public List<Row> readRange(String tableId, ByteStringRange range) {
+        return readRanges(tableId, Collections.singletonList(range));
+    }
+
+    public List<Row> readRanges(String tableId, List<ByteStringRange> ranges) {
+        try (Stream<Row> rows = rangeEcho.echo(streamRanges(tableId, ranges))) {
+            return rows.collect(Collectors.toList());
         } catch (NotFoundException e) {
             log.error(e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Streams several key ranges in logical key order. With more than one range, every range is read by its own
+     * concurrent ReadRows call and the results are merged by {@link RowKeyCodec#unsalted unsalted} key, which is
+     * how the per-bucket ranges of salted keys are read back in order.
+     */
+    public Stream<Row> streamRanges(String tableId, List<ByteStringRange> ranges) {
+        return metrics.operation("read-range").stream(() -> openRanges(tableId, ranges), ClientMetrics::rowBytes);
+    }
+
+    private Stream<Row> openRanges(String tableId, List<ByteStringRange> ranges) {
+        if (1 == ranges.size()) {
+            return openRange(tableId, ranges.get(0));
+        }
+        RowKeyCodec codec = rowKeyCodec();
+        Comparator<ByteString> byteOrder = ByteString.unsignedLexicographicalComparator();
+        List<Stream<Row>> streams = new ArrayList<>(ranges.size());
+        for (ByteStringRange range : ranges) {
+            streams.add(openRange(tableId, range));
+        }
+        return BigtableUtil.mergeSorted(
+            streams, Comparator.comparing((Row row) -> codec.unsalted(row.getKey()), byteOrder)
+        );
+    }
+
+    public Stream<Row> streamRange(String tableId, ByteStringRange range) {
+        return streamRanges(tableId, Collections.singletonList(range));
+    }
+
+    private Stream<Row> openRange(String tableId, ByteStringRange range) {
+        return openRows("read-range", Query.create(tableId).range(range));
+    }
+
+    /**
+     * Returns the matching row with the newest cell timestamp. Only the newest cell of each column is read from the
+     * server, and rows are reduced as they stream in, so memory stays constant however many rows match.
+     */
     public BigtableRowWrapper readFilterLatest(String tableId, Filter filter) {
-        try {
-            log.info("Reading latest row using rowkey filter: {}", filter.toProto().toString());
-            Query query = Query.create(tableId).filter(filter);
-            ServerStream<Row> serverStream = clientManager.getDataClient().readRows(query);
-            List<Row> rows = BigtableUtil.toList(serverStream);
-            if (rows.size() > 1) {
-                log.info("Multiple rows matched the query. Returning the latest row.");
-            }
-            BigtableRowWrapper latestRowWrapper = BigtableUtil.getLatestRow(rows);
-            if (null != latestRowWrapper && null != latestRowWrapper.getValue()) {
-                log.info("Found latest row.");
-                BigtableUtil.echo(latestRowWrapper.getValue(), rowEchoPadding);
-                return latestRowWrapper;
-            } else {
-                return null;
-            }
+        List<BigtableRowWrapper> latestRows = readFilterLatest(tableId, filter, 1);
+        if (null == latestRows || latestRows.isEmpty()) {
+            return null;
+        }
+        BigtableRowWrapper latestRowWrapper = latestRows.get(0);
+        log.info("Found latest row.");
+        filterLatestEcho.echo(latestRowWrapper.getValue());
+        return latestRowWrapper;
+    }
+
+    /**
+     * Returns up to {@code k} matching rows with the newest cell timestamps, newest first. Each wrapper's index is
+     * the row's position among all matching rows in key order.
+     */
+    public List<BigtableRowWrapper> readFilterLatest(String tableId, Filter filter, int k) {
+        LatestRowReducer reducer = new LatestRowReducer(k);
+        Query query = Query.create(tableId).filter(latestCellsOnly(filter));
+        try (Stream<Row> rows = metrics.operation("read-filter-latest").stream(
+            filter, () -> openRows("read-filter-latest", query), ClientMetrics::rowBytes)) {
+            rows.forEach(reducer::accept);
         } catch (NotFoundException e) {
             log.error(e.getMessage());
             return null;
         }
+        if (reducer.getCount() > 1) {
+            log.info("{} rows matched the query. Returning the latest {}.", reducer.getCount(), k);
+        }
+        return reducer.getLatestRows();
+    }
+
+    private static Filter latestCellsOnly(Filter filter) {
+        return FILTERS.chain().filter(filter).filter(FILTERS.limit().cellsPerColumn(1));
     }
 
     public ServerStream<Row> readRows(Query query) {
-        return clientManager.getDataClient().readRows(query);
+        return readRows("read-rows", query);
+    }
+
+    private ServerStream<Row> readRows(String operation, Query query) {
+        return dataClient(operation).readRows(query);
+    }
+
+    /**
+     * Delivers rows to an observer as they arrive. The observer can call
+     * {@link com.google.api.gax.rpc.StreamController#disableAutoInboundFlowControl()} in {@code onStart} and
+     * request rows explicitly to apply its own backpressure.
+     */
+    public void readRowsAsync(Query query, ResponseObserver<Row> observer) {
+        dataClient("read-rows").readRowsAsync(
+            query, metrics.operation("read-rows").observe(observer, ClientMetrics::rowBytes)
+        );
+    }
+
+    /**
+     * Reads all rows of a query without blocking the calling thread. The returned list is unmodifiable; with
+     * single-flight enabled it may be shared with concurrent callers of an identical query.
+     */
+    public ApiFuture<List<Row>> readRowsAsync(Query query) {
+        return metrics.operation("read-rows").recordAsync(
+            () -> readRowsShared("read-rows", query), List::size, ClientMetrics::totalBytes
+        );
+    }
+
+    private ApiFuture<List<Row>> readRowsShared(String operation, Query query) {
+        if (null == queryFlights) {
+            return collectRowsAsync(operation, query);
+        }
+        return queryFlights.executeAsync(query, () -> collectRowsAsync(operation, query));
+    }
+
+    private ApiFuture<List<Row>> collectRowsAsync(String operation, Query query) {
+        SettableApiFuture<List<Row>> result = SettableApiFuture.create();
+        List<Row> rows = new ArrayList<>();
+        dataClient(operation).readRowsAsync(query, new ResponseObserver<Row>() {
+            @Override
+            public void onStart(StreamController controller) {
+                result.addListener(() -> {
+                    if (result.isCancelled()) {
+                        controller.cancel();
+                    }
+                }, MoreExecutors.directExecutor());
+            }
+
+            @Override
+            public void onResponse(Row row) { rows.add(row); }
+
+            @Override
+            public void onError(Throwable t) { result.setException(t); }
+
+            @Override
+            public void onComplete() { result.set(Collections.unmodifiableList(rows)); }
+        });
+        return result;
+    }
+
+    public Stream<Row> streamRows(Query query) {
+        return metrics.operation("read-rows").stream(() -> openRows("read-rows", query), ClientMetrics::rowBytes);
+    }
+
+    private Stream<Row> openRows(String operation, Query query) {
+        return BigtableUtil.stream(readRows(operation, query));
+    }
+
+    /**
+     * Streams the rows of a query decoded by {@code rowAdapter} instead of into {@code Row} objects.
+     */
+    public <T> Stream<T> streamRows(Query query, RowAdapter<T> rowAdapter) {
+        return metrics.operation("read-rows").stream(
+            () -> BigtableUtil.stream(dataClient("read-rows").readRowsCallable(rowAdapter).call(query)),
+            row -> 0
+        );
+    }
+
+    /**
+     * Reads the rows of a query straight into {@link DtoExample}s using the configured {@link BigtableStructure}.
+     */
+    public List<DtoExample> readDtos(Query query) throws InvalidSchemaException {
+        try (Stream<DtoExample> dtos = streamRows(query, schema().getRowAdapter())) {
+            return dtos.collect(Collectors.toList());
+        }
     }
 
     public List<Row> readTable(String tableId, boolean echoRows) {
@@ -143,25 +866,53 @@ public class BigtableClient {
     }
 
     public List<Row> readTable(String tableId, Query query, boolean echoRows) {
-        try {
-            log.info(LogFont.BOLD + LogFont.GREEN + "Reading the entire table" + LogFont.RESET, tableId);
-            ServerStream<Row> rowStream = clientManager.getDataClient().readRows(query);
-            if (echoRows) {
-                return BigtableUtil.echo(rowStream, rowEchoPadding);
-            } else {
-                List<Row> rows = new ArrayList<>();
-                rowStream.forEach(rows::add);
-                return rows;
-            }
+        try (Stream<Row> rows = streamTable(tableId, query, echoRows)) {
+            return rows.collect(Collectors.toList());
         } catch (NotFoundException e) {
             log.error("Failed to read a non-existent table: {}", e.getMessage());
             return null;
         }
     }
 
+    public Stream<Row> streamTable(String tableId, Query query, boolean echoRows) {
+        return metrics.operation("read-table").stream(() -> {
+            log.info(LogFont.BOLD + LogFont.GREEN + "Reading the entire table" + LogFont.RESET, tableId);
+            Stream<Row> rows = openRows("read-table", query);
+            return echoRows ? tableEcho.echo(rows) : rows;
+        }, ClientMetrics::rowBytes);
+    }
+
+    /**
+     * Scans a table in up to {@code shardCount} concurrent shards derived from {@code sampleRowKeys}.
+     *
+     * @param filter   optional row filter, may be {@code null}
+     * @param ordered  deliver rows in key order, otherwise as they arrive from any shard; shards ahead of the one
+     *                 being delivered buffer up to {@code bigtable.read.parallel-scan-max-buffered-rows} rows
+     * @param consumer receives every row; must be thread-safe when {@code ordered} is false
+     * @param executor runs the shard reads, one task per shard
+     */
+    public ParallelScan readTableParallel(
+        String tableId,
+        Filter filter,
+        int shardCount,
+        boolean ordered,
+        Consumer<Row> consumer,
+        Executor executor) {
+        return ParallelScan.start(
+            tableId, dataClient("read-table-parallel"), filter, shardCount, ordered, consumer, executor,
+            readProperties.getParallelScanMaxBufferedRows()
+        );
+    }
+
+    /**
+     * Drains the bulk writers and closes the clients of the manager. Views made by {@link #using} and table handles
+     * share those with the client they came from, so closing them releases nothing.
+     */
     public void close() {
-        clientManager.getDataClient().close();
-        clientManager.getTableAdminClient().close();
+        if (!owner) {
+            return;
+        }
+        clientManager.destroy();
     }
 
 
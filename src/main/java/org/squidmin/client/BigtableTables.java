@@ -0,0 +1,89 @@
+package org.squidmin.client;
+
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.squidmin.config.TablesProperties;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.util.CompiledSchema;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Registry of per-table handles. A handle is a {@link BigtableClient} bound to one table, with the table's compiled
+ * schema and client from {@code bigtable.tables}; every handle shares the data clients, bulk writers, row cache,
+ * single-flight and metrics of the default client, so adding a table opens no connections. Handles are created on
+ * first use and cached, so a table's schema is compiled once rather than per call.
+ */
+@Component
+@EnableConfigurationProperties(TablesProperties.class)
+@Slf4j
+public class BigtableTables {
+
+
+    private final BigtableClient btClient;
+    private final TablesProperties properties;
+    private final Map<String, BigtableClient> handles = new ConcurrentHashMap<>();
+
+
+    @Autowired
+    public BigtableTables(BigtableClient btClient, TablesProperties properties) {
+        this.btClient = btClient;
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the handle of a table, creating it on first use. Tables without settings of their own use the default
+     * schema, which follows configuration refreshes.
+     *
+     * @throws InvalidSchemaException   if the table declares a structure that does not compile
+     * @throws IllegalArgumentException if the table names an app profile client that is not configured
+     */
+    public BigtableClient get(String tableId) throws InvalidSchemaException {
+        BigtableClient handle = handles.get(tableId);
+        if (null != handle) {
+            return handle;
+        }
+        handle = create(tableId);
+        BigtableClient existing = handles.putIfAbsent(tableId, handle);
+        return null == existing ? handle : existing;
+    }
+
+    public int size() {
+        return handles.size();
+    }
+
+    /**
+     * Drops every handle after a refresh, so table schemas are compiled again from the re-bound settings.
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void clear() {
+        handles.clear();
+    }
+
+    private BigtableClient create(String tableId) throws InvalidSchemaException {
+        TablesProperties.Table table = properties.getTables().get(tableId);
+        if (null == table) {
+            return btClient.forTable(tableId, null, null);
+        }
+        BigtableStructure btStructure = null;
+        CompiledSchema schema = null;
+        if (table.hasOwnStructure()) {
+            btStructure = table.toStructure(btClient.getBtStructure());
+            schema = CompiledSchema.compile(btStructure);
+            log.info("Compiled schema for table {}: column family {}, qualifiers {}",
+                tableId, schema.getColumnFamily(), schema.getQualifierNames());
+        }
+        BigtableClient handle = btClient.forTable(tableId, btStructure, schema);
+        return null == table.getClient() ? handle : handle.using(table.getClient());
+    }
+
+
+}
@@ -0,0 +1,541 @@
+package org.squidmin.client;
+
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.squidmin.config.BulkLoadProperties;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BulkLoadResult;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.RowKey;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Loads {@link DtoExample} records from a local CSV or NDJSON file into a table.
+ * <p>
+ * The file is split into line-aligned chunks of about {@code chunkBytes}, and at most 2 GB, the most one mapping
+ * can hold. Chunks are queued, with at most {@code queueCapacity} waiting, for a pool of workers. Each worker
+ * memory-maps its chunk, parses the lines and hands the records to the table's {@link BigtableBulkWriter}, which
+ * batches them and blocks the workers once its in-flight limit is reached. Records that cannot be parsed or encoded
+ * are counted as rejected and logged with their byte offset. A record that fails to be written fails the load
+ * instead, since resuming it may succeed.
+ * <p>
+ * The checkpoint file holds the offset up to which every chunk has been written; it never moves past a chunk with a
+ * failed write. A failed or interrupted load started again with the same checkpoint resumes from that offset; records
+ * of chunks that were in flight are written again.
+ * <p>
+ * CSV lines hold {@code segmentA,segmentB,segmentC,fieldA,fieldB,fieldC}, optionally quoted; empty fields are not
+ * written. Quoted fields cannot span lines. NDJSON lines hold one {@link DtoExample} each.
+ */
+@Component
+@EnableConfigurationProperties(BulkLoadProperties.class)
+@Slf4j
+public class BulkLoader {
+
+
+    public enum Format {
+        CSV,
+        NDJSON;
+
+        /**
+         * {@code NDJSON} for {@code .ndjson}, {@code .jsonl} and {@code .json} files, otherwise {@code CSV}.
+         */
+        public static Format of(Path file) {
+            String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json") ? NDJSON : CSV;
+        }
+    }
+
+    private static final ObjectMapper objectMapper = new ObjectMapper()
+        .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    private static final int csvKeyFields = 3;
+
+    /** Largest chunk a single {@link FileChannel#map} call accepts. */
+    static final long MAX_CHUNK_BYTES = Integer.MAX_VALUE;
+
+    private final BulkLoadProperties properties;
+    private final long maxChunkBytes;
+
+
+    @Autowired
+    public BulkLoader(BulkLoadProperties properties) {
+        this(properties, MAX_CHUNK_BYTES);
+    }
+
+    BulkLoader(BulkLoadProperties properties, long maxChunkBytes) {
+        this.properties = properties;
+        this.maxChunkBytes = maxChunkBytes;
+    }
+
+    /**
+     * Loads a file into the table of {@code table}, with the format taken from the file name and the checkpoint
+     * kept next to the file, see {@link #checkpointPath}.
+     */
+    public BulkLoadResult load(BigtableClient table, Path input) throws IOException, InterruptedException {
+        return load(table, input, Format.of(input), checkpointPath(input));
+    }
+
+    /**
+     * Loads a file into the table of {@code table}, starting from the offset in {@code checkpoint} if it exists.
+     *
+     * @throws IOException if the file cannot be read, or the load failed for a reason other than rejected records; the
+     *                     checkpoint then holds the offset to resume from
+     */
+    public BulkLoadResult load(BigtableClient table, Path input, Format format, Path checkpoint)
+        throws IOException, InterruptedException {
+        return new Load(table, input, format, checkpoint).run();
+    }
+
+    public static Path checkpointPath(Path input) {
+        return input.resolveSibling(input.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Returns the offset stored in a checkpoint file, or 0 when there is none.
+     */
+    public static long readCheckpoint(Path checkpoint) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        String offset = new String(Files.readAllBytes(checkpoint), StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(offset);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid checkpoint in " + checkpoint + ": " + offset);
+        }
+    }
+
+    /**
+     * Splits a CSV line into fields. Fields may be quoted, with {@code ""} for a literal quote.
+     */
+    static List<String> parseCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if ('"' != c) {
+                    field.append(c);
+                } else if (i + 1 < line.length() && '"' == line.charAt(i + 1)) {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if ('"' == c) {
+                quoted = true;
+            } else if (',' == c) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static DtoExample toDto(List<String> fields) {
+        if (fields.size() < csvKeyFields || fields.size() > csvKeyFields + 3) {
+            throw new IllegalArgumentException(
+                String.format("Expected %d to %d fields, got %d", csvKeyFields, csvKeyFields + 3, fields.size())
+            );
+        }
+        return DtoExample.builder()
+            .rowKey(new RowKey(fields.get(0), fields.get(1), fields.get(2)))
+            .fieldA(field(fields, 3))
+            .fieldB(field(fields, 4))
+            .fieldC(field(fields, 5))
+            .build();
+    }
+
+    private static String field(List<String> fields, int index) {
+        return index < fields.size() && !fields.get(index).isEmpty() ? fields.get(index) : null;
+    }
+
+    /**
+     * Whether a completed write succeeded.
+     */
+    private static boolean succeeded(ApiFuture<Void> write) {
+        try {
+            write.get();
+            return true;
+        } catch (ExecutionException | InterruptedException | CancellationException e) {
+            return false;
+        }
+    }
+
+
+    /**
+     * A line-aligned byte range of the input file.
+     */
+    private static class Chunk {
+
+        private static final Chunk last = new Chunk(-1, -1);
+
+        private final long start;
+        private final long end;
+
+        private Chunk(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+    }
+
+
+    /**
+     * State of a single load.
+     */
+    private class Load {
+
+        private final BigtableClient table;
+        private final Path input;
+        private final Format format;
+        private final Path checkpointFile;
+        private final BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        private final List<ApiFuture<?>> chunkWrites = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder failedWrites = new LongAdder();
+        private final AtomicInteger loggedRejects = new AtomicInteger();
+
+        private final TreeMap<Long, Long> completedChunks = new TreeMap<>();
+        private long checkpoint;
+        private long lastCheckpointWrite;
+
+        private FileChannel channel;
+
+        private Load(BigtableClient table, Path input, Format format, Path checkpointFile) {
+            this.table = table;
+            this.input = input;
+            this.format = format;
+            this.checkpointFile = checkpointFile;
+        }
+
+        private BulkLoadResult run() throws IOException, InterruptedException {
+            long startNanos = System.nanoTime();
+            long startOffset = readCheckpoint(checkpointFile);
+            int workerCount = Math.max(1, properties.getWorkers());
+            try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+                this.channel = channel;
+                long size = channel.size();
+                if (startOffset > size) {
+                    throw new IOException(String.format(
+                        "Checkpoint offset %d is beyond the end of %s (%d bytes)", startOffset, input, size
+                    ));
+                }
+                long first = Format.CSV == format && properties.isSkipHeader() && 0 == startOffset
+                    ? nextLineStart(0, size)
+                    : startOffset;
+                checkpoint = first;
+                lastCheckpointWrite = System.nanoTime();
+                log.info("Loading {} ({} bytes) into table {} from offset {} with {} workers",
+                    input, size, table.getTableId(), first, workerCount);
+
+                ExecutorService workers = Executors.newFixedThreadPool(workerCount, new WorkerThreadFactory());
+                try {
+                    for (int i = 0; i < workerCount; i++) {
+                        workers.execute(this::work);
+                    }
+                    split(first, size);
+                    for (int i = 0; i < workerCount; i++) {
+                        chunks.put(Chunk.last);
+                    }
+                    workers.shutdown();
+                    workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                    table.flush();
+                    ApiFutures.successfulAsList(new ArrayList<>(chunkWrites)).get();
+                } catch (ExecutionException e) {
+                    failure.compareAndSet(null, e.getCause());
+                } finally {
+                    workers.shutdownNow();
+                }
+            } finally {
+                synchronized (this) {
+                    writeCheckpoint();
+                }
+            }
+            long committed;
+            synchronized (this) {
+                committed = checkpoint;
+            }
+            BulkLoadResult result = BulkLoadResult.builder()
+                .records(records.sum())
+                .rejected(rejected.sum())
+                .bytes(committed - startOffset)
+                .elapsedNanos(System.nanoTime() - startNanos)
+                .startOffset(startOffset)
+                .checkpoint(committed)
+                .build();
+            Throwable error = failure.get();
+            if (null != error) {
+                throw new IOException(String.format(
+                    "Loading %s failed after %d records and %d failed writes, resume from offset %d",
+                    input, result.getRecords(), failedWrites.sum(), committed
+                ), error);
+            }
+            log.info("Loaded {} records ({} rejected) from {} in {} ms, {} records/s, {} MB/s",
+                result.getRecords(), result.getRejected(), input, TimeUnit.NANOSECONDS.toMillis(result.getElapsedNanos()),
+                String.format("%.0f", result.getRecordsPerSecond()),
+                String.format("%.1f", result.getBytesPerSecond() / (1024 * 1024)));
+            return result;
+        }
+
+        /**
+         * Queues line-aligned chunks of about {@code chunkBytes}. A chunk that would grow past {@code maxChunkBytes}
+         * to reach the end of its last line ends after the line before instead; a single line longer than that fails
+         * the load.
+         */
+        private void split(long position, long size) throws IOException, InterruptedException {
+            long chunkBytes = Math.max(1, Math.min(properties.getChunkBytes(), maxChunkBytes));
+            while (position < size && null == failure.get()) {
+                long end = Math.min(size, position + chunkBytes);
+                if (end < size) {
+                    end = nextLineStart(end - 1, size);
+                    if (end - position > maxChunkBytes) {
+                        end = lastLineStart(position, position + maxChunkBytes);
+                    }
+                }
+                if (end == position) {
+                    failure.compareAndSet(null, new IOException(String.format(
+                        "Line at offset %d of %s is longer than %d bytes", position, input, maxChunkBytes
+                    )));
+                    return;
+                }
+                chunks.put(new Chunk(position, end));
+                position = end;
+            }
+        }
+
+        /**
+         * Offset just after the last line break in {@code [from, to)}, or {@code from} if there is none.
+         */
+        private long lastLineStart(long from, long to) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (to > from) {
+                long start = Math.max(from, to - buffer.capacity());
+                buffer.clear().limit((int) (to - start));
+                int read = channel.read(buffer, start);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = read - 1; i >= 0; i--) {
+                    if ('\n' == buffer.get(i)) {
+                        return start + i + 1;
+                    }
+                }
+                to = start;
+            }
+            return from;
+        }
+
+        /**
+         * Offset just after the first line break at or after {@code position}, or {@code size} if there is none.
+         */
+        private long nextLineStart(long position, long size) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+            while (position < size) {
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if ('\n' == buffer.get(i)) {
+                        return position + i + 1;
+                    }
+                }
+                position += read;
+            }
+            return size;
+        }
+
+        private void work() {
+            try {
+                while (true) {
+                    Chunk chunk = chunks.take();
+                    if (Chunk.last == chunk) {
+                        return;
+                    }
+                    if (null == failure.get()) {
+                        try {
+                            load(chunk);
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        }
+                    }
+                }
+            } catch (InterruptedException e) {
+                failure.compareAndSet(null, e);
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void load(Chunk chunk) throws IOException, InterruptedException, InvalidSchemaException {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, chunk.start, chunk.end - chunk.start);
+            ByteBuffer lines = mapped.duplicate();
+            List<ApiFuture<Void>> writes = new ArrayList<>();
+            byte[] line = new byte[1024];
+            int lineStart = 0;
+            int limit = mapped.limit();
+            for (int i = 0; i <= limit; i++) {
+                if (i < limit && '\n' != mapped.get(i)) {
+                    continue;
+                }
+                int length = i - lineStart;
+                if (length > 0 && '\r' == mapped.get(i - 1)) {
+                    length--;
+                }
+                if (length > 0) {
+                    if (length > line.length) {
+                        line = new byte[Math.max(length, line.length * 2)];
+                    }
+                    lines.position(lineStart);
+                    lines.get(line, 0, length);
+                    ApiFuture<Void> write = write(line, length, chunk.start + lineStart);
+                    if (null != write) {
+                        writes.add(write);
+                    }
+                }
+                lineStart = i + 1;
+            }
+            ApiFuture<List<Void>> chunkWrite = ApiFutures.successfulAsList(writes);
+            chunkWrites.add(chunkWrite);
+            chunkWrite.addListener(() -> {
+                if (writes.stream().allMatch(BulkLoader::succeeded)) {
+                    completed(chunk);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+
+        /**
+         * Parses and buffers one record. Returns {@code null} if it was rejected.
+         */
+        private ApiFuture<Void> write(byte[] line, int length, long offset)
+            throws InterruptedException, InvalidSchemaException {
+            ApiFuture<Void> write;
+            try {
+                DtoExample dto = Format.NDJSON == format
+                    ? objectMapper.readValue(line, 0, length, DtoExample.class)
+                    : toDto(parseCsv(new String(line, 0, length, StandardCharsets.UTF_8)));
+                if (null == dto.getRowKey()) {
+                    throw new IllegalArgumentException("Record has no row key");
+                }
+                write = table.writeAsync(dto);
+            } catch (IOException | RuntimeException e) {
+                reject(offset, e);
+                return null;
+            }
+            ApiFutures.addCallback(write, new ApiFutureCallback<Void>() {
+                @Override
+                public void onSuccess(Void result) { records.increment(); }
+
+                @Override
+                public void onFailure(Throwable t) { failedWrite(offset, t); }
+            }, MoreExecutors.directExecutor());
+            return write;
+        }
+
+        /**
+         * Fails the load on a record that could not be written. Its chunk is never completed, so the checkpoint stays
+         * at or before the record.
+         */
+        private void failedWrite(long offset, Throwable error) {
+            failedWrites.increment();
+            log.warn("Failed to write record at offset {} of {}: {}", offset, input, error.getMessage());
+            failure.compareAndSet(null, error);
+        }
+
+        private void reject(long offset, Throwable error) {
+            rejected.increment();
+            if (loggedRejects.incrementAndGet() <= properties.getMaxLoggedRejects()) {
+                log.warn("Rejected record at offset {} of {}: {}", offset, input, error.getMessage());
+            }
+        }
+
+        /**
+         * Advances the checkpoint over every chunk completed without a gap, and writes it if the interval elapsed.
+         */
+        private synchronized void completed(Chunk chunk) {
+            completedChunks.put(chunk.start, chunk.end);
+            Long end;
+            while (null != (end = completedChunks.remove(checkpoint))) {
+                checkpoint = end;
+            }
+            if (System.nanoTime() - lastCheckpointWrite >= properties.getCheckpointInterval().toNanos()) {
+                writeCheckpoint();
+                log.info("Loaded {} records ({} rejected), checkpoint at offset {}",
+                    records.sum(), rejected.sum(), checkpoint);
+            }
+        }
+
+        private void writeCheckpoint() {
+            lastCheckpointWrite = System.nanoTime();
+            try {
+                Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+                Files.write(temporary, Long.toString(checkpoint).getBytes(StandardCharsets.UTF_8));
+                Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.error("Failed to write checkpoint {} to {}: {}", checkpoint, checkpointFile, e.getMessage());
+            }
+        }
+
+    }
+
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "bigtable-bulk-load-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+
+}
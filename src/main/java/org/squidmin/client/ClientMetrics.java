@@ -0,0 +1,486 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.StreamController;
+import com.google.bigtable.v2.MutateRowsRequest;
+import com.google.bigtable.v2.Mutation;
+import com.google.cloud.bigtable.data.v2.models.Filters.Filter;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.squidmin.config.MetricsProperties;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+
+/**
+ * Latency, throughput and error metrics for {@link BigtableClient} operations, recorded to a Micrometer
+ * {@link MeterRegistry}. Every meter is tagged with the {@code operation} name:
+ * <ul>
+ *     <li>{@code bigtable.client.latency}: timer with the configured percentiles</li>
+ *     <li>{@code bigtable.client.rows} and {@code bigtable.client.bytes}: rows and bytes (row keys plus cell values)
+ *     read or written</li>
+ *     <li>{@code bigtable.client.errors}: failed calls, also tagged with the gRPC {@code status} and the
+ *     {@code exception} class</li>
+ *     <li>{@code bigtable.client.in.flight}: gauge of calls started and not yet finished</li>
+ * </ul>
+ * The limits of a {@link WriteThrottle} are registered with {@link #bindWriteThrottle}, without an operation tag.
+ * Meters are registered once per operation, so recording a call costs two clock reads, an in-flight increment and
+ * decrement, and the timer and counter updates. Streams are recorded when they are exhausted, fail or are closed.
+ * <p>
+ * When a {@link SlowOperationLog} is given, every finished call is also passed to it, with the filter of the call
+ * when there is one.
+ */
+public class ClientMetrics {
+
+
+    public static final String LATENCY = "bigtable.client.latency";
+    public static final String ROWS = "bigtable.client.rows";
+    public static final String BYTES = "bigtable.client.bytes";
+    public static final String ERRORS = "bigtable.client.errors";
+    public static final String IN_FLIGHT = "bigtable.client.in.flight";
+    public static final String WRITE_IN_FLIGHT_LIMIT = "bigtable.client.write.in.flight.limit";
+    public static final String WRITE_RATE_LIMIT = "bigtable.client.write.rate.limit";
+    public static final String WRITE_LIMIT_DECREASES = "bigtable.client.write.limit.decreases";
+
+    public static final ClientMetrics disabled = new ClientMetrics(null, new MetricsProperties());
+
+    private final MeterRegistry registry;
+    private final MetricsProperties properties;
+    private final SlowOperationLog slowLog;
+    private final boolean enabled;
+    private final boolean timed;
+    private final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+
+    public ClientMetrics(MeterRegistry registry, MetricsProperties properties) {
+        this(registry, properties, null);
+    }
+
+    public ClientMetrics(MeterRegistry registry, MetricsProperties properties, SlowOperationLog slowLog) {
+        this.registry = registry;
+        this.properties = properties;
+        this.slowLog = slowLog;
+        this.enabled = null != registry && properties.isEnabled();
+        this.timed = enabled || null != slowLog;
+    }
+
+    /**
+     * Whether meters are recorded. Calls may still be timed for the slow operation log when this is false.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public SlowOperationLog getSlowLog() {
+        return slowLog;
+    }
+
+    /**
+     * Registers gauges of the current in-flight and rate limits of {@code throttle}, and a counter of its cuts
+     * tagged with their {@code cause}. Does nothing when meters are disabled.
+     */
+    public void bindWriteThrottle(WriteThrottle throttle) {
+        if (!enabled) {
+            return;
+        }
+        registry.gauge(WRITE_IN_FLIGHT_LIMIT, Tags.empty(), throttle, WriteThrottle::getInFlightLimit);
+        registry.gauge(WRITE_RATE_LIMIT, Tags.empty(), throttle, WriteThrottle::getRateLimit);
+        for (String cause : WriteThrottle.DECREASE_CAUSES) {
+            FunctionCounter.builder(WRITE_LIMIT_DECREASES, throttle, limiter -> limiter.getDecreaseCount(cause))
+                .tag("cause", cause)
+                .register(registry);
+        }
+    }
+
+    public Operation operation(String name) {
+        Operation operation = operations.get(name);
+        return null != operation ? operation : operations.computeIfAbsent(name, Operation::new);
+    }
+
+    public static long rowBytes(Row row) {
+        if (null == row) {
+            return 0;
+        }
+        long bytes = row.getKey().size();
+        for (RowCell cell : row.getCells()) {
+            bytes += cell.getValue().size();
+        }
+        return bytes;
+    }
+
+    public static long rowCount(Row row) {
+        return null == row ? 0 : 1;
+    }
+
+    public static long totalBytes(Collection<Row> rows) {
+        if (null == rows) {
+            return 0;
+        }
+        long bytes = 0;
+        for (Row row : rows) {
+            bytes += rowBytes(row);
+        }
+        return bytes;
+    }
+
+    public static long entryBytes(RowMutationEntry entry) {
+        MutateRowsRequest.Entry proto = entry.toProto();
+        long bytes = proto.getRowKey().size();
+        for (Mutation mutation : proto.getMutationsList()) {
+            bytes += mutation.getSetCell().getValue().size();
+        }
+        return bytes;
+    }
+
+    static String statusCode(Throwable t) {
+        for (Throwable cause = t; null != cause; cause = cause.getCause()) {
+            if (cause instanceof ApiException) {
+                return ((ApiException) cause).getStatusCode().getCode().name();
+            }
+            if (cause == cause.getCause()) {
+                break;
+            }
+        }
+        return "UNKNOWN";
+    }
+
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+
+        T call() throws E;
+
+    }
+
+    @FunctionalInterface
+    public interface Action<E extends Exception> {
+
+        void run() throws E;
+
+    }
+
+
+    /**
+     * The meters of one named operation.
+     */
+    public class Operation {
+
+        private final String name;
+        private final Timer latency;
+        private final Counter rows;
+        private final Counter bytes;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Map<String, Counter> errors = new ConcurrentHashMap<>();
+
+        private Operation(String name) {
+            this.name = name;
+            if (!enabled) {
+                this.latency = null;
+                this.rows = null;
+                this.bytes = null;
+                return;
+            }
+            Tags tags = Tags.of("operation", name);
+            this.latency = Timer.builder(LATENCY)
+                .tags(tags)
+                .publishPercentiles(properties.getPercentiles().stream().mapToDouble(Double::doubleValue).toArray())
+                .publishPercentileHistogram(properties.isPercentileHistogram())
+                .register(registry);
+            this.rows = registry.counter(ROWS, tags);
+            this.bytes = registry.counter(BYTES, tags);
+            registry.gauge(IN_FLIGHT, tags, inFlight);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getInFlight() {
+            return inFlight.get();
+        }
+
+        public Sample start() {
+            return start(null);
+        }
+
+        /**
+         * Starts a call reading with {@code filter}, which identifies the call in the slow operation log.
+         */
+        public Sample start(Filter filter) {
+            if (!timed) {
+                return Sample.noop;
+            }
+            inFlight.incrementAndGet();
+            return new Sample(this, filter, System.nanoTime());
+        }
+
+        /**
+         * Runs a call that reads and writes no rows, such as an admin operation.
+         */
+        public <T, E extends Exception> T record(Call<T, E> call) throws E {
+            return record(call, result -> 0, result -> 0);
+        }
+
+        /**
+         * Runs a call, counting rows and bytes from its result.
+         */
+        public <T, E extends Exception> T record(
+            Call<T, E> call,
+            ToLongFunction<? super T> rowCount,
+            ToLongFunction<? super T> byteCount) throws E {
+            if (!timed) {
+                return call.call();
+            }
+            Sample sample = start();
+            T result;
+            try {
+                result = call.call();
+            } catch (Throwable t) {
+                sample.failure(t);
+                throw t;
+            }
+            sample.success(rowCount.applyAsLong(result), byteCount.applyAsLong(result));
+            return result;
+        }
+
+        /**
+         * Runs a call whose row and byte counts are known before it starts, such as a write.
+         */
+        public <E extends Exception> void run(Action<E> action, long rowCount, long byteCount) throws E {
+            if (!timed) {
+                action.run();
+                return;
+            }
+            Sample sample = start();
+            try {
+                action.run();
+            } catch (Throwable t) {
+                sample.failure(t);
+                throw t;
+            }
+            sample.success(rowCount, byteCount);
+        }
+
+        /**
+         * Starts an asynchronous call and records it when its future completes.
+         */
+        public <T, E extends Exception> ApiFuture<T> recordAsync(
+            Call<ApiFuture<T>, E> call,
+            ToLongFunction<? super T> rowCount,
+            ToLongFunction<? super T> byteCount) throws E {
+            if (!timed) {
+                return call.call();
+            }
+            Sample sample = start();
+            ApiFuture<T> future;
+            try {
+                future = call.call();
+            } catch (Throwable t) {
+                sample.failure(t);
+                throw t;
+            }
+            ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+                @Override
+                public void onFailure(Throwable t) {
+                    sample.failure(t);
+                }
+
+                @Override
+                public void onSuccess(T result) {
+                    sample.success(rowCount.applyAsLong(result), byteCount.applyAsLong(result));
+                }
+            }, MoreExecutors.directExecutor());
+            return future;
+        }
+
+        /**
+         * Wraps a stream so the call is recorded when the stream is exhausted, fails or is closed, counting every
+         * element pulled from it as a row.
+         */
+        public <T, E extends Exception> Stream<T> stream(
+            Call<Stream<T>, E> open,
+            ToLongFunction<? super T> byteCount) throws E {
+            return stream(null, open, byteCount);
+        }
+
+        /**
+         * Same as {@link #stream(Call, ToLongFunction)}, for a read with {@code filter}.
+         */
+        public <T, E extends Exception> Stream<T> stream(
+            Filter filter,
+            Call<Stream<T>, E> open,
+            ToLongFunction<? super T> byteCount) throws E {
+            if (!timed) {
+                return open.call();
+            }
+            Sample sample = start(filter);
+            Stream<T> source;
+            try {
+                source = open.call();
+            } catch (Throwable t) {
+                sample.failure(t);
+                throw t;
+            }
+            Spliterator<T> elements = source.spliterator();
+            long[] counts = new long[2];
+            Consumer<T> counter = element -> {
+                counts[0]++;
+                counts[1] += byteCount.applyAsLong(element);
+            };
+            Spliterator<T> measured = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, elements.characteristics() & Spliterator.ORDERED) {
+                @Override
+                public boolean tryAdvance(Consumer<? super T> action) {
+                    boolean advanced;
+                    try {
+                        advanced = elements.tryAdvance(element -> {
+                            counter.accept(element);
+                            action.accept(element);
+                        });
+                    } catch (RuntimeException e) {
+                        sample.failure(e);
+                        throw e;
+                    }
+                    if (!advanced) {
+                        sample.success(counts[0], counts[1]);
+                    }
+                    return advanced;
+                }
+            };
+            return StreamSupport.stream(measured, false).onClose(() -> {
+                try {
+                    source.close();
+                } finally {
+                    sample.success(counts[0], counts[1]);
+                }
+            });
+        }
+
+        /**
+         * Wraps an observer so the call is recorded when the stream completes or fails.
+         */
+        public <T> ResponseObserver<T> observe(ResponseObserver<T> observer, ToLongFunction<? super T> byteCount) {
+            if (!timed) {
+                return observer;
+            }
+            Sample sample = start();
+            return new ResponseObserver<T>() {
+                private long rowCount;
+                private long bytes;
+
+                @Override
+                public void onStart(StreamController controller) {
+                    observer.onStart(controller);
+                }
+
+                @Override
+                public void onResponse(T response) {
+                    rowCount++;
+                    bytes += byteCount.applyAsLong(response);
+                    observer.onResponse(response);
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    sample.failure(t);
+                    observer.onError(t);
+                }
+
+                @Override
+                public void onComplete() {
+                    sample.success(rowCount, bytes);
+                    observer.onComplete();
+                }
+            };
+        }
+
+        private void finish(Sample sample, long rowCount, long byteCount, Throwable error) {
+            long nanos = System.nanoTime() - sample.startNanos;
+            inFlight.decrementAndGet();
+            if (enabled) {
+                latency.record(nanos, TimeUnit.NANOSECONDS);
+                if (null == error) {
+                    rows.increment(rowCount);
+                    bytes.increment(byteCount);
+                } else {
+                    error(error);
+                }
+            }
+            if (null != slowLog) {
+                slowLog.record(name, sample.filter, nanos, rowCount, error);
+            }
+        }
+
+        private void error(Throwable t) {
+            String status = statusCode(t);
+            String exception = t.getClass().getSimpleName();
+            errors.computeIfAbsent(status + '/' + exception, key -> registry.counter(
+                ERRORS, Tags.of("operation", name, "status", status, "exception", exception)
+            )).increment();
+        }
+
+    }
+
+
+    /**
+     * One call in progress. The first of {@link #success} and {@link #failure} records the call; later calls are
+     * ignored. Not thread-safe: a call must be finished by one thread.
+     */
+    public static final class Sample {
+
+        private static final Sample noop = new Sample(null, null, 0);
+
+        private final Operation operation;
+        private final Filter filter;
+        private final long startNanos;
+        private boolean done;
+
+        private Sample(Operation operation, Filter filter, long startNanos) {
+            this.operation = operation;
+            this.filter = filter;
+            this.startNanos = startNanos;
+            this.done = null == operation;
+        }
+
+        public void success(long rowCount, long byteCount) {
+            if (done) {
+                return;
+            }
+            done = true;
+            operation.finish(this, rowCount, byteCount, null);
+        }
+
+        public void failure(Throwable t) {
+            if (done) {
+                return;
+            }
+            done = true;
+            operation.finish(this, 0, 0, t);
+        }
+
+    }
+
+
+}
@@ -0,0 +1,384 @@
+package org.squidmin.client;
+
+
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Filters.Filter;
+import com.google.cloud.bigtable.data.v2.models.KeyOffset;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.protobuf.ByteString;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+
+/**
+ * A full-table scan split into contiguous row-key shards that are read concurrently.
+ * <p>
+ * Shard boundaries come from {@code sampleRowKeys}. In unordered mode rows are handed to the consumer from the
+ * shard threads as they arrive, so the consumer must be thread-safe. In ordered mode the first shard that has not
+ * been delivered yet queues its rows for the consumer, and the shards after it buffer theirs until their turn. One
+ * shard thread at a time drains the queue, calling the consumer outside the scan's lock, so the consumer may call
+ * back into the scan. Once {@code maxBufferedRows} rows are buffered or queued, shards wait for the consumer to
+ * catch up. The bound is not enforced while the next shard in order is pending or failed, so a retry can't be
+ * starved of threads by shards waiting on it. A consumer error stops an ordered scan: every shard fails with it and
+ * no further rows are delivered.
+ * <p>
+ * A failed shard keeps the key of the last row it delivered; {@link #retryShard(int)} resumes it after that key
+ * instead of restarting the scan.
+ */
+@Slf4j
+public class ParallelScan {
+
+
+    public enum ShardState { PENDING, RUNNING, DONE, FAILED }
+
+    public static final int DEFAULT_MAX_BUFFERED_ROWS = 10_000;
+
+
+    @Getter
+    private final String tableId;
+    private final BigtableDataClient dataClient;
+    private final Filter filter;
+    private final boolean ordered;
+    private final Consumer<Row> consumer;
+    private final Executor executor;
+    private final int maxBufferedRows;
+    @Getter
+    private final List<Shard> shards;
+
+    private final Queue<Row> ready = new ArrayDeque<>();
+    private int nextShardToDeliver = 0;
+    private int bufferedRows = 0;
+    private boolean draining = false;
+    @Getter
+    private volatile RuntimeException deliveryError;
+
+
+    private ParallelScan(
+        String tableId,
+        BigtableDataClient dataClient,
+        Filter filter,
+        List<ByteStringRange> ranges,
+        boolean ordered,
+        Consumer<Row> consumer,
+        Executor executor,
+        int maxBufferedRows) {
+        this.tableId = tableId;
+        this.dataClient = dataClient;
+        this.filter = filter;
+        this.ordered = ordered;
+        this.consumer = consumer;
+        this.executor = executor;
+        this.maxBufferedRows = maxBufferedRows;
+        List<Shard> shards = new ArrayList<>(ranges.size());
+        for (int index = 0; index < ranges.size(); index++) {
+            shards.add(new Shard(index, ranges.get(index)));
+        }
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    /**
+     * Samples the table, splits it into at most {@code shardCount} shards and starts reading all of them.
+     *
+     * @param filter optional row filter applied to every shard, may be {@code null}
+     */
+    public static ParallelScan start(
+        String tableId,
+        BigtableDataClient dataClient,
+        Filter filter,
+        int shardCount,
+        boolean ordered,
+        Consumer<Row> consumer,
+        Executor executor) {
+        return start(tableId, dataClient, filter, shardCount, ordered, consumer, executor, DEFAULT_MAX_BUFFERED_ROWS);
+    }
+
+    /**
+     * Same as {@link #start(String, BigtableDataClient, Filter, int, boolean, Consumer, Executor)}, buffering at most
+     * about {@code maxBufferedRows} rows in ordered mode.
+     */
+    public static ParallelScan start(
+        String tableId,
+        BigtableDataClient dataClient,
+        Filter filter,
+        int shardCount,
+        boolean ordered,
+        Consumer<Row> consumer,
+        Executor executor,
+        int maxBufferedRows) {
+        List<ByteStringRange> ranges = split(dataClient.sampleRowKeys(tableId), shardCount);
+        log.info("Scanning table {} in {} shards", tableId, ranges.size());
+        ParallelScan scan = new ParallelScan(
+            tableId, dataClient, filter, ranges, ordered, consumer, executor, maxBufferedRows
+        );
+        scan.shards.forEach(scan::submit);
+        return scan;
+    }
+
+    /**
+     * Picks {@code shardCount - 1} evenly spaced sample keys as split points and returns the contiguous ranges
+     * between them. The first range is unbounded below and the last unbounded above.
+     */
+    static List<ByteStringRange> split(List<KeyOffset> samples, int shardCount) {
+        List<ByteString> sampleKeys = samples.stream()
+            .map(KeyOffset::getKey)
+            .filter(key -> !key.isEmpty())
+            .collect(Collectors.toList());
+        TreeSet<ByteString> splitKeys = new TreeSet<>(ByteString.unsignedLexicographicalComparator());
+        for (int i = 1; i < shardCount && !sampleKeys.isEmpty(); i++) {
+            splitKeys.add(sampleKeys.get(Math.min(sampleKeys.size() - 1, i * sampleKeys.size() / shardCount)));
+        }
+
+        List<ByteStringRange> ranges = new ArrayList<>(splitKeys.size() + 1);
+        ByteString start = null;
+        for (ByteString splitKey : splitKeys) {
+            ByteStringRange range = ByteStringRange.unbounded().endOpen(splitKey);
+            ranges.add(null == start ? range : range.startClosed(start));
+            start = splitKey;
+        }
+        ByteStringRange last = ByteStringRange.unbounded();
+        ranges.add(null == start ? last : last.startClosed(start));
+        return ranges;
+    }
+
+    /**
+     * Completes once every shard has either finished or failed.
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return CompletableFuture.allOf(
+            shards.stream().map(shard -> shard.attempt.handle((ignored, error) -> null)).toArray(CompletableFuture[]::new)
+        );
+    }
+
+    public List<Shard> getFailedShards() {
+        return shards.stream().filter(shard -> ShardState.FAILED == shard.state).collect(Collectors.toList());
+    }
+
+    /**
+     * Rows read in ordered mode and not yet handed to the consumer.
+     */
+    public synchronized int getBufferedRows() {
+        return bufferedRows;
+    }
+
+    public boolean isSuccessful() {
+        return null == deliveryError && shards.stream().allMatch(shard -> ShardState.DONE == shard.state);
+    }
+
+    /**
+     * Re-reads a failed shard starting after the last row it delivered.
+     */
+    public CompletableFuture<Void> retryShard(int index) {
+        Shard shard = shards.get(index);
+        if (ShardState.FAILED != shard.state) {
+            throw new IllegalStateException("Shard " + index + " is " + shard.state + ", only failed shards can be retried.");
+        }
+        log.info("Retrying shard {} of table {} after {} rows", index, tableId, shard.rowsRead.get());
+        return submit(shard);
+    }
+
+    private CompletableFuture<Void> submit(Shard shard) {
+        shard.state = ShardState.PENDING;
+        shard.error = null;
+        shard.attempt = CompletableFuture.runAsync(() -> read(shard), executor);
+        return shard.attempt;
+    }
+
+    private void read(Shard shard) {
+        shard.state = ShardState.RUNNING;
+        ByteStringRange range = null == shard.lastRowKey ? shard.range : resumeAfter(shard.range, shard.lastRowKey);
+        Query query = Query.create(tableId).range(range);
+        if (null != filter) {
+            query.filter(filter);
+        }
+        try {
+            for (Row row : dataClient.readRows(query)) {
+                if (ordered) {
+                    deliverInOrder(shard, row);
+                } else {
+                    consumer.accept(row);
+                }
+                shard.lastRowKey = row.getKey();
+                shard.rowsRead.incrementAndGet();
+            }
+            shard.state = ShardState.DONE;
+        } catch (RuntimeException e) {
+            log.error("Shard {} of table {} failed after {} rows: {}", shard.index, tableId, shard.rowsRead.get(), e.getMessage());
+            shard.error = e;
+            shard.state = ShardState.FAILED;
+            throw e;
+        }
+        if (ordered) {
+            deliverCompletedShards();
+        }
+    }
+
+    private static ByteStringRange resumeAfter(ByteStringRange range, ByteString lastRowKey) {
+        ByteStringRange resumed = ByteStringRange.unbounded().startOpen(lastRowKey);
+        switch (range.getEndBound()) {
+            case OPEN:
+                return resumed.endOpen(range.getEnd());
+            case CLOSED:
+                return resumed.endClosed(range.getEnd());
+            default:
+                return resumed;
+        }
+    }
+
+    private void deliverInOrder(Shard shard, Row row) {
+        if (enqueue(shard, row)) {
+            drainReady();
+        }
+    }
+
+    /**
+     * Queues a row of {@code shard} for the consumer if it is the next shard in order, otherwise buffers it. Waits
+     * first while the rows not yet delivered fill the bound. Returns whether the row was queued.
+     */
+    private synchronized boolean enqueue(Shard shard, Row row) {
+        while (bufferedRows >= maxBufferedRows && null == deliveryError) {
+            if (shard.index == nextShardToDeliver) {
+                if (!draining) {
+                    break;
+                }
+            } else {
+                ShardState next = shards.get(nextShardToDeliver).state;
+                if (ShardState.RUNNING != next && ShardState.DONE != next) {
+                    break;
+                }
+            }
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for earlier shards.", e);
+            }
+        }
+        if (null != deliveryError) {
+            throw deliveryError;
+        }
+        bufferedRows++;
+        if (shard.index == nextShardToDeliver) {
+            release(shard);
+            ready.add(row);
+            return true;
+        }
+        shard.buffer.add(row);
+        return false;
+    }
+
+    private void deliverCompletedShards() {
+        advance();
+        drainReady();
+    }
+
+    /**
+     * Queues the buffered rows of every completed shard in order, up to and including the first one still reading.
+     */
+    private synchronized void advance() {
+        while (nextShardToDeliver < shards.size() && null == deliveryError) {
+            Shard shard = shards.get(nextShardToDeliver);
+            release(shard);
+            if (ShardState.DONE != shard.state) {
+                break;
+            }
+            nextShardToDeliver++;
+        }
+        notifyAll();
+    }
+
+    private void release(Shard shard) {
+        ready.addAll(shard.buffer);
+        shard.buffer.clear();
+    }
+
+    /**
+     * Hands queued rows to the consumer until the queue is empty, unless another thread already is. The consumer
+     * runs without the scan's lock. Each row is removed before the consumer sees it, so a failed delivery is never
+     * repeated.
+     */
+    private void drainReady() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        for (Row row = nextReady(); null != row; row = nextReady()) {
+            try {
+                consumer.accept(row);
+            } catch (RuntimeException e) {
+                stop(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Takes the next queued row, or stops draining and returns {@code null} when there is none.
+     */
+    private synchronized Row nextReady() {
+        Row row = null == deliveryError ? ready.poll() : null;
+        if (null == row) {
+            draining = false;
+            notifyAll();
+            return null;
+        }
+        bufferedRows--;
+        if (maxBufferedRows - 1 == bufferedRows) {
+            notifyAll();
+        }
+        return row;
+    }
+
+    private synchronized void stop(RuntimeException e) {
+        log.error("Consumer failed, stopping ordered scan of table {}: {}", tableId, e.getMessage());
+        deliveryError = e;
+        draining = false;
+        notifyAll();
+    }
+
+
+    /**
+     * Progress of one contiguous key range of the scan.
+     */
+    public static class Shard {
+
+        @Getter
+        private final int index;
+        @Getter
+        private final ByteStringRange range;
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final Queue<Row> buffer = new ArrayDeque<>();
+        @Getter
+        private volatile ShardState state = ShardState.PENDING;
+        @Getter
+        private volatile ByteString lastRowKey;
+        @Getter
+        private volatile Throwable error;
+        private volatile CompletableFuture<Void> attempt = new CompletableFuture<>();
+
+        private Shard(int index, ByteStringRange range) {
+            this.index = index;
+            this.range = range;
+        }
+
+        public long getRowsRead() { return rowsRead.get(); }
+
+    }
+
+
+}
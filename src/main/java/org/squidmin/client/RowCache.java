@@ -0,0 +1,162 @@
+package org.squidmin.client;
+
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.squidmin.config.CacheProperties;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+
+
+/**
+ * In-process read-through cache of rows, one bounded Guava cache per table.
+ * <p>
+ * Rows that do not exist are cached as empty so hot missing keys do not reach Bigtable either. Writers are
+ * expected to call {@link #invalidate(String, String)} so readers in the same process see their own writes.
+ * <p>
+ * A read that was in flight when a key was invalidated must not put the row it read before the write. Every
+ * invalidation bumps a generation for the key, and asynchronous readers take the {@link #generation} before the
+ * read and pass it to {@link #put(String, String, Row, long)}, which drops the row if the generation moved.
+ * Generations are striped by row key, so an unrelated invalidation in the same stripe only costs a skipped fill.
+ */
+public class RowCache {
+
+
+    private final CacheProperties properties;
+    private static final int generationStripes = 4096;
+
+    private final Map<String, Cache<String, Optional<Row>>> tables = new ConcurrentHashMap<>();
+    private final AtomicLongArray generations = new AtomicLongArray(generationStripes);
+
+
+    public RowCache(CacheProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the cached row, loading it with {@code loader} on a miss.
+     */
+    public Row get(String tableId, String rowKey, Function<String, Row> loader) {
+        long generation = generation(rowKey);
+        try {
+            Cache<String, Optional<Row>> cache = table(tableId);
+            Optional<Row> row = cache.get(rowKey, () -> Optional.ofNullable(loader.apply(rowKey)));
+            if (generation != generation(rowKey)) {
+                cache.invalidate(rowKey);
+            }
+            return row.orElse(null);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwables.throwIfUnchecked(e.getCause());
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Returns the cache entry for a key without loading it: {@code null} on a miss, an empty optional for a row
+     * known not to exist.
+     */
+    public Optional<Row> getIfPresent(String tableId, String rowKey) {
+        return table(tableId).getIfPresent(rowKey);
+    }
+
+    /**
+     * The current generation of a row key, to be taken before reading the row that will be {@link #put}.
+     */
+    public long generation(String rowKey) {
+        return generations.get(stripe(rowKey));
+    }
+
+    /**
+     * Caches a row read when the key was at {@code generation}, unless the key has been invalidated since. The
+     * generation is checked again after the put, so an invalidation racing with it removes the row.
+     */
+    public void put(String tableId, String rowKey, Row row, long generation) {
+        if (generation != generation(rowKey)) {
+            return;
+        }
+        Cache<String, Optional<Row>> cache = table(tableId);
+        cache.put(rowKey, Optional.ofNullable(row));
+        if (generation != generation(rowKey)) {
+            cache.invalidate(rowKey);
+        }
+    }
+
+    public void invalidate(String tableId, String rowKey) {
+        generations.incrementAndGet(stripe(rowKey));
+        Cache<String, Optional<Row>> cache = tables.get(tableId);
+        if (null != cache) {
+            cache.invalidate(rowKey);
+        }
+    }
+
+    /**
+     * Invalidates a row key in every table, for writes whose target table is not known.
+     */
+    public void invalidate(String rowKey) {
+        generations.incrementAndGet(stripe(rowKey));
+        tables.values().forEach(cache -> cache.invalidate(rowKey));
+    }
+
+    public void invalidateAll() {
+        for (int stripe = 0; stripe < generationStripes; stripe++) {
+            generations.incrementAndGet(stripe);
+        }
+        tables.values().forEach(Cache::invalidateAll);
+    }
+
+    /**
+     * Hit, miss and eviction counts summed over all tables.
+     */
+    public CacheStats stats() {
+        return tables.values().stream()
+            .map(Cache::stats)
+            .reduce(new CacheStats(0, 0, 0, 0, 0, 0), CacheStats::plus);
+    }
+
+    public long size() {
+        return tables.values().stream().mapToLong(Cache::size).sum();
+    }
+
+    private Cache<String, Optional<Row>> table(String tableId) {
+        return tables.computeIfAbsent(tableId, id -> {
+            CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+                .expireAfterWrite(properties.getTtl().toMillis(), TimeUnit.MILLISECONDS)
+                .recordStats();
+            if (0 < properties.getMaximumWeightBytes()) {
+                return builder
+                    .maximumWeight(properties.getMaximumWeightBytes())
+                    .weigher((String rowKey, Optional<Row> row) -> weigh(rowKey, row))
+                    .build();
+            }
+            return builder.maximumSize(properties.getMaximumSize()).build();
+        });
+    }
+
+    private static int stripe(String rowKey) {
+        int hash = rowKey.hashCode();
+        return (hash ^ (hash >>> 16)) & (generationStripes - 1);
+    }
+
+    private static int weigh(String rowKey, Optional<Row> row) {
+        long weight = rowKey.length();
+        if (row.isPresent()) {
+            for (RowCell cell : row.get().getCells()) {
+                weight += cell.getFamily().length() + cell.getQualifier().size() + cell.getValue().size() + Long.BYTES;
+            }
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+
+}
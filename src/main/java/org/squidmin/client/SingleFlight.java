@@ -0,0 +1,165 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.rpc.ApiExceptions;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+
+/**
+ * Coalesces identical concurrent requests: while a call for a key is in flight, further callers with an equal
+ * key wait for that call's result instead of issuing their own.
+ * <p>
+ * Results are shared between callers, so they must not be mutated. Keys must implement {@code equals} and
+ * {@code hashCode} and must not change while in flight.
+ */
+public class SingleFlight<K, V> {
+
+
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+
+
+    /**
+     * Runs {@code call} on the calling thread unless an equal call is already in flight, in which case it blocks
+     * until that call completes and returns its result. Blocked callers count as waiters that never cancel.
+     */
+    public V execute(K key, Supplier<V> call) {
+        requests.incrementAndGet();
+        Flight<V> own = new Flight<>();
+        Flight<V> flight = join(key, own);
+        if (flight != own) {
+            return ApiExceptions.callAndTranslateApiException(flight.result);
+        }
+        executions.incrementAndGet();
+        try {
+            V result = call.get();
+            inFlight.remove(key, flight);
+            flight.result.set(result);
+            return result;
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.result.setException(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts {@code call} unless an equal call is already in flight. Every caller gets its own future. Cancelling
+     * it only detaches that caller; when the last waiter of a call cancels, the call itself is cancelled and the
+     * next caller starts a new one.
+     */
+    public ApiFuture<V> executeAsync(K key, Supplier<ApiFuture<V>> call) {
+        requests.incrementAndGet();
+        Flight<V> own = new Flight<>();
+        Flight<V> flight = join(key, own);
+        if (flight == own) {
+            executions.incrementAndGet();
+            ApiFuture<V> rpc;
+            try {
+                rpc = call.get();
+            } catch (RuntimeException e) {
+                rpc = ApiFutures.immediateFailedFuture(e);
+            }
+            flight.rpc = rpc;
+            rpc.addListener(() -> inFlight.remove(key, flight), MoreExecutors.directExecutor());
+            forward(rpc, flight.result);
+        }
+        SettableApiFuture<V> waiter = forward(flight.result, SettableApiFuture.create());
+        waiter.addListener(() -> {
+            if (waiter.isCancelled() && flight.leave()) {
+                inFlight.remove(key, flight);
+                ApiFuture<V> rpc = flight.rpc;
+                if (null != rpc) {
+                    rpc.cancel(true);
+                }
+            }
+        }, MoreExecutors.directExecutor());
+        return waiter;
+    }
+
+    public long getRequests() { return requests.get(); }
+
+    public long getExecutions() { return executions.get(); }
+
+    /**
+     * Number of requests that were served by another caller's in-flight call.
+     */
+    public long getSavedCalls() { return requests.get() - executions.get(); }
+
+    public int getInFlightCount() { return inFlight.size(); }
+
+    /**
+     * Joins the flight of an equal key as a waiter, or registers {@code own} and returns it if there is none. Flights
+     * abandoned by all their waiters are replaced.
+     */
+    private Flight<V> join(K key, Flight<V> own) {
+        own.join();
+        while (true) {
+            Flight<V> existing = inFlight.putIfAbsent(key, own);
+            if (null == existing) {
+                return own;
+            }
+            if (existing.join()) {
+                return existing;
+            }
+            inFlight.remove(key, existing);
+        }
+    }
+
+    private static <V> SettableApiFuture<V> forward(ApiFuture<V> source, SettableApiFuture<V> target) {
+        ApiFutures.addCallback(source, new ApiFutureCallback<V>() {
+            @Override
+            public void onSuccess(V result) { target.set(result); }
+
+            @Override
+            public void onFailure(Throwable t) { target.setException(t); }
+        }, MoreExecutors.directExecutor());
+        return target;
+    }
+
+
+    /**
+     * One shared call and the number of callers still waiting for it.
+     */
+    private static final class Flight<V> {
+
+        private final SettableApiFuture<V> result = SettableApiFuture.create();
+        private volatile ApiFuture<V> rpc;
+        private int waiters;
+        private boolean abandoned;
+
+        private synchronized boolean join() {
+            if (abandoned) {
+                return false;
+            }
+            waiters++;
+            return true;
+        }
+
+        /**
+         * Removes a cancelled waiter and returns whether it was the last one of a call still running.
+         */
+        private synchronized boolean leave() {
+            waiters--;
+            if (0 == waiters && !result.isDone()) {
+                abandoned = true;
+                return true;
+            }
+            return false;
+        }
+
+    }
+
+
+}
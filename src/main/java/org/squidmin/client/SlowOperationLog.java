@@ -0,0 +1,179 @@
+package org.squidmin.client;
+
+
+import com.google.cloud.bigtable.data.v2.models.Filters.Filter;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.squidmin.config.SlowLogProperties;
+import org.squidmin.util.FilterFingerprint;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Logs calls slower than a threshold, and optionally a sample of the others, identified by operation and
+ * {@link FilterFingerprint filter fingerprint}. Every call is also aggregated per fingerprint, so the most expensive
+ * query patterns can be read from {@link #getStats()} without logging each call.
+ * <p>
+ * Fast calls cost a fingerprint lookup and a few counter updates. The readable shape of a filter is only built the
+ * first time its fingerprint is seen.
+ */
+@Slf4j
+public class SlowOperationLog {
+
+
+    private final long thresholdNanos;
+    private final int sampleRate;
+    private final int maxFingerprints;
+    private final Map<StatsKey, Stats> stats = new ConcurrentHashMap<>();
+    private final LongAdder untracked = new LongAdder();
+
+
+    public SlowOperationLog(SlowLogProperties properties) {
+        this.thresholdNanos = properties.getThreshold().toNanos();
+        this.sampleRate = properties.getSampleRate();
+        this.maxFingerprints = properties.getMaxFingerprints();
+    }
+
+    public void record(String operation, Filter filter, long nanos, long rows, Throwable error) {
+        long fingerprint = FilterFingerprint.of(filter);
+        Stats entry = stats(operation, fingerprint, filter);
+        boolean slow = nanos >= thresholdNanos;
+        if (null != entry) {
+            entry.add(nanos, slow, null != error);
+        }
+        if (slow) {
+            log.warn("Slow {} took {} ms ({} rows{}), fingerprint {}: {}",
+                operation, TimeUnit.NANOSECONDS.toMillis(nanos), rows, outcome(error),
+                FilterFingerprint.toHex(fingerprint), shape(entry, filter));
+        } else if (sampleRate > 0 && 0 == ThreadLocalRandom.current().nextInt(sampleRate)) {
+            log.info("Sampled {} took {} ms ({} rows{}), fingerprint {}: {}",
+                operation, TimeUnit.NANOSECONDS.toMillis(nanos), rows, outcome(error),
+                FilterFingerprint.toHex(fingerprint), shape(entry, filter));
+        }
+    }
+
+    /**
+     * Returns the statistics of every tracked fingerprint, by total time spent, highest first.
+     */
+    public List<Stats> getStats() {
+        List<Stats> snapshot = new ArrayList<>(stats.values());
+        snapshot.sort(Comparator.comparingLong(Stats::getTotalNanos).reversed());
+        return snapshot;
+    }
+
+    /**
+     * Calls not aggregated because {@code maxFingerprints} distinct fingerprints were already tracked.
+     */
+    public long getUntrackedCount() {
+        return untracked.sum();
+    }
+
+    public void reset() {
+        stats.clear();
+        untracked.reset();
+    }
+
+    private Stats stats(String operation, long fingerprint, Filter filter) {
+        StatsKey key = new StatsKey(operation, fingerprint);
+        Stats entry = stats.get(key);
+        if (null != entry) {
+            return entry;
+        }
+        if (stats.size() >= maxFingerprints) {
+            untracked.increment();
+            return null;
+        }
+        return stats.computeIfAbsent(key, k -> new Stats(operation, fingerprint, FilterFingerprint.shape(filter)));
+    }
+
+    private static String shape(Stats entry, Filter filter) {
+        return null != entry ? entry.getShape() : FilterFingerprint.shape(filter);
+    }
+
+    private static String outcome(Throwable error) {
+        return null == error ? "" : ", failed with " + error.getClass().getSimpleName();
+    }
+
+
+    /**
+     * Identifies the stats of one operation and fingerprint. Both are compared, so distinct pairs never share stats.
+     */
+    @RequiredArgsConstructor
+    @EqualsAndHashCode
+    private static final class StatsKey {
+
+        private final String operation;
+        private final long fingerprint;
+
+    }
+
+
+    /**
+     * Aggregated calls of one operation and fingerprint.
+     */
+    public static class Stats {
+
+        private final String operation;
+        private final long fingerprint;
+        private final String shape;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder slowCount = new LongAdder();
+        private final LongAdder errorCount = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Stats(String operation, long fingerprint, String shape) {
+            this.operation = operation;
+            this.fingerprint = fingerprint;
+            this.shape = shape;
+        }
+
+        private void add(long nanos, boolean slow, boolean failed) {
+            count.increment();
+            totalNanos.add(nanos);
+            if (slow) {
+                slowCount.increment();
+            }
+            if (failed) {
+                errorCount.increment();
+            }
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        public String getOperation() { return operation; }
+
+        public long getFingerprint() { return fingerprint; }
+
+        public String getShape() { return shape; }
+
+        public long getCount() { return count.sum(); }
+
+        public long getSlowCount() { return slowCount.sum(); }
+
+        public long getErrorCount() { return errorCount.sum(); }
+
+        public long getTotalNanos() { return totalNanos.sum(); }
+
+        public long getMaxNanos() { return maxNanos.get(); }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s count=%d slow=%d errors=%d total=%dms max=%dms: %s",
+                operation, FilterFingerprint.toHex(fingerprint), getCount(), getSlowCount(), getErrorCount(),
+                TimeUnit.NANOSECONDS.toMillis(getTotalNanos()), TimeUnit.NANOSECONDS.toMillis(getMaxNanos()), shape);
+        }
+
+    }
+
+
+}
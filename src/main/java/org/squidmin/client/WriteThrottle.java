@@ -0,0 +1,413 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.bigtable.data.v2.models.MutateRowsException;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.squidmin.config.WriteThrottleProperties;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Adaptive flow control for writes, shared by every write path of a {@code BigtableClientManager}. Writes take
+ * permits for the mutations they send, bounded by an in-flight limit and a rate limit, and return them with the
+ * outcome of the call.
+ * <p>
+ * Both limits follow AIMD. Every {@code adjustInterval} the mean latency of the successful writes is compared with
+ * {@code targetLatency}: below it, and if the limits held writes back, each limit grows by a fixed step; above it,
+ * both are multiplied by {@code decreaseFactor}. A {@code RESOURCE_EXHAUSTED} or {@code DEADLINE_EXCEEDED} failure
+ * cuts them at once. Cuts are at least {@code adjustInterval} apart, so one burst of failures from calls sent under
+ * the old limits counts as one signal.
+ * <p>
+ * A write larger than the in-flight limit is let through when nothing else is in flight, so it cannot wait forever.
+ * Writes queued with {@link #acquireAsync} are admitted in order, ahead of later callers of {@link #acquire}.
+ */
+@Slf4j
+public class WriteThrottle {
+
+
+    public static final String LATENCY = "latency";
+
+    /** Causes of a cut: high latency, or a failure with one of the overload status codes. */
+    public static final List<String> DECREASE_CAUSES = Collections.unmodifiableList(Arrays.asList(
+        LATENCY, StatusCode.Code.RESOURCE_EXHAUSTED.name(), StatusCode.Code.DEADLINE_EXCEEDED.name()
+    ));
+
+    private final WriteThrottleProperties properties;
+    private final Ticker ticker;
+    private final Sleeper sleeper;
+    private final Scheduler scheduler;
+    private final long targetLatencyNanos;
+    private final long adjustIntervalNanos;
+
+    private double inFlightLimit;
+    private double rate;
+    private long inFlight = 0;
+    private long nextFreeNanos;
+    private long windowEndNanos;
+    private long windowLatencyNanos = 0;
+    private long windowCount = 0;
+    private boolean windowSaturated = false;
+    private long lastDecreaseNanos;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    private final Map<String, AtomicLong> decreases = new HashMap<>();
+
+
+    public WriteThrottle(WriteThrottleProperties properties) {
+        this(
+            properties, Ticker.systemTicker(), TimeUnit.NANOSECONDS::sleep,
+            (task, nanos) -> CompletableFuture.delayedExecutor(nanos, TimeUnit.NANOSECONDS).execute(task)
+        );
+    }
+
+    /**
+     * Creates a throttle reading time from {@code ticker}, waiting for the rate limit with {@code sleeper} in
+     * {@link #acquire} and with {@code scheduler} in {@link #acquireAsync}, so tests can run it on simulated time.
+     */
+    public WriteThrottle(WriteThrottleProperties properties, Ticker ticker, Sleeper sleeper, Scheduler scheduler) {
+        this.properties = properties;
+        this.ticker = ticker;
+        this.sleeper = sleeper;
+        this.scheduler = scheduler;
+        this.targetLatencyNanos = properties.getTargetLatency().toNanos();
+        this.adjustIntervalNanos = properties.getAdjustInterval().toNanos();
+        this.inFlightLimit = clamp(
+            properties.getInitialInFlight(), properties.getMinInFlight(), properties.getMaxInFlight()
+        );
+        this.rate = clamp(properties.getInitialRate(), properties.getMinRate(), properties.getMaxRate());
+        long now = ticker.read();
+        this.nextFreeNanos = now;
+        this.windowEndNanos = now + adjustIntervalNanos;
+        this.lastDecreaseNanos = now - adjustIntervalNanos;
+        DECREASE_CAUSES.forEach(cause -> decreases.put(cause, new AtomicLong()));
+    }
+
+    /**
+     * Takes permits for {@code mutations} mutations, waiting for the in-flight limit and then for the rate limit.
+     * Every permit must be returned with {@link #release}.
+     */
+    public Permit acquire(int mutations) throws InterruptedException {
+        long delay;
+        synchronized (this) {
+            while (!waiters.isEmpty() || full(mutations)) {
+                windowSaturated = true;
+                wait();
+            }
+            inFlight += mutations;
+            delay = reserve(mutations, ticker.read());
+        }
+        return admit(mutations, delay);
+    }
+
+    /**
+     * Takes permits without blocking. The future completes once the in-flight limit and then the rate limit admit
+     * the write, on the thread that released the permits or on the scheduler's, so callers should chain the write
+     * with a direct executor. Cancelling the future before it completes gives the permits up; once it completes,
+     * the permit must be returned with {@link #release}.
+     */
+    public ApiFuture<Permit> acquireAsync(int mutations) {
+        Waiter waiter = new Waiter(mutations);
+        waiter.permit.addListener(() -> {
+            if (waiter.permit.isCancelled()) {
+                cancelled(waiter);
+            }
+        }, MoreExecutors.directExecutor());
+        long delay;
+        synchronized (this) {
+            if (!waiters.isEmpty() || full(mutations)) {
+                windowSaturated = true;
+                waiters.add(waiter);
+                return waiter.permit;
+            }
+            inFlight += mutations;
+            delay = reserve(mutations, ticker.read());
+        }
+        grant(waiter, delay);
+        return waiter.permit;
+    }
+
+    /**
+     * Takes permits without waiting for the in-flight limit, and only if the rate limit admits the write within
+     * {@code timeout}, waiting for it. Returns {@code null} when the write is not admitted.
+     */
+    public Permit tryAcquire(int mutations, long timeout, TimeUnit unit) throws InterruptedException {
+        long delay;
+        synchronized (this) {
+            long now = ticker.read();
+            if (!waiters.isEmpty() || full(mutations) || nextFreeNanos - now > unit.toNanos(timeout)) {
+                windowSaturated = true;
+                return null;
+            }
+            inFlight += mutations;
+            delay = reserve(mutations, now);
+        }
+        return admit(mutations, delay);
+    }
+
+    /**
+     * Returns the permits of a finished write. {@code error} is the failure of the call, or {@code null} if it
+     * succeeded. Only successful writes count towards the latency, and only overload failures cut the limits.
+     */
+    public void release(Permit permit, Throwable error) {
+        long now = ticker.read();
+        List<Runnable> grants;
+        synchronized (this) {
+            inFlight -= permit.mutations;
+            if (null == error) {
+                windowLatencyNanos += now - permit.startNanos;
+                windowCount++;
+            } else {
+                String code = overloadCode(error);
+                if (null != code) {
+                    decrease(now, code);
+                }
+            }
+            if (now >= windowEndNanos) {
+                adjust(now);
+            }
+            grants = admitWaiters(now);
+            notifyAll();
+        }
+        grants.forEach(Runnable::run);
+    }
+
+    public synchronized int getInFlightLimit() {
+        return (int) inFlightLimit;
+    }
+
+    public synchronized double getRateLimit() {
+        return rate;
+    }
+
+    public synchronized long getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Number of cuts for one of the {@link #DECREASE_CAUSES}.
+     */
+    public long getDecreaseCount(String cause) {
+        return decreases.get(cause).get();
+    }
+
+    /**
+     * Waits out the rate limit delay of a blocking caller, giving its permits back if interrupted.
+     */
+    private Permit admit(int mutations, long delay) throws InterruptedException {
+        if (delay > 0) {
+            try {
+                sleeper.sleep(delay);
+            } catch (InterruptedException e) {
+                giveBack(mutations);
+                throw e;
+            }
+        }
+        return new Permit(mutations, ticker.read());
+    }
+
+    /**
+     * Completes an admitted waiter once its rate limit delay has passed.
+     */
+    private void grant(Waiter waiter, long delay) {
+        if (delay > 0) {
+            scheduler.schedule(() -> complete(waiter), delay);
+        } else {
+            complete(waiter);
+        }
+    }
+
+    private void complete(Waiter waiter) {
+        if (!waiter.permit.set(new Permit(waiter.mutations, ticker.read()))) {
+            giveBack(waiter.mutations);
+        }
+    }
+
+    /**
+     * Drops a waiter cancelled while queued. A waiter cancelled after it was admitted gives its permits back when
+     * {@link #complete} finds it cancelled.
+     */
+    private void cancelled(Waiter waiter) {
+        List<Runnable> grants;
+        synchronized (this) {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            grants = admitWaiters(ticker.read());
+            notifyAll();
+        }
+        grants.forEach(Runnable::run);
+    }
+
+    /**
+     * Returns permits that were taken but never used by a write.
+     */
+    private void giveBack(int mutations) {
+        List<Runnable> grants;
+        synchronized (this) {
+            inFlight -= mutations;
+            grants = admitWaiters(ticker.read());
+            notifyAll();
+        }
+        grants.forEach(Runnable::run);
+    }
+
+    /**
+     * Admits queued waiters in order while the in-flight limit allows, and returns the grants to run once the lock
+     * is released.
+     */
+    private List<Runnable> admitWaiters(long now) {
+        List<Runnable> grants = new ArrayList<>();
+        while (!waiters.isEmpty() && !full(waiters.peek().mutations)) {
+            Waiter waiter = waiters.poll();
+            inFlight += waiter.mutations;
+            long delay = reserve(waiter.mutations, now);
+            grants.add(() -> grant(waiter, delay));
+        }
+        return grants;
+    }
+
+    private boolean full(int mutations) {
+        return inFlight > 0 && inFlight + mutations > inFlightLimit;
+    }
+
+    /**
+     * Books the next {@code mutations} slots of the rate limit and returns how long the caller must wait for them.
+     * Unused time is not saved up, so the limit allows no bursts after a pause.
+     */
+    private long reserve(int mutations, long now) {
+        long start = Math.max(nextFreeNanos, now);
+        nextFreeNanos = start + (long) (mutations * TimeUnit.SECONDS.toNanos(1) / rate);
+        if (start > now) {
+            windowSaturated = true;
+        }
+        return start - now;
+    }
+
+    private void adjust(long now) {
+        if (windowCount > 0 && windowLatencyNanos / windowCount > targetLatencyNanos) {
+            decrease(now, LATENCY);
+        } else if (windowSaturated && now - lastDecreaseNanos >= adjustIntervalNanos) {
+            inFlightLimit = clamp(inFlightLimit + properties.getInFlightIncrease(),
+                properties.getMinInFlight(), properties.getMaxInFlight());
+            rate = clamp(rate + properties.getRateIncrease(), properties.getMinRate(), properties.getMaxRate());
+        }
+        windowLatencyNanos = 0;
+        windowCount = 0;
+        windowSaturated = false;
+        windowEndNanos = now + adjustIntervalNanos;
+    }
+
+    private void decrease(long now, String cause) {
+        if (now - lastDecreaseNanos < adjustIntervalNanos) {
+            return;
+        }
+        lastDecreaseNanos = now;
+        double factor = properties.getDecreaseFactor();
+        inFlightLimit = clamp(inFlightLimit * factor, properties.getMinInFlight(), properties.getMaxInFlight());
+        rate = clamp(rate * factor, properties.getMinRate(), properties.getMaxRate());
+        decreases.get(cause).incrementAndGet();
+        log.warn("Write limits cut to {} in flight and {} mutations/s ({}).",
+            (int) inFlightLimit, Math.round(rate), cause);
+    }
+
+    /**
+     * The status code of {@code error} if it signals overload, including partial bulk failures, otherwise
+     * {@code null}.
+     */
+    static String overloadCode(Throwable error) {
+        for (Throwable cause = error; null != cause; cause = cause.getCause()) {
+            if (cause instanceof MutateRowsException) {
+                for (MutateRowsException.FailedMutation failed : ((MutateRowsException) cause).getFailedMutations()) {
+                    String code = overloadCode(failed.getError());
+                    if (null != code) {
+                        return code;
+                    }
+                }
+                return null;
+            }
+            if (cause instanceof ApiException) {
+                StatusCode.Code code = ((ApiException) cause).getStatusCode().getCode();
+                return StatusCode.Code.RESOURCE_EXHAUSTED == code || StatusCode.Code.DEADLINE_EXCEEDED == code
+                    ? code.name() : null;
+            }
+            if (cause == cause.getCause()) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+
+    /**
+     * Permits held by one write, and when it started.
+     */
+    public static final class Permit {
+
+        private final int mutations;
+        private final long startNanos;
+
+        private Permit(int mutations, long startNanos) {
+            this.mutations = mutations;
+            this.startNanos = startNanos;
+        }
+
+    }
+
+
+    /**
+     * A caller of {@link #acquireAsync} and the permit it waits for.
+     */
+    private static final class Waiter {
+
+        private final int mutations;
+        private final SettableApiFuture<Permit> permit = SettableApiFuture.create();
+
+        private Waiter(int mutations) {
+            this.mutations = mutations;
+        }
+
+    }
+
+
+    @FunctionalInterface
+    public interface Sleeper {
+
+        void sleep(long nanos) throws InterruptedException;
+
+    }
+
+
+    @FunctionalInterface
+    public interface Scheduler {
+
+        /**
+         * Runs {@code task} once {@code nanos} have passed, without blocking the caller.
+         */
+        void schedule(Runnable task, long nanos);
+
+    }
+
+
+}
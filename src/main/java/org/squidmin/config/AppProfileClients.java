@@ -0,0 +1,95 @@
+package org.squidmin.config;
+
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.common.collect.ImmutableMap;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Data clients bound to named app profiles, and the routing of {@code BigtableClient} operations to them. By default
+ * point reads and filtered reads go to {@code interactive}, scans to {@code batch} and writes to {@code write};
+ * {@link RoutingProperties#getOperations()} overrides single operations.
+ */
+@Slf4j
+public class AppProfileClients implements AutoCloseable {
+
+    public static final String INTERACTIVE = "interactive";
+    public static final String BATCH = "batch";
+    public static final String WRITE = "write";
+
+    static final Map<String, String> defaultRoutes = ImmutableMap.<String, String>builder()
+        .put("read-by-row-key", INTERACTIVE)
+        .put("read-by-row-keys", INTERACTIVE)
+        .put("read-filter", INTERACTIVE)
+        .put("read-filter-latest", INTERACTIVE)
+        .put("read-range", BATCH)
+        .put("read-rows", BATCH)
+        .put("read-table", BATCH)
+        .put("read-table-parallel", BATCH)
+        .put("write", WRITE)
+        .put("write-single-row", WRITE)
+        .put("write-rows", WRITE)
+        .put("write-async", WRITE)
+        .build();
+
+    private final Map<String, BigtableDataClient> clients;
+    private final Map<String, String> routes;
+
+    AppProfileClients(Map<String, BigtableDataClient> clients, Map<String, String> operations) {
+        this.clients = Collections.unmodifiableMap(clients);
+        Map<String, String> routes = new HashMap<>(defaultRoutes);
+        routes.putAll(operations);
+        this.routes = Collections.unmodifiableMap(routes);
+    }
+
+    /**
+     * Creates one data client per configured app profile from {@code settings}, which supplies everything else.
+     */
+    public static AppProfileClients create(BigtableDataSettings settings, RoutingProperties properties) throws IOException {
+        Map<String, BigtableDataClient> clients = new LinkedHashMap<>();
+        try {
+            for (Map.Entry<String, String> appProfile : properties.getAppProfiles().entrySet()) {
+                clients.put(appProfile.getKey(), BigtableDataClient.create(
+                    settings.toBuilder().setAppProfileId(appProfile.getValue()).build()
+                ));
+                log.info("Created data client {} for app profile {}", appProfile.getKey(), appProfile.getValue());
+            }
+        } catch (IOException | RuntimeException e) {
+            clients.values().forEach(BigtableDataClient::close);
+            throw e;
+        }
+        return new AppProfileClients(clients, properties.getOperations());
+    }
+
+    /**
+     * Returns the named client, or {@code null} when no app profile is configured under that name.
+     */
+    public BigtableDataClient get(String name) {
+        return clients.get(name);
+    }
+
+    /**
+     * Returns the client an operation is routed to, or {@code null} when it is routed to the default client.
+     */
+    public BigtableDataClient forOperation(String operation) {
+        String name = routes.get(operation);
+        return null == name ? null : clients.get(name);
+    }
+
+    public Set<String> getNames() {
+        return clients.keySet();
+    }
+
+    @Override
+    public void close() {
+        clients.values().forEach(BigtableDataClient::close);
+    }
+
+}
@@ -4,25 +4,40 @@ import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
 import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
 import com.google.cloud.bigtable.data.v2.BigtableDataClient;
 import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import lombok.AccessLevel;
 import lombok.Getter;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.squidmin.client.BigtableBulkWriter;
+import org.squidmin.client.WriteThrottle;
+import org.squidmin.exception.InvalidSchemaException;
 import org.squidmin.model.BigtableStructure;
 import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.util.CompiledSchema;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
+@EnableConfigurationProperties(value = {
+    BulkWriterProperties.class, TransportProperties.class, RoutingProperties.class, WriteThrottleProperties.class
+})
 @ComponentScan(basePackages = {
     "org.squidmin.bigtable-labs"
 })
 @Getter
 @Slf4j
-public class BigtableClientManager {
+public class BigtableClientManager implements DisposableBean {
 
 
     private final String projectId;
@@ -32,30 +47,87 @@ public class BigtableClientManager {
     private final BigtableDataClient dataClient;
     private final BigtableTableAdminClient tableAdminClient;
     private final BigtableTableAdminSettings tableAdminSettings;
+    private final BulkWriterProperties bulkWriterProperties;
+    private final TransportProperties transportProperties;
+
+    /** Limits every write path, or {@code null} when write throttling is disabled. */
+    private final WriteThrottle writeThrottle;
+
+    @Getter(AccessLevel.NONE)
+    private final AppProfileClients appProfileClients;
+
+    @Getter(AccessLevel.NONE)
+    private final Map<String, BigtableBulkWriter> bulkWriters = new ConcurrentHashMap<>();
+
+    @Getter(AccessLevel.NONE)
+    private volatile CompiledSchema compiledSchema;
+
+
+    public BigtableClientManager(String projectId, String instanceId, BigtableStructure btStructure) throws IOException {
+        this(projectId, instanceId, btStructure, new BulkWriterProperties(), new TransportProperties());
+    }
 
+    public BigtableClientManager(
+        String projectId,
+        String instanceId,
+        BigtableStructure btStructure,
+        BulkWriterProperties bulkWriterProperties,
+        TransportProperties transportProperties) throws IOException {
+        this(projectId, instanceId, btStructure, bulkWriterProperties, transportProperties, new RoutingProperties());
+    }
+
+    public BigtableClientManager(
+        String projectId,
+        String instanceId,
+        BigtableStructure btStructure,
+        BulkWriterProperties bulkWriterProperties,
+        TransportProperties transportProperties,
+        RoutingProperties routingProperties) throws IOException {
+        this(
+            projectId, instanceId, btStructure, bulkWriterProperties, transportProperties, routingProperties,
+            new WriteThrottleProperties()
+        );
+    }
 
     @Autowired
     public BigtableClientManager(
         @Value("${spring.cloud.gcp.project-id}") String projectId,
         @Value("${bigtable.instance-id}") String instanceId,
-        BigtableStructure btStructure) throws IOException {
+        BigtableStructure btStructure,
+        BulkWriterProperties bulkWriterProperties,
+        TransportProperties transportProperties,
+        RoutingProperties routingProperties,
+        WriteThrottleProperties writeThrottleProperties) throws IOException {
         this.projectId = projectId;
         this.instanceId = instanceId;
         this.btStructure = btStructure;
+        this.bulkWriterProperties = bulkWriterProperties;
+        this.transportProperties = transportProperties;
+        this.writeThrottle = writeThrottleProperties.isEnabled() ? new WriteThrottle(writeThrottleProperties) : null;
 
-        dataSettings = BigtableDataSettings.newBuilder()
-            .setProjectId(projectId)
-            .setInstanceId(instanceId)
-            .build();
+        dataSettings = DataSettingsFactory.create(projectId, instanceId, transportProperties);
 
-        tableAdminSettings = BigtableTableAdminSettings.newBuilder()
-            .setProjectId(projectId)
-            .setInstanceId(instanceId)
-            .build();
+        tableAdminSettings = DataSettingsFactory.createAdmin(projectId, instanceId, transportProperties);
 
         tableAdminClient = BigtableTableAdminClient.create(tableAdminSettings);
+        try {
+            long start = System.nanoTime();
+            dataClient = BigtableDataClient.create(dataSettings);
+            log.info("Created data client in {} ms (channel warm-up {}).",
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                dataSettings.isRefreshingChannel() ? "enabled" : "disabled");
+            try {
+                appProfileClients = AppProfileClients.create(dataSettings, routingProperties);
+            } catch (IOException | RuntimeException e) {
+                dataClient.close();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            tableAdminClient.close();
+            throw e;
+        }
 
-        dataClient = BigtableDataClient.create(projectId, instanceId);
+        compileSchema();
     }
 
     public int getMaxQualifierLength() {
@@ -67,5 +139,86 @@ public class BigtableClientManager {
         return maxQualifierLength;
     }
 
+    /**
+     * Returns the schema compiled from the current {@link BigtableStructure}.
+     *
+     * @throws InvalidSchemaException if the configured structure could not be compiled
+     */
+    public CompiledSchema getCompiledSchema() throws InvalidSchemaException {
+        CompiledSchema schema = compiledSchema;
+        if (null == schema) {
+            throw new InvalidSchemaException("No valid column family structure is configured.");
+        }
+        return schema;
+    }
+
+    /**
+     * Recompiles the schema after a refresh has re-bound the {@code @RefreshScope} {@link BigtableStructure}.
+     * Callers holding the previous schema keep using it until they fetch it again.
+     */
+    @EventListener(RefreshScopeRefreshedEvent.class)
+    public void compileSchema() {
+        try {
+            compiledSchema = CompiledSchema.compile(btStructure);
+            log.info("Compiled schema for column family {}: {}",
+                compiledSchema.getColumnFamily(), compiledSchema.getQualifierNames());
+        } catch (InvalidSchemaException e) {
+            log.error("Failed to compile schema: {}", e.getMessage());
+            compiledSchema = null;
+        }
+    }
+
+    /**
+     * Returns the data client bound to the named app profile, or {@code null} when none is configured under that
+     * name.
+     */
+    public BigtableDataClient getDataClient(String name) {
+        return appProfileClients.get(name);
+    }
+
+    /**
+     * Returns the app profile client an operation is routed to, or {@code null} when it uses the default client.
+     */
+    public BigtableDataClient getDataClientFor(String operation) {
+        return appProfileClients.forOperation(operation);
+    }
+
+    /**
+     * Returns the long-lived bulk writer for a table, creating it on first use. Writers use the client that
+     * {@code write-async} is routed to, and the write throttle when it is enabled.
+     */
+    public BigtableBulkWriter getBulkWriter(String tableId) {
+        return bulkWriters.computeIfAbsent(tableId, id -> {
+            BigtableDataClient client = getDataClientFor("write-async");
+            return new BigtableBulkWriter(
+                id, null == client ? dataClient : client, bulkWriterProperties, writeThrottle
+            );
+        });
+    }
+
+    /**
+     * Drains and closes every bulk writer. Writers are recreated on the next call to {@link #getBulkWriter}.
+     */
+    public void closeBulkWriters() {
+        bulkWriters.values().forEach(BigtableBulkWriter::close);
+        bulkWriters.clear();
+    }
+
+    public void closeAppProfileClients() {
+        appProfileClients.close();
+    }
+
+    /**
+     * Closes the clients in reverse order of creation: bulk writers, app profile clients, the data client and then
+     * the table admin client.
+     */
+    @Override
+    public void destroy() {
+        closeBulkWriters();
+        closeAppProfileClients();
+        dataClient.close();
+        tableAdminClient.close();
+    }
+
 
 }
@@ -0,0 +1,33 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "bigtable.bulk-load")
+@Data
+public class BulkLoadProperties {
+
+    /** Threads parsing and encoding records. */
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Target size of the line-aligned chunks the input file is split into. Each chunk is mapped separately, so larger
+     * values are capped at 2 GB.
+     */
+    private long chunkBytes = 16L * 1024 * 1024;
+
+    /** Chunks queued ahead of the workers; the splitter blocks once the queue is full. */
+    private int queueCapacity = 8;
+
+    /** Minimum time between checkpoint writes. */
+    private Duration checkpointInterval = Duration.ofSeconds(5);
+
+    /** Skip the first line of CSV input. */
+    private boolean skipHeader = false;
+
+    /** Rejected records logged individually; the rest are only counted. */
+    private int maxLoggedRejects = 100;
+
+}
@@ -0,0 +1,24 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "bigtable.bulk-writer")
+@Data
+public class BulkWriterProperties {
+
+    /** Number of buffered entries that triggers a flush. */
+    private int maxBatchEntries = 100;
+
+    /** Serialized size of the buffered entries that triggers a flush. */
+    private long maxBatchBytes = 5L * 1024 * 1024;
+
+    /** Maximum time an entry waits in the buffer before it is flushed. */
+    private Duration flushInterval = Duration.ofMillis(500);
+
+    /** Upper bound on buffered plus in-flight bytes; callers block once it is reached. */
+    private long maxInFlightBytes = 64L * 1024 * 1024;
+
+}
@@ -0,0 +1,24 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "bigtable.cache")
+@Data
+public class CacheProperties {
+
+    /** Serve point reads through the in-process row cache. */
+    private boolean enabled = false;
+
+    /** Maximum number of cached rows per table. Ignored when {@code maximumWeightBytes} is set. */
+    private long maximumSize = 10_000;
+
+    /** Maximum estimated size of the cached rows per table, in bytes. Zero means bound by entry count. */
+    private long maximumWeightBytes = 0;
+
+    /** Time after which a cached row is reloaded from Bigtable. */
+    private Duration ttl = Duration.ofSeconds(30);
+
+}
@@ -0,0 +1,18 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "bigtable.data-service")
+@Data
+public class DataServiceProperties {
+
+    /**
+     * Deadline of calls made without an explicit one. When it passes, the call is cancelled and its future fails with
+     * a {@code TimeoutException}. Unset for no deadline beyond the RPC timeouts of the transport settings.
+     */
+    private Duration deadline;
+
+}
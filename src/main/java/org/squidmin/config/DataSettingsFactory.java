@@ -0,0 +1,169 @@
+package org.squidmin.config;
+
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.api.gax.rpc.ServerStreamingCallSettings;
+import com.google.api.gax.rpc.TransportChannelProvider;
+import com.google.api.gax.rpc.UnaryCallSettings;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminSettings;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.stub.EnhancedBigtableStubSettings;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Builds {@link BigtableDataSettings} from {@link TransportProperties}. Anything not configured keeps the client
+ * library's default, including the emulator settings picked up from {@code BIGTABLE_EMULATOR_HOST}. The admin
+ * settings only follow {@code emulatorHost}.
+ */
+@Slf4j
+public final class DataSettingsFactory {
+
+    private DataSettingsFactory() { }
+
+    public static BigtableDataSettings create(String projectId, String instanceId, TransportProperties properties) {
+        return builder(projectId, instanceId, properties).build();
+    }
+
+    static BigtableDataSettings.Builder builder(String projectId, String instanceId, TransportProperties properties) {
+        BigtableDataSettings.Builder builder = null == properties.getEmulatorHost()
+            ? BigtableDataSettings.newBuilder()
+            : BigtableDataSettings.newBuilderForEmulator(host(properties), port(properties));
+        builder
+            .setProjectId(projectId)
+            .setInstanceId(instanceId);
+        EnhancedBigtableStubSettings.Builder stubSettings = builder.stubSettings();
+
+        TransportChannelProvider channelProvider = stubSettings.getTransportChannelProvider();
+        if (channelProvider instanceof InstantiatingGrpcChannelProvider) {
+            stubSettings.setTransportChannelProvider(
+                channelSettings(((InstantiatingGrpcChannelProvider) channelProvider).toBuilder(), properties).build()
+            );
+        }
+
+        for (Map.Entry<String, TransportProperties.Rpc> entry : properties.getRpc().entrySet()) {
+            applyRpcSettings(stubSettings, entry.getKey(), entry.getValue());
+        }
+
+        TransportProperties.WarmUp warmUp = properties.getWarmUp();
+        if (warmUp.isEnabled()) {
+            if (warmUp.getTableIds().isEmpty()) {
+                log.warn("Channel warm-up is enabled but bigtable.transport.warm-up.table-ids is empty; skipping it.");
+            } else {
+                builder.setRefreshingChannel(true).setPrimingTableIds(warmUp.getTableIds().toArray(new String[0]));
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Builds the table admin settings, for the emulator host if one is configured.
+     */
+    public static BigtableTableAdminSettings createAdmin(
+        String projectId,
+        String instanceId,
+        TransportProperties properties) throws IOException {
+        BigtableTableAdminSettings.Builder builder = null == properties.getEmulatorHost()
+            ? BigtableTableAdminSettings.newBuilder()
+            : BigtableTableAdminSettings.newBuilderForEmulator(host(properties), port(properties));
+        return builder.setProjectId(projectId).setInstanceId(instanceId).build();
+    }
+
+    private static String host(TransportProperties properties) {
+        return properties.getEmulatorHost().substring(0, separator(properties));
+    }
+
+    private static int port(TransportProperties properties) {
+        return Integer.parseInt(properties.getEmulatorHost().substring(separator(properties) + 1));
+    }
+
+    private static int separator(TransportProperties properties) {
+        int separator = properties.getEmulatorHost().lastIndexOf(':');
+        if (separator < 1) {
+            throw new IllegalArgumentException("Emulator host must be host:port, was " + properties.getEmulatorHost());
+        }
+        return separator;
+    }
+
+    private static InstantiatingGrpcChannelProvider.Builder channelSettings(
+        InstantiatingGrpcChannelProvider.Builder channel,
+        TransportProperties properties) {
+        if (null != properties.getChannelPoolSize()) {
+            channel.setPoolSize(properties.getChannelPoolSize());
+        }
+        if (null != properties.getKeepAliveTime()) {
+            channel.setKeepAliveTime(threeten(properties.getKeepAliveTime()));
+        }
+        if (null != properties.getKeepAliveTimeout()) {
+            channel.setKeepAliveTimeout(threeten(properties.getKeepAliveTimeout()));
+        }
+        if (null != properties.getKeepAliveWithoutCalls()) {
+            channel.setKeepAliveWithoutCalls(properties.getKeepAliveWithoutCalls());
+        }
+        return channel;
+    }
+
+    private static void applyRpcSettings(
+        EnhancedBigtableStubSettings.Builder stubSettings,
+        String rpc,
+        TransportProperties.Rpc settings) {
+        if ("read-rows".equals(rpc)) {
+            ServerStreamingCallSettings.Builder<Query, Row> readRows = stubSettings.readRowsSettings();
+            readRows.setRetrySettings(retrySettings(readRows.getRetrySettings(), settings));
+            return;
+        }
+        UnaryCallSettings.Builder<?, ?> call;
+        switch (rpc) {
+            case "read-row":
+                call = stubSettings.readRowSettings();
+                break;
+            case "sample-row-keys":
+                call = stubSettings.sampleRowKeysSettings();
+                break;
+            case "mutate-row":
+                call = stubSettings.mutateRowSettings();
+                break;
+            case "bulk-mutate-rows":
+                call = stubSettings.bulkMutateRowsSettings();
+                break;
+            case "check-and-mutate-row":
+                call = stubSettings.checkAndMutateRowSettings();
+                break;
+            case "read-modify-write-row":
+                call = stubSettings.readModifyWriteRowSettings();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown RPC in bigtable.transport.rpc: " + rpc);
+        }
+        call.setRetrySettings(retrySettings(call.getRetrySettings(), settings));
+    }
+
+    static RetrySettings retrySettings(RetrySettings defaults, TransportProperties.Rpc settings) {
+        RetrySettings.Builder builder = defaults.toBuilder();
+        set(settings.getTotalTimeout(), value -> builder.setTotalTimeout(threeten(value)));
+        set(settings.getInitialRpcTimeout(), value -> builder.setInitialRpcTimeout(threeten(value)));
+        set(settings.getMaxRpcTimeout(), value -> builder.setMaxRpcTimeout(threeten(value)));
+        set(settings.getMaxAttempts(), builder::setMaxAttempts);
+        set(settings.getInitialRetryDelay(), value -> builder.setInitialRetryDelay(threeten(value)));
+        set(settings.getMaxRetryDelay(), value -> builder.setMaxRetryDelay(threeten(value)));
+        set(settings.getRetryDelayMultiplier(), builder::setRetryDelayMultiplier);
+        return builder.build();
+    }
+
+    private static <T> void set(T value, Consumer<T> setter) {
+        if (null != value) {
+            setter.accept(value);
+        }
+    }
+
+    private static org.threeten.bp.Duration threeten(Duration duration) {
+        return org.threeten.bp.Duration.ofNanos(duration.toNanos());
+    }
+
+}
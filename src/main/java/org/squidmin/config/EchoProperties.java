@@ -0,0 +1,42 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.slf4j.event.Level;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "bigtable.echo")
+@Data
+public class EchoProperties {
+
+    /** Log the rows returned by reads. */
+    private boolean enabled = true;
+
+    /** Level rows are logged at. Nothing is rendered unless the {@code org.squidmin.util.RowEcho} logger has it enabled. */
+    private Level level = Level.INFO;
+
+    /** Log one in every {@code sampleRate} rows of a call, or of single-row calls such as point reads. */
+    private int sampleRate = 1;
+
+    /** Stop logging after this many rows in one call. Zero means no limit. */
+    private int maxRowsPerCall = 100;
+
+    /**
+     * Overrides by call site: {@code read-by-row-key}, {@code read-filter}, {@code read-filter-latest},
+     * {@code read-range} and {@code read-table}. Unset fields fall back to the values above.
+     */
+    private Map<String, Site> sites = new HashMap<>();
+
+    @Data
+    public static class Site {
+
+        private Boolean enabled;
+        private Level level;
+        private Integer sampleRate;
+        private Integer maxRowsPerCall;
+
+    }
+
+}
@@ -0,0 +1,32 @@
+package org.squidmin.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.squidmin.client.ClientMetrics;
+import org.squidmin.client.SlowOperationLog;
+
+@Configuration
+@EnableConfigurationProperties(value = {MetricsProperties.class, SlowLogProperties.class})
+public class MetricsConfig {
+
+    /**
+     * Records to the application's {@link MeterRegistry} when there is one (for example from Spring Boot Actuator),
+     * otherwise to an in-memory {@link SimpleMeterRegistry}.
+     */
+    @Bean
+    public ClientMetrics clientMetrics(
+        ObjectProvider<MeterRegistry> registry,
+        MetricsProperties metricsProperties,
+        SlowLogProperties slowLogProperties) {
+        return new ClientMetrics(
+            registry.getIfAvailable(SimpleMeterRegistry::new),
+            metricsProperties,
+            slowLogProperties.isEnabled() ? new SlowOperationLog(slowLogProperties) : null
+        );
+    }
+
+}
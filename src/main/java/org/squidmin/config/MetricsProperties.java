@@ -0,0 +1,23 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "bigtable.metrics")
+@Data
+public class MetricsProperties {
+
+    /** Record latency, throughput and error metrics for every {@code BigtableClient} operation. */
+    private boolean enabled = true;
+
+    /** Latency percentiles computed in-process for each operation. */
+    private List<Double> percentiles = new ArrayList<>(Arrays.asList(0.5, 0.99, 0.999));
+
+    /** Also publish histogram buckets, for registries that aggregate percentiles across instances. */
+    private boolean percentileHistogram = false;
+
+}
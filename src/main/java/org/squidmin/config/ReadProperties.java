@@ -0,0 +1,19 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@ConfigurationProperties(prefix = "bigtable.read")
+@Data
+public class ReadProperties {
+
+    /** Maximum number of row keys packed into one multi-get ReadRows request. */
+    private int maxKeysPerRequest = 100;
+
+    /** Share one in-flight RPC between identical concurrent point reads and multi-gets. Filtered scans are not coalesced. */
+    private boolean singleFlight = true;
+
+    /** Rows an ordered parallel scan buffers for shards that are ahead of the one being delivered. */
+    private int parallelScanMaxBufferedRows = 10_000;
+
+}
@@ -0,0 +1,26 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "bigtable.routing")
+@Data
+public class RoutingProperties {
+
+    /**
+     * Named data clients and the app profile each is bound to, for example {@code interactive}, {@code batch} and
+     * {@code write}. Each named client has its own channel pool. Operations routed to a name not listed here use the
+     * default client.
+     */
+    private Map<String, String> appProfiles = new HashMap<>();
+
+    /**
+     * Overrides of the client an operation is routed to, by operation name ({@code read-filter}, {@code read-table},
+     * {@code write-rows}, ...). See {@link AppProfileClients} for the defaults.
+     */
+    private Map<String, String> operations = new HashMap<>();
+
+}
@@ -0,0 +1,24 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "bigtable.slow-log")
+@Data
+public class SlowLogProperties {
+
+    /** Log slow calls and aggregate call statistics per query fingerprint. */
+    private boolean enabled = true;
+
+    /** Calls taking at least this long are logged at WARN. */
+    private Duration threshold = Duration.ofMillis(500);
+
+    /** Also log one in every {@code sampleRate} calls below the threshold, at INFO. Zero disables sampling. */
+    private int sampleRate = 0;
+
+    /** Maximum number of distinct fingerprints to aggregate. Calls with new fingerprints beyond it are not aggregated. */
+    private int maxFingerprints = 1000;
+
+}
@@ -0,0 +1,61 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKeyFormat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "bigtable")
+@Data
+public class TablesProperties {
+
+    /**
+     * Settings of individual tables, by table id. Tables not listed here use the default structure.
+     */
+    private Map<String, Table> tables = new HashMap<>();
+
+    @Data
+    public static class Table {
+
+        /**
+         * Column families of the table. Empty to use the default {@code bigtable.column-families}.
+         */
+        private List<FamilyToQualifierMapping> columnFamilies = new ArrayList<>();
+
+        /**
+         * Row key format of the table. Unset to use the default {@code bigtable.row-key}.
+         */
+        private RowKeyFormat rowKey;
+
+        /**
+         * Name of the app profile client every call on the table goes through, overriding the routing. Unset to
+         * route by operation.
+         */
+        private String client;
+
+        public boolean hasOwnStructure() {
+            return !columnFamilies.isEmpty() || null != rowKey;
+        }
+
+        /**
+         * Returns the structure of the table, taking anything it does not declare from {@code defaults}.
+         */
+        public BigtableStructure toStructure(BigtableStructure defaults) {
+            BigtableStructure structure = new BigtableStructure();
+            structure.getColumnFamilies().addAll(columnFamilies.isEmpty() ? defaults.getColumnFamilies() : columnFamilies);
+            RowKeyFormat format = null == rowKey ? defaults.getRowKey() : rowKey;
+            structure.getRowKey().setEncoding(format.getEncoding());
+            structure.getRowKey().setSaltBuckets(format.getSaltBuckets());
+            structure.getRowKey().setSegments(format.getSegments());
+            return structure;
+        }
+
+    }
+
+}
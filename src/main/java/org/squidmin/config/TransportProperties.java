@@ -0,0 +1,83 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@ConfigurationProperties(prefix = "bigtable.transport")
+@Data
+public class TransportProperties {
+
+    /**
+     * {@code host:port} of a Bigtable emulator or fake to connect to in plain text, without credentials. Unset to
+     * connect to Bigtable, or to the emulator named by {@code BIGTABLE_EMULATOR_HOST}.
+     */
+    private String emulatorHost;
+
+    /** Number of gRPC channels in the data client's pool. Unset keeps the client library's default. */
+    private Integer channelPoolSize;
+
+    /** Interval between keepalive pings on idle channels. Unset keeps the client library's default. */
+    private Duration keepAliveTime;
+
+    /** Time to wait for a keepalive ping to be acknowledged before the channel is closed. */
+    private Duration keepAliveTimeout;
+
+    /** Send keepalive pings on channels with no calls in flight. */
+    private Boolean keepAliveWithoutCalls;
+
+    /**
+     * Retry and timeout settings by RPC: {@code read-rows}, {@code read-row}, {@code sample-row-keys},
+     * {@code mutate-row}, {@code bulk-mutate-rows}, {@code check-and-mutate-row} and {@code read-modify-write-row}.
+     * Unset fields keep the client library's defaults.
+     */
+    private Map<String, Rpc> rpc = new HashMap<>();
+
+    private WarmUp warmUp = new WarmUp();
+
+    @Data
+    public static class Rpc {
+
+        /** Deadline for the call, including all retries. */
+        private Duration totalTimeout;
+
+        /** Deadline for the first attempt. */
+        private Duration initialRpcTimeout;
+
+        /** Upper bound on the deadline of a single attempt. */
+        private Duration maxRpcTimeout;
+
+        /** Maximum number of attempts, including the first. Zero means bounded by {@code totalTimeout} only. */
+        private Integer maxAttempts;
+
+        /** Delay before the first retry. */
+        private Duration initialRetryDelay;
+
+        /** Upper bound on the delay between retries. */
+        private Duration maxRetryDelay;
+
+        /** Factor applied to the retry delay after each attempt. */
+        private Double retryDelayMultiplier;
+
+    }
+
+    @Data
+    public static class WarmUp {
+
+        /**
+         * Open and prime every channel of the pool before the data client is returned, so the first requests after
+         * startup do not pay for connection setup and authentication. Startup blocks until priming finishes.
+         */
+        private boolean enabled = false;
+
+        /** Tables every channel is primed against. Warm-up is skipped when empty. */
+        private List<String> tableIds = new ArrayList<>();
+
+    }
+
+}
@@ -0,0 +1,44 @@
+package org.squidmin.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "bigtable.write-throttle")
+@Data
+public class WriteThrottleProperties {
+
+    /** Limit every write path with an adaptive in-flight and rate limit. */
+    private boolean enabled = false;
+
+    /** Mean write latency above which the limits are cut. */
+    private Duration targetLatency = Duration.ofMillis(100);
+
+    /** How often the limits are re-evaluated, and the minimum time between two cuts. */
+    private Duration adjustInterval = Duration.ofSeconds(1);
+
+    /** Factor the limits are multiplied by on high latency, {@code RESOURCE_EXHAUSTED} or {@code DEADLINE_EXCEEDED}. */
+    private double decreaseFactor = 0.5;
+
+    /** Mutations in flight allowed at startup. */
+    private int initialInFlight = 100;
+
+    private int minInFlight = 1;
+
+    private int maxInFlight = 10_000;
+
+    /** Mutations in flight added per interval while latency is under target and writes are held back. */
+    private int inFlightIncrease = 10;
+
+    /** Mutations per second allowed at startup. */
+    private double initialRate = 1000;
+
+    private double minRate = 10;
+
+    private double maxRate = 100_000;
+
+    /** Mutations per second added per interval while latency is under target and writes are held back. */
+    private double rateIncrease = 100;
+
+}
@@ -14,4 +14,6 @@ public class BigtableStructure {
 
     private final List<FamilyToQualifierMapping> columnFamilies = new ArrayList<>();
 
+    private final RowKeyFormat rowKey = new RowKeyFormat();
+
 }
@@ -0,0 +1,31 @@
+package org.squidmin.model;
+
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.concurrent.TimeUnit;
+
+
+@Data
+@Builder
+@AllArgsConstructor
+public class BulkLoadResult {
+
+    private long records;
+    private long rejected;
+    private long bytes;
+    private long elapsedNanos;
+    private long startOffset;
+    private long checkpoint;
+
+    public double getRecordsPerSecond() {
+        return 0 == elapsedNanos ? 0 : records * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public double getBytesPerSecond() {
+        return 0 == elapsedNanos ? 0 : bytes * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+}
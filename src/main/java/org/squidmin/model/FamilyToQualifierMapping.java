@@ -2,6 +2,7 @@ package org.squidmin.model;
 
 import lombok.Data;
 
+import java.time.Duration;
 import java.util.Set;
 
 @Data
@@ -11,4 +12,15 @@ public class FamilyToQualifierMapping {
     private Set<String> rowKeyFields;
     private Set<String> qualifierNames;
 
+    /**
+     * Versions of each cell kept by garbage collection. Unset to keep every version.
+     */
+    private Integer maxVersions;
+
+    /**
+     * Age after which cells are garbage collected. Unset to keep cells regardless of age. With {@code maxVersions}
+     * also set, a cell is collected once it exceeds either limit.
+     */
+    private Duration maxAge;
+
 }
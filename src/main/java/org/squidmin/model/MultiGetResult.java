@@ -0,0 +1,21 @@
+package org.squidmin.model;
+
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.Map;
+import java.util.Set;
+
+
+@Data
+@Builder
+@AllArgsConstructor
+public class MultiGetResult {
+
+    private Map<String, Row> rows;
+    private Set<String> missingKeys;
+
+}
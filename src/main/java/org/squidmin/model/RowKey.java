@@ -1,12 +1,12 @@
 package org.squidmin.model;
 
 
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.protobuf.ByteString;
 import lombok.*;
 
 
 @Data
-@Builder
-@AllArgsConstructor
 @NoArgsConstructor
 public class RowKey {
 
@@ -17,8 +17,52 @@ public class RowKey {
     @NonNull
     private String segmentC;
 
+    /**
+     * The last encoding of this key, reused until a segment changes or another codec is asked for.
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient volatile Encoded encoded;
+
     public static String delim = "#";
 
+    @Builder
+    public RowKey(@NonNull String segmentA, @NonNull String segmentB, @NonNull String segmentC) {
+        this.segmentA = segmentA;
+        this.segmentB = segmentB;
+        this.segmentC = segmentC;
+    }
+
+    public void setSegmentA(@NonNull String segmentA) {
+        this.segmentA = segmentA;
+        this.encoded = null;
+    }
+
+    public void setSegmentB(@NonNull String segmentB) {
+        this.segmentB = segmentB;
+        this.encoded = null;
+    }
+
+    public void setSegmentC(@NonNull String segmentC) {
+        this.segmentC = segmentC;
+        this.encoded = null;
+    }
+
+    /**
+     * Returns this key encoded by {@code codec}. The result is cached on the instance.
+     */
+    public ByteString toByteString(RowKeyCodec codec) {
+        Encoded cached = encoded;
+        if (null != cached && cached.codec == codec) {
+            return cached.bytes;
+        }
+        ByteString bytes = codec.encode(this);
+        encoded = new Encoded(codec, bytes);
+        return bytes;
+    }
+
     @Override
     public String toString() {
         return
@@ -27,4 +71,38 @@ public class RowKey {
             segmentC;
     }
 
+    /**
+     * Range of every key starting with {@code segmentA}. The delimiter is part of the prefix, so {@code "a"} matches
+     * {@code a#...} but not {@code ab#...}.
+     */
+    public static ByteStringRange prefixRange(String segmentA) {
+        return RowKeyCodec.delimited().prefixRange(segmentA);
+    }
+
+    /**
+     * Range of every key starting with {@code segmentA} and {@code segmentB}.
+     */
+    public static ByteStringRange prefixRange(String segmentA, String segmentB) {
+        return RowKeyCodec.delimited().prefixRange(segmentA, segmentB);
+    }
+
+    /**
+     * Range from {@code start} (inclusive) to {@code end} (exclusive).
+     */
+    public static ByteStringRange range(RowKey start, RowKey end) {
+        return RowKeyCodec.delimited().range(start, end);
+    }
+
+    private static class Encoded {
+
+        private final RowKeyCodec codec;
+        private final ByteString bytes;
+
+        private Encoded(RowKeyCodec codec, ByteString bytes) {
+            this.codec = codec;
+            this.bytes = bytes;
+        }
+
+    }
+
 }
@@ -0,0 +1,444 @@
+package org.squidmin.model;
+
+
+import com.google.cloud.bigtable.data.v2.models.Range;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.common.hash.Hashing;
+import com.google.protobuf.ByteString;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * Converts between {@link RowKey} and the row key bytes stored in Bigtable.
+ * <p>
+ * The {@code ORDERED} encoding writes each segment so that comparing encoded keys byte by byte gives the same
+ * order as comparing their segments one after another:
+ * <ul>
+ *     <li>{@code STRING}: UTF-8 bytes with {@code 0x00} escaped as {@code 0x00 0xFF}, then the terminator
+ *     {@code 0x00 0x01}. A string sorts before any longer string it is a prefix of, and no segment value can be
+ *     confused with a delimiter.</li>
+ *     <li>{@code FIXED}: UTF-8 bytes padded with {@code 0x00} to the configured width.</li>
+ *     <li>{@code LONG}: big-endian with the sign bit flipped, so negative numbers sort first.</li>
+ * </ul>
+ * With salting enabled, the encoded key is prefixed with a bucket chosen by hashing it. Keys of one logical range
+ * then live in one range per bucket: use {@link #prefixRanges} and {@link #ranges}, and order rows across buckets by
+ * {@link #unsalted} key.
+ * <p>
+ * Encoded keys are cached on the {@link RowKey} instance, see {@link RowKey#toByteString(RowKeyCodec)}.
+ */
+public abstract class RowKeyCodec {
+
+
+    private static final RowKeyCodec delimited = new Delimited();
+
+
+    public static RowKeyCodec delimited() {
+        return delimited;
+    }
+
+    public static RowKeyCodec ordered(List<RowKeyFormat.Segment> segments) {
+        return new Ordered(segments);
+    }
+
+    public static RowKeyCodec from(RowKeyFormat format) {
+        if (null == format) {
+            return delimited;
+        }
+        RowKeyCodec codec = RowKeyFormat.Encoding.DELIMITED == format.getEncoding()
+            ? delimited
+            : ordered(format.getSegments());
+        return 1 < format.getSaltBuckets() ? salted(codec, format.getSaltBuckets()) : codec;
+    }
+
+    /**
+     * Prefixes keys encoded by {@code codec} with one of {@code buckets} salt buckets.
+     */
+    public static RowKeyCodec salted(RowKeyCodec codec, int buckets) {
+        return new Salted(codec, buckets);
+    }
+
+    /**
+     * Encodes a key without consulting its cache. Use {@link RowKey#toByteString(RowKeyCodec)} instead.
+     */
+    protected abstract ByteString encode(RowKey rowKey);
+
+    public abstract RowKey decode(ByteString rowKey);
+
+    /**
+     * Range of every {@link #unsalted} key whose leading segments equal {@code leadingSegments} (one or two
+     * segments). Stored keys may span several ranges, see {@link #prefixRanges}.
+     */
+    abstract ByteStringRange prefixRange(String... leadingSegments);
+
+    /**
+     * Range of the {@link #unsalted} keys from {@code start} (inclusive) to {@code end} (exclusive). Stored keys may
+     * span several ranges, see {@link #ranges}.
+     */
+    ByteStringRange range(RowKey start, RowKey end) {
+        return ByteStringRange.unbounded()
+            .startClosed(unsalted(start.toByteString(this)))
+            .endOpen(unsalted(end.toByteString(this)));
+    }
+
+    /**
+     * Ranges holding every key whose leading segments equal {@code leadingSegments}, one per salt bucket.
+     */
+    public List<ByteStringRange> prefixRanges(String... leadingSegments) {
+        return Collections.singletonList(prefixRange(leadingSegments));
+    }
+
+    /**
+     * Ranges holding every key from {@code start} (inclusive) to {@code end} (exclusive), one per salt bucket.
+     */
+    public List<ByteStringRange> ranges(RowKey start, RowKey end) {
+        return Collections.singletonList(range(start, end));
+    }
+
+    /**
+     * The stored key without its salt prefix. Unsalted keys sort in logical key order.
+     */
+    public ByteString unsalted(ByteString storedKey) {
+        return storedKey;
+    }
+
+    /**
+     * {@code count} split points, in key order, that divide the space of leading key bytes into equal parts. With
+     * salting, the first split points are bucket boundaries and any others divide each bucket evenly. Real keys are
+     * rarely uniform over that space, so prefer split keys sampled from existing data when there is any.
+     */
+    public List<ByteString> splitKeys(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("Split count must not be negative, was " + count);
+        }
+        return evenSplits(ByteString.EMPTY, count);
+    }
+
+    /**
+     * Lowest and highest value of the leading key bytes that {@link #splitKeys} divides.
+     */
+    protected int lowestKeyByte() {
+        return 0x00;
+    }
+
+    protected int highestKeyByte() {
+        return 0xFF;
+    }
+
+    /**
+     * Split points after {@code prefix} over the first two key bytes, without duplicates.
+     */
+    List<ByteString> evenSplits(ByteString prefix, int count) {
+        int low = lowestKeyByte();
+        int width = highestKeyByte() - low + 1;
+        long space = (long) width * width;
+        Set<ByteString> splits = new LinkedHashSet<>();
+        for (int i = 1; i <= count; i++) {
+            long point = space * i / (count + 1);
+            splits.add(prefix.concat(ByteString.copyFrom(new byte[]{
+                (byte) (low + point / width), (byte) (low + point % width)
+            })));
+        }
+        return new ArrayList<>(splits);
+    }
+
+    private static void checkPrefixLength(String[] leadingSegments) {
+        if (leadingSegments.length < 1 || leadingSegments.length > 2) {
+            throw new IllegalArgumentException("A row key prefix has one or two segments, got " + leadingSegments.length);
+        }
+    }
+
+
+    private static class Salted extends RowKeyCodec {
+
+        private final RowKeyCodec codec;
+        private final ByteString[] saltPrefixes;
+        private final int prefixLength;
+
+        private Salted(RowKeyCodec codec, int buckets) {
+            if (buckets < 2 || buckets > 256) {
+                throw new IllegalArgumentException("Salt buckets must be between 2 and 256, was " + buckets);
+            }
+            this.codec = codec;
+            this.saltPrefixes = new ByteString[buckets];
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                saltPrefixes[bucket] = codec instanceof Delimited
+                    ? ByteString.copyFromUtf8(String.format("%02x", bucket) + RowKey.delim)
+                    : ByteString.copyFrom(new byte[]{(byte) bucket});
+            }
+            this.prefixLength = saltPrefixes[0].size();
+        }
+
+        @Override
+        protected ByteString encode(RowKey rowKey) {
+            ByteString key = codec.encode(rowKey);
+            int bucket = Math.floorMod(Hashing.murmur3_32_fixed().hashBytes(key.toByteArray()).asInt(), saltPrefixes.length);
+            return saltPrefixes[bucket].concat(key);
+        }
+
+        @Override
+        public RowKey decode(ByteString rowKey) {
+            return codec.decode(unsalted(rowKey));
+        }
+
+        @Override
+        public ByteString unsalted(ByteString storedKey) {
+            if (storedKey.size() < prefixLength) {
+                throw new IllegalArgumentException("Row key is too short to carry a salt prefix.");
+            }
+            return storedKey.substring(prefixLength);
+        }
+
+        @Override
+        ByteStringRange prefixRange(String... leadingSegments) {
+            return codec.prefixRange(leadingSegments);
+        }
+
+        @Override
+        public List<ByteStringRange> prefixRanges(String... leadingSegments) {
+            return inEveryBucket(prefixRange(leadingSegments));
+        }
+
+        @Override
+        public List<ByteStringRange> ranges(RowKey start, RowKey end) {
+            return inEveryBucket(range(start, end));
+        }
+
+        @Override
+        public List<ByteString> splitKeys(int count) {
+            if (count < 0) {
+                throw new IllegalArgumentException("Split count must not be negative, was " + count);
+            }
+            int buckets = saltPrefixes.length;
+            List<ByteString> splits = new ArrayList<>(count);
+            if (count < buckets - 1) {
+                for (int i = 1; i <= count; i++) {
+                    splits.add(saltPrefixes[(int) ((long) i * buckets / (count + 1))]);
+                }
+                return splits;
+            }
+            int withinBuckets = count - (buckets - 1);
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                if (bucket > 0) {
+                    splits.add(saltPrefixes[bucket]);
+                }
+                int bucketCount = withinBuckets / buckets + (bucket < withinBuckets % buckets ? 1 : 0);
+                splits.addAll(codec.evenSplits(saltPrefixes[bucket], bucketCount));
+            }
+            return splits;
+        }
+
+        private List<ByteStringRange> inEveryBucket(ByteStringRange unsaltedRange) {
+            List<ByteStringRange> ranges = new ArrayList<>(saltPrefixes.length);
+            for (ByteString saltPrefix : saltPrefixes) {
+                ByteStringRange bucket = ByteStringRange.prefix(saltPrefix);
+                ByteStringRange range = ByteStringRange.unbounded()
+                    .startClosed(saltPrefix.concat(unsaltedRange.getStart()));
+                if (Range.BoundType.UNBOUNDED == unsaltedRange.getEndBound()) {
+                    if (Range.BoundType.UNBOUNDED != bucket.getEndBound()) {
+                        range.endOpen(bucket.getEnd());
+                    }
+                } else {
+                    range.endOpen(saltPrefix.concat(unsaltedRange.getEnd()));
+                }
+                ranges.add(range);
+            }
+            return ranges;
+        }
+
+    }
+
+
+    private static class Delimited extends RowKeyCodec {
+
+        @Override
+        protected ByteString encode(RowKey rowKey) {
+            return ByteString.copyFromUtf8(rowKey.toString());
+        }
+
+        @Override
+        public RowKey decode(ByteString rowKey) {
+            String[] segments = rowKey.toStringUtf8().split(RowKey.delim, 3);
+            if (3 != segments.length) {
+                throw new IllegalArgumentException(
+                    "Row key does not match the configured row key format: " + rowKey.toStringUtf8()
+                );
+            }
+            return new RowKey(segments[0], segments[1], segments[2]);
+        }
+
+        @Override
+        ByteStringRange prefixRange(String... leadingSegments) {
+            checkPrefixLength(leadingSegments);
+            StringBuilder prefix = new StringBuilder();
+            for (String segment : leadingSegments) {
+                if (null == segment || segment.contains(RowKey.delim)) {
+                    throw new IllegalArgumentException(
+                        "Leading row key segments must be non-null and not contain " + RowKey.delim
+                    );
+                }
+                prefix.append(segment).append(RowKey.delim);
+            }
+            return ByteStringRange.prefix(prefix.toString());
+        }
+
+        /**
+         * Printable ASCII, which is where readable delimited keys start.
+         */
+        @Override
+        protected int lowestKeyByte() {
+            return 0x20;
+        }
+
+        @Override
+        protected int highestKeyByte() {
+            return 0x7E;
+        }
+
+    }
+
+
+    private static class Ordered extends RowKeyCodec {
+
+        private static final byte escape = 0x00;
+        private static final byte escapedZero = (byte) 0xFF;
+        private static final byte terminator = 0x01;
+
+        private final RowKeyFormat.Segment[] segments;
+
+        private Ordered(List<RowKeyFormat.Segment> segments) {
+            if (null == segments || 3 != segments.size()) {
+                throw new IllegalArgumentException("The ordered row key encoding needs exactly 3 segment types.");
+            }
+            for (RowKeyFormat.Segment segment : segments) {
+                if (RowKeyFormat.SegmentType.FIXED == segment.getType() && segment.getWidth() < 1) {
+                    throw new IllegalArgumentException("FIXED row key segments need a positive width.");
+                }
+            }
+            this.segments = segments.toArray(new RowKeyFormat.Segment[0]);
+        }
+
+        @Override
+        protected ByteString encode(RowKey rowKey) {
+            ByteString.Output out = ByteString.newOutput(64);
+            writeSegment(out, 0, rowKey.getSegmentA());
+            writeSegment(out, 1, rowKey.getSegmentB());
+            writeSegment(out, 2, rowKey.getSegmentC());
+            return out.toByteString();
+        }
+
+        @Override
+        public RowKey decode(ByteString rowKey) {
+            byte[] bytes = rowKey.toByteArray();
+            int[] position = {0};
+            String segmentA = readSegment(bytes, position, 0);
+            String segmentB = readSegment(bytes, position, 1);
+            String segmentC = readSegment(bytes, position, 2);
+            if (position[0] != bytes.length) {
+                throw new IllegalArgumentException("Unexpected trailing bytes in row key.");
+            }
+            return new RowKey(segmentA, segmentB, segmentC);
+        }
+
+        @Override
+        ByteStringRange prefixRange(String... leadingSegments) {
+            checkPrefixLength(leadingSegments);
+            ByteString.Output out = ByteString.newOutput(32);
+            for (int i = 0; i < leadingSegments.length; i++) {
+                if (null == leadingSegments[i]) {
+                    throw new IllegalArgumentException("Leading row key segments must be non-null.");
+                }
+                writeSegment(out, i, leadingSegments[i]);
+            }
+            return ByteStringRange.prefix(out.toByteString());
+        }
+
+        private void writeSegment(ByteString.Output out, int index, String value) {
+            RowKeyFormat.Segment segment = segments[index];
+            switch (segment.getType()) {
+                case LONG:
+                    long encoded = Long.parseLong(value) ^ Long.MIN_VALUE;
+                    for (int shift = 56; shift >= 0; shift -= 8) {
+                        out.write((int) (encoded >>> shift));
+                    }
+                    break;
+                case FIXED:
+                    byte[] fixed = value.getBytes(StandardCharsets.UTF_8);
+                    if (fixed.length > segment.getWidth() || (0 < fixed.length && 0 == fixed[fixed.length - 1])) {
+                        throw new IllegalArgumentException(String.format(
+                            "Segment %d must be at most %d bytes and not end with a zero byte: %s",
+                            index, segment.getWidth(), value
+                        ));
+                    }
+                    out.write(fixed, 0, fixed.length);
+                    for (int i = fixed.length; i < segment.getWidth(); i++) {
+                        out.write(0);
+                    }
+                    break;
+                default:
+                    for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                        out.write(b);
+                        if (escape == b) {
+                            out.write(escapedZero);
+                        }
+                    }
+                    out.write(escape);
+                    out.write(terminator);
+            }
+        }
+
+        private String readSegment(byte[] bytes, int[] position, int index) {
+            RowKeyFormat.Segment segment = segments[index];
+            int start = position[0];
+            switch (segment.getType()) {
+                case LONG:
+                    checkAvailable(bytes, start, 8);
+                    long encoded = 0;
+                    for (int i = 0; i < 8; i++) {
+                        encoded = (encoded << 8) | (bytes[start + i] & 0xFF);
+                    }
+                    position[0] = start + 8;
+                    return Long.toString(encoded ^ Long.MIN_VALUE);
+                case FIXED:
+                    checkAvailable(bytes, start, segment.getWidth());
+                    int end = start + segment.getWidth();
+                    while (end > start && 0 == bytes[end - 1]) {
+                        end--;
+                    }
+                    position[0] = start + segment.getWidth();
+                    return new String(bytes, start, end - start, StandardCharsets.UTF_8);
+                default:
+                    byte[] unescaped = new byte[bytes.length - start];
+                    int length = 0;
+                    for (int i = start; i < bytes.length; i++) {
+                        if (escape != bytes[i]) {
+                            unescaped[length++] = bytes[i];
+                        } else if (i + 1 < bytes.length && escapedZero == bytes[i + 1]) {
+                            unescaped[length++] = escape;
+                            i++;
+                        } else if (i + 1 < bytes.length && terminator == bytes[i + 1]) {
+                            position[0] = i + 2;
+                            return new String(unescaped, 0, length, StandardCharsets.UTF_8);
+                        } else {
+                            break;
+                        }
+                    }
+                    throw new IllegalArgumentException("Unterminated string segment " + index + " in row key.");
+            }
+        }
+
+        private static void checkAvailable(byte[] bytes, int start, int length) {
+            if (bytes.length - start < length) {
+                throw new IllegalArgumentException("Row key is too short for its segment types.");
+            }
+        }
+
+    }
+
+
+}
@@ -0,0 +1,62 @@
+package org.squidmin.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@Data
+public class RowKeyFormat {
+
+    public enum Encoding {
+        /**
+         * Segments joined with {@link RowKey#delim}. Readable, but ambiguous if a segment contains the delimiter.
+         */
+        DELIMITED,
+        /**
+         * Typed binary segments whose encoded byte order matches segment order. See {@link RowKeyCodec}.
+         */
+        ORDERED
+    }
+
+    public enum SegmentType {
+        /**
+         * Escaped UTF-8 bytes followed by a terminator.
+         */
+        STRING,
+        /**
+         * UTF-8 bytes padded with zero bytes to {@code width}.
+         */
+        FIXED,
+        /**
+         * A signed 64-bit integer in 8 bytes.
+         */
+        LONG
+    }
+
+    @Data
+    public static class Segment {
+
+        private SegmentType type = SegmentType.STRING;
+        private int width;
+
+    }
+
+    /**
+     * Encoding used for row keys written and read through the compiled schema.
+     */
+    private Encoding encoding = Encoding.DELIMITED;
+
+    /**
+     * Number of salt buckets, at most 256. When greater than 1, every key is prefixed with a bucket derived from a
+     * hash of the key, spreading sequential keys across tablets. 0 or 1 disables salting.
+     */
+    private int saltBuckets = 0;
+
+    /**
+     * Types of segmentA, segmentB and segmentC for the {@code ORDERED} encoding.
+     */
+    private List<Segment> segments = new ArrayList<>(Arrays.asList(new Segment(), new Segment(), new Segment()));
+
+}
@@ -1,11 +1,250 @@
 package org.squidmin.service;
 
 
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.StreamController;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Service;
+import org.squidmin.client.BigtableClient;
+import org.squidmin.client.BigtableTables;
+import org.squidmin.client.ClientMetrics;
+import org.squidmin.config.DataServiceProperties;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.MultiGetResult;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+
+/**
+ * Non-blocking reads and writes. Every call returns as soon as the RPC is started, or queued behind the write
+ * throttle; the returned future completes on the client's transport threads, so callers should compose with
+ * {@code *Async} variants and their own executor for anything slow.
+ * <p>
+ * Cancelling a future cancels the underlying RPC. A read shared by single-flight is cancelled once every caller
+ * waiting for it has cancelled.
+ * Calls take an optional deadline, by default {@code bigtable.data-service.deadline}: once it passes the RPC is
+ * cancelled and the future fails with a {@link java.util.concurrent.TimeoutException}. Failures to start a call, such
+ * as an invalid table schema, are reported through the future too.
+ */
 @Service
+@EnableConfigurationProperties(DataServiceProperties.class)
 public class BigtableDataService {
 
-    // TODO
+
+    /** Fires the deadlines of every service. Timers of calls that complete first are removed at once. */
+    private static final ScheduledThreadPoolExecutor deadlines = deadlineScheduler();
+
+    private final BigtableClient btClient;
+    private final BigtableTables tables;
+    private final Duration defaultDeadline;
+
+
+    @Autowired
+    public BigtableDataService(BigtableClient btClient, BigtableTables tables, DataServiceProperties properties) {
+        this.btClient = btClient;
+        this.tables = tables;
+        this.defaultDeadline = properties.getDeadline();
+    }
+
+    public CompletableFuture<Row> readRow(String tableId, String rowKey) {
+        return readRow(tableId, rowKey, defaultDeadline);
+    }
+
+    /**
+     * Reads a row; the future holds {@code null} if it does not exist.
+     */
+    public CompletableFuture<Row> readRow(String tableId, String rowKey, Duration deadline) {
+        return call(() -> tables.get(tableId).readByRowKeyAsync(tableId, rowKey), deadline);
+    }
+
+    public CompletableFuture<MultiGetResult> readRows(String tableId, Collection<String> rowKeys) {
+        return readRows(tableId, rowKeys, defaultDeadline);
+    }
+
+    public CompletableFuture<MultiGetResult> readRows(String tableId, Collection<String> rowKeys, Duration deadline) {
+        return call(() -> tables.get(tableId).readByRowKeysAsync(tableId, rowKeys), deadline);
+    }
+
+    public CompletableFuture<List<Row>> scan(Query query) {
+        return scan(query, defaultDeadline);
+    }
+
+    /**
+     * Reads every row of a query into memory. Use {@link #scan(Query, Consumer)} for large results.
+     */
+    public CompletableFuture<List<Row>> scan(Query query, Duration deadline) {
+        return call(() -> btClient.readRowsAsync(query), deadline);
+    }
+
+    public CompletableFuture<Long> scan(Query query, Consumer<Row> consumer) {
+        return scan(query, consumer, defaultDeadline);
+    }
+
+    /**
+     * Passes the rows of a query to {@code consumer} as they arrive, on a transport thread, and completes with the
+     * number of rows. If the consumer throws, the scan is cancelled and the future fails with that exception.
+     */
+    public CompletableFuture<Long> scan(Query query, Consumer<Row> consumer, Duration deadline) {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        AtomicReference<StreamController> stream = new AtomicReference<>();
+        AtomicBoolean expired = new AtomicBoolean();
+        result.whenComplete((count, error) -> {
+            StreamController controller = stream.get();
+            if (null != error && null != controller) {
+                controller.cancel();
+            }
+        });
+        try {
+            btClient.readRowsAsync(query, new ResponseObserver<Row>() {
+                private long count = 0;
+
+                @Override
+                public void onStart(StreamController controller) {
+                    stream.set(controller);
+                    if (result.isCompletedExceptionally()) {
+                        controller.cancel();
+                    }
+                }
+
+                @Override
+                public void onResponse(Row row) {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    try {
+                        consumer.accept(row);
+                        count++;
+                    } catch (RuntimeException e) {
+                        result.completeExceptionally(e);
+                    }
+                }
+
+                @Override
+                public void onError(Throwable t) {
+                    result.completeExceptionally(expired.get() ? timeout(deadline) : t);
+                }
+
+                @Override
+                public void onComplete() { result.complete(count); }
+            });
+        } catch (RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+        onDeadline(result, deadline, () -> {
+            expired.set(true);
+            StreamController controller = stream.get();
+            if (null != controller) {
+                controller.cancel();
+            }
+            result.completeExceptionally(timeout(deadline));
+        });
+        return result;
+    }
+
+    public CompletableFuture<Void> write(String rowKey, RowMutation rowMutation) {
+        return write(rowKey, rowMutation, defaultDeadline);
+    }
+
+    public CompletableFuture<Void> write(String rowKey, RowMutation rowMutation, Duration deadline) {
+        return call(() -> btClient.writeRowAsync(rowKey, rowMutation), deadline);
+    }
+
+    public CompletableFuture<Void> write(String tableId, DtoExample dto) {
+        return write(tableId, dto, defaultDeadline);
+    }
+
+    /**
+     * Writes a DTO with the schema of its table, in its own MutateRow call.
+     */
+    public CompletableFuture<Void> write(String tableId, DtoExample dto, Duration deadline) {
+        return call(() -> tables.get(tableId).writeSingleRowAsync(dto), deadline);
+    }
+
+    private static <T> CompletableFuture<T> call(ClientMetrics.Call<ApiFuture<T>, Exception> call, Duration deadline) {
+        ApiFuture<T> future;
+        try {
+            future = call.call();
+        } catch (Exception e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicBoolean expired = new AtomicBoolean();
+        ApiFutures.addCallback(future, new ApiFutureCallback<T>() {
+            @Override
+            public void onSuccess(T value) { result.complete(value); }
+
+            @Override
+            public void onFailure(Throwable t) { result.completeExceptionally(expired.get() ? timeout(deadline) : t); }
+        }, MoreExecutors.directExecutor());
+        result.whenComplete((value, error) -> {
+            if (null != error) {
+                future.cancel(true);
+            }
+        });
+        onDeadline(result, deadline, () -> {
+            expired.set(true);
+            future.cancel(true);
+        });
+        return result;
+    }
+
+    /**
+     * Runs {@code expire} once {@code deadline} has passed, unless {@code result} completed first, in which case the
+     * timer is cancelled. {@code expire} cancels the call before the future fails, so a caller that sees the timeout
+     * never sees the call still running.
+     */
+    private static void onDeadline(CompletableFuture<?> result, Duration deadline, Runnable expire) {
+        if (null == deadline) {
+            return;
+        }
+        ScheduledFuture<?> timer = deadlines.schedule(() -> {
+            if (!result.isDone()) {
+                expire.run();
+            }
+        }, deadline.toNanos(), TimeUnit.NANOSECONDS);
+        result.whenComplete((value, error) -> timer.cancel(false));
+    }
+
+    /**
+     * Deadline timers still waiting to fire.
+     */
+    static int getPendingDeadlines() {
+        return deadlines.getQueue().size();
+    }
+
+    private static ScheduledThreadPoolExecutor deadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "bigtable-data-service-deadlines");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    private static TimeoutException timeout(Duration deadline) {
+        return new TimeoutException("Deadline of " + deadline.toMillis() + " ms exceeded.");
+    }
+
 
 }
@@ -5,6 +5,7 @@ import com.google.cloud.bigtable.data.v2.models.*;
 import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
 import lombok.extern.slf4j.Slf4j;
+import org.slf4j.event.Level;
 import org.squidmin.config.BigtableClientManager;
 import org.squidmin.exception.InvalidSchemaException;
 import org.squidmin.model.BigtableRowWrapper;
@@ -12,81 +13,138 @@ import org.squidmin.model.DtoExample;
 import org.squidmin.model.FamilyToQualifierMapping;
 
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 @Slf4j
 public class BigtableUtil {
 
 
     public static void echo(Row row, int paddingAmount) {
-        log.info(LogFont.GREEN + "Row key: {}", row.getKey().toStringUtf8() + LogFont.GREEN);
-        echoRowCells(row, paddingAmount);
+        echoAtInfo(paddingAmount).echo(row);
     }
 
 
     public static List<Row> echo(ServerStream<Row> rowStream, int paddingAmount) {
-        List<Row> rows = new ArrayList<>();
         if (null == rowStream) {
             log.info("No rows found matching query");
-        } else {
-            for (Row row : rowStream) {
-                log.info(LogFont.GREEN + "Row Key:{}" + LogFont.RESET, row.getKey().toStringUtf8());
-                echoRowCells(row, paddingAmount);
-                rows.add(row);
-            }
+            return new ArrayList<>();
+        }
+        try (Stream<Row> rows = echo(stream(rowStream), paddingAmount)) {
+            return rows.collect(Collectors.toList());
         }
-        return rows;
     }
 
 
-    private static void echoRowCells(Row row, int paddingAmount) {
-        for (RowCell cell : row.getCells()) {
-            String familyFormat = String.format("%-20s", "Family: {}");
-            String qualifierFormat = String.format("%-20s", "Qualifier: {}");
-            String qualifier = cell.getQualifier().toStringUtf8();
-            String valueFormat = String.format(
-                "%" + (8 + (paddingAmount + 1 - qualifier.length())) + "s", "Value: {}"
-            );
-            log.info(
-                LogFont.CYAN + familyFormat.concat(qualifierFormat).concat(valueFormat) + LogFont.RESET,
-                cell.getFamily(),
-                qualifier,
-                cell.getValue().toStringUtf8()
-            );
+    /**
+     * Echoes each row as the consumer pulls it from the stream, without buffering.
+     */
+    public static Stream<Row> echo(Stream<Row> rows, int paddingAmount) {
+        return echoAtInfo(paddingAmount).echo(rows);
+    }
+
+
+    private static RowEcho echoAtInfo(int paddingAmount) {
+        return new RowEcho(Level.INFO, 1, 0, new TabularRowRenderer(paddingAmount));
+    }
+
+
+    /**
+     * Wraps a server stream in a lazy {@link Stream}. The next row is only requested from the server when the
+     * consumer asks for it, and closing the stream cancels the RPC, so callers that stop early
+     * (e.g. {@code limit}, {@code findFirst}) should use try-with-resources.
+     */
+    public static <T> Stream<T> stream(ServerStream<T> rowStream) {
+        if (null == rowStream) {
+            return Stream.empty();
         }
-        log.info("\n");
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+            rowStream.iterator(), Spliterator.ORDERED | Spliterator.NONNULL
+        );
+        return StreamSupport.stream(spliterator, false).onClose(rowStream::cancel);
+    }
+
+
+    /**
+     * Merges streams that are each sorted by {@code comparator} into one sorted stream. Only the head element of
+     * each stream is buffered; closing the merged stream closes every source.
+     */
+    public static <T> Stream<T> mergeSorted(List<Stream<T>> streams, Comparator<? super T> comparator) {
+        List<Iterator<T>> sources = new ArrayList<>(streams.size());
+        for (Stream<T> stream : streams) {
+            sources.add(stream.iterator());
+        }
+        PriorityQueue<Map.Entry<T, Iterator<T>>> heads = new PriorityQueue<>(
+            Math.max(1, sources.size()), Map.Entry.comparingByKey(comparator)
+        );
+        Iterator<T> merged = new Iterator<T>() {
+            private boolean started = false;
+
+            @Override
+            public boolean hasNext() {
+                if (!started) {
+                    sources.forEach(this::advance);
+                    started = true;
+                }
+                return !heads.isEmpty();
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry<T, Iterator<T>> head = heads.poll();
+                advance(head.getValue());
+                return head.getKey();
+            }
+
+            private void advance(Iterator<T> source) {
+                if (source.hasNext()) {
+                    heads.add(new AbstractMap.SimpleImmutableEntry<>(source.next(), source));
+                }
+            }
+        };
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(
+            merged, Spliterator.ORDERED | Spliterator.NONNULL
+        );
+        return StreamSupport.stream(spliterator, false).onClose(() -> streams.forEach(Stream::close));
     }
 
 
+    /**
+     * Pairs the i-th qualifier of {@code schema} with the i-th value. A null value is skipped together with its
+     * qualifier, so the cells after it keep their columns. Qualifiers are the ones the schema encoded once.
+     */
     public static RowMutation getRowMutation(
         String tableId,
         String rowKey,
-        String columnFamily,
-        Set<String> qualifiers,
+        CompiledSchema schema,
         List<String> values) throws InvalidSchemaException {
 
-        Iterator<String> valuesIterator = values.iterator();
-        Iterator<String> qualifiersIterator = qualifiers.iterator();
-
-        RowMutation rowMutation;
-        if (qualifiers.size() == values.size()) {
-            rowMutation = RowMutation.create(tableId, rowKey);
-            while (qualifiersIterator.hasNext()) {
-                rowMutation.setCell(
-                    columnFamily,
-                    ByteString.copyFrom(qualifiersIterator.next().getBytes()),
-                    System.currentTimeMillis() * 1000,
-                    ByteString.copyFromUtf8(valuesIterator.next())
-                );
-            }
-        } else {
+        ByteString[] qualifiers = schema.getQualifiers();
+        boolean unpaired = values.size() < qualifiers.length;
+        for (int i = qualifiers.length; i < values.size() && !unpaired; i++) {
+            unpaired = null != values.get(i);
+        }
+        if (unpaired) {
             log.error(
                 "\nqualifiers and values should be 1 : 1."
-                  + "\nqualifiers: " + qualifiers
+                  + "\nqualifiers: " + schema.getQualifierNames()
                   + "\nvalues: " + values
             );
             throw new InvalidSchemaException("Invalid row mutation.");
         }
 
+        RowMutation rowMutation = RowMutation.create(tableId, rowKey);
+        long timestamp = System.currentTimeMillis() * 1000;
+        for (int i = 0; i < qualifiers.length; i++) {
+            String value = values.get(i);
+            if (null != value) {
+                rowMutation.setCell(schema.getColumnFamily(), qualifiers[i], timestamp, ByteString.copyFromUtf8(value));
+            }
+        }
         return rowMutation;
     }
 
@@ -95,33 +153,10 @@ public class BigtableUtil {
         if (0 == rows.size()) {
             log.info("Calling BigtableUtil.getLatestRow() with 0 rows.");
             return null;
-        } else if (1 == rows.size()) {
-            log.info("Calling BigtableUtil.getLatestRow() with 1 row. Returning first row.");
-            return BigtableRowWrapper.builder()
-                .index(0)
-                .value(rows.get(0))
-                .build();
-        } else {
-            List<Long> timestamps = Lists.newArrayList();
-            int latestTimestampIndex = 0;
-            for (int rowIndex = 0; rowIndex < rows.size(); rowIndex++) {
-                List<RowCell> rowCells = rows.get(rowIndex).getCells();
-                timestamps.add(rowCells.get(0).getTimestamp());
-                for (int cellIndex = 1; cellIndex < rowCells.size(); cellIndex++) {
-                    Long timestamp = rowCells.get(cellIndex).getTimestamp();
-                    if (timestamps.get(rowIndex) < timestamp) {
-                        timestamps.set(rowIndex, timestamp);
-                    }
-                }
-                if (2 <=  timestamps.size() && timestamps.get(rowIndex) > timestamps.get(rowIndex - 1)) {
-                    latestTimestampIndex = rowIndex;
-                }
-            }
-            return BigtableRowWrapper.builder()
-                .index(latestTimestampIndex)
-                .value(rows.get(latestTimestampIndex))
-                .build();
         }
+        LatestRowReducer reducer = new LatestRowReducer(1);
+        rows.forEach(reducer::accept);
+        return reducer.getLatest();
     }
 
 
@@ -129,54 +164,30 @@ public class BigtableUtil {
         String tableId,
         BigtableClientManager clientManager,
         DtoExample row) throws InvalidSchemaException {
-        long timestamp = System.currentTimeMillis() * 1000;
-        FamilyToQualifierMapping ftqMapping = clientManager.getBtStructure().getColumnFamilies().get(0);
-        String columnFamilyName = ftqMapping.getColumnFamilyName();
-        Set<String> qualifiers = ftqMapping.getQualifierNames();
-        Iterator<String> qnIterator = qualifiers.iterator();
-        List<String> values = createValuesList(row);
-        if (qualifiers.size() == values.size()) {
-            BulkMutation bulkMutation = BulkMutation.create(tableId);
-            Mutation mutation = Mutation.create();
-            int index = 0;
-            while (qnIterator.hasNext()) {
-                mutation
-                    .setCell(
-                        columnFamilyName,
-                        ByteString.copyFromUtf8(qnIterator.next()),
-                        timestamp,
-                        ByteString.copyFromUtf8(values.get(index))
-                    );
-                index++;
-            }
-            bulkMutation.add(row.getRowKey().toString(), mutation);
-        }
-        return null;
+        return clientManager.getCompiledSchema().toBulkMutation(tableId, Collections.singletonList(row));
     }
 
 
     public static List<Row> toList(ServerStream<Row> rowStream) {
-        Optional<List<Row>> rows;
         if (null == rowStream) {
             log.info("No rows found matching query.");
-            rows = Optional.empty();
-        } else {
-            rows = Optional.of(new ArrayList<>());
-            for (Row row : rowStream) {
-                rows.get().add(row);
-            }
+            return Lists.newArrayList();
+        }
+        try (Stream<Row> rows = stream(rowStream)) {
+            return rows.collect(Collectors.toList());
         }
-        return rows.orElseGet(Lists::newArrayList);
     }
 
 
+    /**
+     * Returns one value per DTO field, in field order. Null fields stay in place so each value keeps its position.
+     */
     public static List<String> createValuesList(DtoExample request) {
 
         List<String> values = new ArrayList<>();
         values.add(request.getFieldA());
         values.add(request.getFieldB());
         values.add(request.getFieldC());
-        values.removeIf(Objects::isNull);
         return values;
 
     }
@@ -0,0 +1,196 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.Mutation;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import com.google.common.base.Utf8;
+import com.google.protobuf.ByteString;
+import lombok.Getter;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKeyCodec;
+import org.squidmin.model.RowKeyFormat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+
+/**
+ * {@link BigtableStructure} compiled once into what reads and writes of {@link DtoExample} need per row: the column
+ * family, qualifiers encoded as {@code ByteString}s in a fixed order, and the DTO field bound to each qualifier.
+ * <p>
+ * The qualifiers of the first column family are bound, in configured order, to {@code fieldA}, {@code fieldB} and
+ * {@code fieldC}. Row keys are encoded with the codec of the configured {@link RowKeyFormat}. Instances are
+ * immutable; a structure change is picked up by compiling a new one.
+ */
+@Getter
+public class CompiledSchema {
+
+
+    private static final List<DtoField> dtoFields = Arrays.asList(
+        new DtoField(DtoExample::getFieldA, DtoExample::setFieldA),
+        new DtoField(DtoExample::getFieldB, DtoExample::setFieldB),
+        new DtoField(DtoExample::getFieldC, DtoExample::setFieldC)
+    );
+
+    private final String columnFamily;
+    private final List<String> qualifierNames;
+    private final RowKeyCodec rowKeyCodec;
+    private final DtoRowAdapter<DtoExample> rowAdapter;
+
+    private final ByteString[] qualifiers;
+    private final DtoField[] fields;
+
+
+    private CompiledSchema(String columnFamily, List<String> qualifierNames, RowKeyCodec rowKeyCodec) {
+        this.columnFamily = columnFamily;
+        this.qualifierNames = Collections.unmodifiableList(qualifierNames);
+        this.rowKeyCodec = rowKeyCodec;
+        this.qualifiers = new ByteString[qualifierNames.size()];
+        this.fields = new DtoField[qualifierNames.size()];
+        for (int i = 0; i < qualifiers.length; i++) {
+            qualifiers[i] = ByteString.copyFromUtf8(qualifierNames.get(i));
+            fields[i] = dtoFields.get(i);
+        }
+        this.rowAdapter = buildRowAdapter();
+    }
+
+    public static CompiledSchema compile(BigtableStructure btStructure) throws InvalidSchemaException {
+        if (null == btStructure || btStructure.getColumnFamilies().isEmpty()) {
+            throw new InvalidSchemaException("No column families configured.");
+        }
+        FamilyToQualifierMapping ftqMapping = btStructure.getColumnFamilies().get(0);
+        if (null == ftqMapping.getQualifierNames() || ftqMapping.getQualifierNames().isEmpty()) {
+            throw new InvalidSchemaException(
+                String.format("Column family %s has no qualifiers.", ftqMapping.getColumnFamilyName())
+            );
+        }
+        if (ftqMapping.getQualifierNames().size() > dtoFields.size()) {
+            throw new InvalidSchemaException(String.format(
+                "Column family %s has %d qualifiers but DtoExample only has %d fields.",
+                ftqMapping.getColumnFamilyName(), ftqMapping.getQualifierNames().size(), dtoFields.size()
+            ));
+        }
+        RowKeyCodec rowKeyCodec;
+        try {
+            rowKeyCodec = RowKeyCodec.from(btStructure.getRowKey());
+        } catch (IllegalArgumentException e) {
+            throw new InvalidSchemaException("Invalid row key format: " + e.getMessage());
+        }
+        return new CompiledSchema(
+            ftqMapping.getColumnFamilyName(), new ArrayList<>(ftqMapping.getQualifierNames()), rowKeyCodec
+        );
+    }
+
+    /**
+     * Encodes the non-null fields of a DTO as cells written at {@code timestampMicros}.
+     */
+    public Mutation toMutation(DtoExample dto, long timestampMicros) {
+        Mutation mutation = Mutation.create();
+        for (int i = 0; i < qualifiers.length; i++) {
+            String value = fields[i].getter.apply(dto);
+            if (null != value) {
+                mutation.setCell(columnFamily, qualifiers[i], timestampMicros, ByteString.copyFromUtf8(value));
+            }
+        }
+        return mutation;
+    }
+
+    public RowMutation toRowMutation(String tableId, DtoExample dto) {
+        return RowMutation.create(tableId, rowKey(dto), toMutation(dto, nowMicros()));
+    }
+
+    public RowMutationEntry toEntry(DtoExample dto) {
+        return toEntry(dto, nowMicros());
+    }
+
+    public RowMutationEntry toEntry(DtoExample dto, long timestampMicros) {
+        RowMutationEntry entry = RowMutationEntry.create(rowKey(dto));
+        for (int i = 0; i < qualifiers.length; i++) {
+            String value = fields[i].getter.apply(dto);
+            if (null != value) {
+                entry.setCell(columnFamily, qualifiers[i], timestampMicros, ByteString.copyFromUtf8(value));
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Encodes a batch of DTOs into one bulk mutation. All cells in the batch share one timestamp.
+     */
+    public BulkMutation toBulkMutation(String tableId, Collection<DtoExample> dtos) {
+        long timestampMicros = nowMicros();
+        BulkMutation bulkMutation = BulkMutation.create(tableId);
+        for (DtoExample dto : dtos) {
+            bulkMutation.add(rowKey(dto), toMutation(dto, timestampMicros));
+        }
+        return bulkMutation;
+    }
+
+    /**
+     * Bytes a DTO is written as: the encoded row key plus the UTF-8 length of every non-null field.
+     */
+    public long encodedSize(DtoExample dto) {
+        long size = rowKey(dto).size();
+        for (int i = 0; i < qualifiers.length; i++) {
+            String value = fields[i].getter.apply(dto);
+            if (null != value) {
+                size += Utf8.encodedLength(value);
+            }
+        }
+        return size;
+    }
+
+    public long encodedSize(Collection<DtoExample> dtos) {
+        long size = 0;
+        for (DtoExample dto : dtos) {
+            size += encodedSize(dto);
+        }
+        return size;
+    }
+
+    public ByteString rowKey(DtoExample dto) {
+        return dto.getRowKey().toByteString(rowKeyCodec);
+    }
+
+    private static long nowMicros() {
+        return System.currentTimeMillis() * 1000;
+    }
+
+    private DtoRowAdapter<DtoExample> buildRowAdapter() {
+        DtoRowAdapter.Builder<DtoExample> builder = DtoRowAdapter.builder(DtoExample::new)
+            .rowKey(
+                (dto, key) -> dto.setRowKey(rowKeyCodec.decode(key)),
+                this::rowKey
+            );
+        for (int i = 0; i < qualifiers.length; i++) {
+            BiConsumer<DtoExample, String> setter = fields[i].setter;
+            builder.column(columnFamily, qualifierNames.get(i), (dto, value) -> setter.accept(dto, value.toStringUtf8()));
+        }
+        return builder.build();
+    }
+
+
+    private static class DtoField {
+
+        private final Function<DtoExample, String> getter;
+        private final BiConsumer<DtoExample, String> setter;
+
+        private DtoField(Function<DtoExample, String> getter, BiConsumer<DtoExample, String> setter) {
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+    }
+
+
+}
@@ -0,0 +1,209 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.RowAdapter;
+import com.google.common.collect.MapMaker;
+import com.google.protobuf.ByteString;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+/**
+ * Decodes read responses straight into DTOs, skipping the intermediate {@code Row}/{@code RowCell} objects.
+ * <p>
+ * Each bound column is matched by comparing the response qualifier bytes against a qualifier encoded once when the
+ * adapter is built. Cells of unbound columns are skipped without copying their values, and only the first (newest)
+ * version of each bound column is decoded.
+ */
+public class DtoRowAdapter<T> implements RowAdapter<T> {
+
+
+    private final Supplier<T> factory;
+    private final BiConsumer<T, ByteString> rowKeySetter;
+    private final Function<T, ByteString> rowKeyGetter;
+    private final Column<T>[] columns;
+
+    /**
+     * Scan markers only carry a row key, which may not fit the DTO's key format, so their keys are kept here. Weak
+     * keys compare by identity, so a marker never matches an equal-looking decoded row.
+     */
+    private final Map<T, ByteString> scanMarkers = new MapMaker().weakKeys().makeMap();
+
+
+    private DtoRowAdapter(
+        Supplier<T> factory,
+        BiConsumer<T, ByteString> rowKeySetter,
+        Function<T, ByteString> rowKeyGetter,
+        Column<T>[] columns) {
+        this.factory = factory;
+        this.rowKeySetter = rowKeySetter;
+        this.rowKeyGetter = rowKeyGetter;
+        this.columns = columns;
+    }
+
+    public static <T> Builder<T> builder(Supplier<T> factory) {
+        return new Builder<>(factory);
+    }
+
+    /**
+     * Binds the qualifiers of the first configured column family, in order, to {@code fieldA}, {@code fieldB} and
+     * {@code fieldC}. See {@link CompiledSchema}.
+     */
+    public static DtoRowAdapter<DtoExample> forDtoExample(BigtableStructure btStructure) throws InvalidSchemaException {
+        return CompiledSchema.compile(btStructure).getRowAdapter();
+    }
+
+    @Override
+    public RowBuilder<T> createRowBuilder() {
+        return new DtoRowBuilder();
+    }
+
+    @Override
+    public boolean isScanMarkerRow(T row) {
+        return scanMarkers.containsKey(row);
+    }
+
+    @Override
+    public ByteString getKey(T row) {
+        ByteString markerKey = scanMarkers.get(row);
+        return null != markerKey ? markerKey : rowKeyGetter.apply(row);
+    }
+
+
+    private class DtoRowBuilder implements RowBuilder<T> {
+
+        private final boolean[] decoded = new boolean[columns.length];
+        private T row;
+        private Column<T> column;
+        private ByteString value;
+
+        @Override
+        public void startRow(ByteString key) {
+            row = factory.get();
+            rowKeySetter.accept(row, key);
+            Arrays.fill(decoded, false);
+        }
+
+        @Override
+        public void startCell(String family, ByteString qualifier, long timestamp, List<String> labels, long size) {
+            column = null;
+            value = ByteString.EMPTY;
+            for (int i = 0; i < columns.length; i++) {
+                if (columns[i].matches(family, qualifier)) {
+                    if (!decoded[i]) {
+                        decoded[i] = true;
+                        column = columns[i];
+                    }
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public void cellValue(ByteString chunk) {
+            if (null != column) {
+                value = value.isEmpty() ? chunk : value.concat(chunk);
+            }
+        }
+
+        @Override
+        public void finishCell() {
+            if (null != column) {
+                column.setter.accept(row, value);
+                column = null;
+            }
+            value = null;
+        }
+
+        @Override
+        public T finishRow() {
+            T finished = row;
+            row = null;
+            return finished;
+        }
+
+        @Override
+        public void reset() {
+            row = null;
+            column = null;
+            value = null;
+        }
+
+        @Override
+        public T createScanMarkerRow(ByteString key) {
+            T marker = factory.get();
+            scanMarkers.put(marker, key);
+            return marker;
+        }
+
+    }
+
+
+    private static class Column<T> {
+
+        private final String family;
+        private final ByteString qualifier;
+        private final BiConsumer<T, ByteString> setter;
+
+        private Column(String family, ByteString qualifier, BiConsumer<T, ByteString> setter) {
+            this.family = family;
+            this.qualifier = qualifier;
+            this.setter = setter;
+        }
+
+        private boolean matches(String family, ByteString qualifier) {
+            return this.qualifier.size() == qualifier.size()
+                && this.qualifier.equals(qualifier)
+                && this.family.equals(family);
+        }
+
+    }
+
+
+    public static class Builder<T> {
+
+        private final Supplier<T> factory;
+        private final List<Column<T>> columns = new ArrayList<>();
+        private BiConsumer<T, ByteString> rowKeySetter;
+        private Function<T, ByteString> rowKeyGetter;
+
+        private Builder(Supplier<T> factory) {
+            this.factory = factory;
+        }
+
+        /**
+         * @param setter decodes the row key into a new DTO
+         * @param getter re-encodes a decoded DTO's row key; used to resume interrupted scans
+         */
+        public Builder<T> rowKey(BiConsumer<T, ByteString> setter, Function<T, ByteString> getter) {
+            this.rowKeySetter = setter;
+            this.rowKeyGetter = getter;
+            return this;
+        }
+
+        public Builder<T> column(String family, String qualifier, BiConsumer<T, ByteString> setter) {
+            columns.add(new Column<>(family, ByteString.copyFromUtf8(qualifier), setter));
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public DtoRowAdapter<T> build() {
+            if (null == rowKeySetter || null == rowKeyGetter) {
+                throw new IllegalStateException("A row key binding is required.");
+            }
+            return new DtoRowAdapter<>(factory, rowKeySetter, rowKeyGetter, columns.toArray(new Column[0]));
+        }
+
+    }
+
+
+}
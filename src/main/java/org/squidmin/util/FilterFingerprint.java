@@ -0,0 +1,135 @@
+package org.squidmin.util;
+
+
+import com.google.bigtable.v2.RowFilter;
+import com.google.cloud.bigtable.data.v2.models.Filters.Filter;
+import com.google.common.collect.MapMaker;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * Identifies the shape of a filter: the tree of filter types, ignoring regexes, ranges, limits and other literal
+ * values. {@code FILTERS.key().regex("a.*")} and {@code FILTERS.key().regex("b.*")} have the same fingerprint, so
+ * calls can be grouped by query pattern.
+ * <p>
+ * The fingerprint is a 64-bit hash over the filter proto's structure, without text serialization. It is cached per
+ * {@code Filter} instance, so filters that are built once and reused are only walked once.
+ */
+public class FilterFingerprint {
+
+
+    public static final long NONE = 0;
+
+    private static final long offsetBasis = 0xcbf29ce484222325L;
+    private static final long prime = 0x100000001b3L;
+
+    private static final int open = 64;
+    private static final int close = 65;
+
+    private static final Map<Filter, Long> cache = new MapMaker().weakKeys().makeMap();
+
+
+    private FilterFingerprint() { }
+
+    public static long of(Filter filter) {
+        if (null == filter) {
+            return NONE;
+        }
+        Long cached = cache.get(filter);
+        if (null != cached) {
+            return cached;
+        }
+        long fingerprint = of(filter.toProto());
+        cache.put(filter, fingerprint);
+        return fingerprint;
+    }
+
+    public static long of(RowFilter filter) {
+        long hash = hash(offsetBasis, filter);
+        return NONE == hash ? 1 : hash;
+    }
+
+    /**
+     * Readable form of the shape, such as {@code chain(row_key_regex, cells_per_column_limit)}.
+     */
+    public static String shape(Filter filter) {
+        if (null == filter) {
+            return "none";
+        }
+        StringBuilder out = new StringBuilder();
+        appendShape(filter.toProto(), out);
+        return out.toString();
+    }
+
+    public static String toHex(long fingerprint) {
+        return String.format("%016x", fingerprint);
+    }
+
+    private static long hash(long hash, RowFilter filter) {
+        hash = mix(hash, filter.getFilterCase().getNumber());
+        switch (filter.getFilterCase()) {
+            case CHAIN:
+                return hashAll(hash, filter.getChain().getFiltersList());
+            case INTERLEAVE:
+                return hashAll(hash, filter.getInterleave().getFiltersList());
+            case CONDITION:
+                hash = mix(hash, open);
+                hash = hash(hash, filter.getCondition().getPredicateFilter());
+                hash = hash(hash, filter.getCondition().getTrueFilter());
+                hash = hash(hash, filter.getCondition().getFalseFilter());
+                return mix(hash, close);
+            default:
+                return hash;
+        }
+    }
+
+    private static long hashAll(long hash, List<RowFilter> filters) {
+        hash = mix(hash, open);
+        for (RowFilter child : filters) {
+            hash = hash(hash, child);
+        }
+        return mix(hash, close);
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * prime;
+    }
+
+    private static void appendShape(RowFilter filter, StringBuilder out) {
+        out.append(filter.getFilterCase().name().toLowerCase(Locale.ROOT).replace("_filter", ""));
+        switch (filter.getFilterCase()) {
+            case CHAIN:
+                appendAll(filter.getChain().getFiltersList(), out);
+                break;
+            case INTERLEAVE:
+                appendAll(filter.getInterleave().getFiltersList(), out);
+                break;
+            case CONDITION:
+                out.append('(');
+                appendShape(filter.getCondition().getPredicateFilter(), out);
+                out.append(" ? ");
+                appendShape(filter.getCondition().getTrueFilter(), out);
+                out.append(" : ");
+                appendShape(filter.getCondition().getFalseFilter(), out);
+                out.append(')');
+                break;
+            default:
+        }
+    }
+
+    private static void appendAll(List<RowFilter> filters, StringBuilder out) {
+        out.append('(');
+        for (int i = 0; i < filters.size(); i++) {
+            if (i > 0) {
+                out.append(", ");
+            }
+            appendShape(filters.get(i), out);
+        }
+        out.append(')');
+    }
+
+
+}
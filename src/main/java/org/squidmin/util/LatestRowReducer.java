@@ -0,0 +1,100 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import org.squidmin.model.BigtableRowWrapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+
+/**
+ * Keeps the {@code k} rows with the newest cell timestamp while a row stream is consumed, so finding the latest
+ * row needs memory for {@code k} rows rather than the whole result.
+ * <p>
+ * Rows are compared by the newest timestamp among their cells. On a tie the row seen first wins.
+ */
+public class LatestRowReducer {
+
+
+    private static final Comparator<Candidate> newestLast = Comparator
+        .comparingLong((Candidate candidate) -> candidate.timestamp)
+        .thenComparing(candidate -> -candidate.index);
+
+    private final int k;
+    private final PriorityQueue<Candidate> newest;
+    private int index = 0;
+
+
+    public LatestRowReducer(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1, was " + k);
+        }
+        this.k = k;
+        this.newest = new PriorityQueue<>(k + 1, newestLast);
+    }
+
+    public void accept(Row row) {
+        Candidate candidate = new Candidate(index++, latestTimestamp(row), row);
+        if (newest.size() < k) {
+            newest.add(candidate);
+        } else if (0 < newestLast.compare(candidate, newest.peek())) {
+            newest.poll();
+            newest.add(candidate);
+        }
+    }
+
+    /**
+     * Number of rows seen so far.
+     */
+    public int getCount() { return index; }
+
+    /**
+     * The newest row, or {@code null} if no rows were seen. The wrapper index is the row's position in the stream.
+     */
+    public BigtableRowWrapper getLatest() {
+        List<BigtableRowWrapper> latestRows = getLatestRows();
+        return latestRows.isEmpty() ? null : latestRows.get(0);
+    }
+
+    /**
+     * Up to {@code k} rows, newest first.
+     */
+    public List<BigtableRowWrapper> getLatestRows() {
+        List<Candidate> candidates = new ArrayList<>(newest);
+        candidates.sort(newestLast.reversed());
+        List<BigtableRowWrapper> latestRows = new ArrayList<>(candidates.size());
+        for (Candidate candidate : candidates) {
+            latestRows.add(BigtableRowWrapper.builder().index(candidate.index).value(candidate.row).build());
+        }
+        return latestRows;
+    }
+
+    public static long latestTimestamp(Row row) {
+        long latest = Long.MIN_VALUE;
+        for (RowCell cell : row.getCells()) {
+            latest = Math.max(latest, cell.getTimestamp());
+        }
+        return latest;
+    }
+
+
+    private static class Candidate {
+
+        private final int index;
+        private final long timestamp;
+        private final Row row;
+
+        private Candidate(int index, long timestamp, Row row) {
+            this.index = index;
+            this.timestamp = timestamp;
+            this.row = row;
+        }
+
+    }
+
+
+}
@@ -0,0 +1,147 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import org.squidmin.config.EchoProperties;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+
+/**
+ * Logs the rows returned by a read. The log level is checked before any rendering, so a disabled echo costs one
+ * level check per call. Of the rows in one call, every {@code sampleRate}-th row is logged, up to
+ * {@code maxRowsPerCall} rows. Single-row calls, such as point reads, are sampled across calls instead: every
+ * {@code sampleRate}-th of them is logged. Each row is rendered into a reused per-thread buffer and logged as one
+ * message.
+ */
+public class RowEcho {
+
+
+    public static final RowEcho disabled = new RowEcho(null, Level.TRACE, 1, 0, null, false);
+
+    private static final Logger log = LoggerFactory.getLogger(RowEcho.class);
+
+    private static final int maxRetainedBufferSize = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(512));
+
+    private final Logger logger;
+    private final Level level;
+    private final int sampleRate;
+    private final int maxRowsPerCall;
+    private final RowRenderer renderer;
+    private final boolean enabled;
+    private final AtomicLong singleRows = new AtomicLong();
+
+
+    public RowEcho(Level level, int sampleRate, int maxRowsPerCall, RowRenderer renderer) {
+        this(log, level, sampleRate, maxRowsPerCall, renderer, true);
+    }
+
+    RowEcho(Logger logger, Level level, int sampleRate, int maxRowsPerCall, RowRenderer renderer, boolean enabled) {
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate must be at least 1, was " + sampleRate);
+        }
+        this.logger = logger;
+        this.level = level;
+        this.sampleRate = sampleRate;
+        this.maxRowsPerCall = maxRowsPerCall;
+        this.renderer = renderer;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Builds the echo for one call site, applying the site's overrides from {@code properties.sites}.
+     */
+    public static RowEcho forSite(EchoProperties properties, String site, RowRenderer renderer) {
+        EchoProperties.Site overrides = properties.getSites().getOrDefault(site, new EchoProperties.Site());
+        boolean enabled = null != overrides.getEnabled() ? overrides.getEnabled() : properties.isEnabled();
+        if (!enabled) {
+            return disabled;
+        }
+        return new RowEcho(
+            null != overrides.getLevel() ? overrides.getLevel() : properties.getLevel(),
+            null != overrides.getSampleRate() ? overrides.getSampleRate() : properties.getSampleRate(),
+            null != overrides.getMaxRowsPerCall() ? overrides.getMaxRowsPerCall() : properties.getMaxRowsPerCall(),
+            renderer
+        );
+    }
+
+    public boolean isEnabled() {
+        if (!enabled) {
+            return false;
+        }
+        switch (level) {
+            case ERROR:
+                return logger.isErrorEnabled();
+            case WARN:
+                return logger.isWarnEnabled();
+            case INFO:
+                return logger.isInfoEnabled();
+            case DEBUG:
+                return logger.isDebugEnabled();
+            default:
+                return logger.isTraceEnabled();
+        }
+    }
+
+    /**
+     * Echoes the row of a single-row call if it is the {@code sampleRate}-th such row. One row never exceeds the
+     * per-call limit.
+     */
+    public void echo(Row row) {
+        if (null != row && isEnabled() && 0 == singleRows.getAndIncrement() % sampleRate) {
+            write(row);
+        }
+    }
+
+    /**
+     * Echoes rows as the consumer pulls them from the stream, without buffering. Sampling and the per-call limit
+     * apply to this stream.
+     */
+    public Stream<Row> echo(Stream<Row> rows) {
+        if (!isEnabled()) {
+            return rows;
+        }
+        long[] counts = new long[2];
+        return rows.peek(row -> {
+            long seen = counts[0]++;
+            if (0 == seen % sampleRate && (0 == maxRowsPerCall || counts[1] < maxRowsPerCall)) {
+                counts[1]++;
+                write(row);
+            }
+        });
+    }
+
+    private void write(Row row) {
+        StringBuilder out = buffers.get();
+        out.setLength(0);
+        renderer.render(row, out);
+        String message = out.toString();
+        if (out.capacity() > maxRetainedBufferSize) {
+            buffers.remove();
+        }
+        switch (level) {
+            case ERROR:
+                logger.error(message);
+                break;
+            case WARN:
+                logger.warn(message);
+                break;
+            case INFO:
+                logger.info(message);
+                break;
+            case DEBUG:
+                logger.debug(message);
+                break;
+            default:
+                logger.trace(message);
+        }
+    }
+
+
+}
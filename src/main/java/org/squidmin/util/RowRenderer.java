@@ -0,0 +1,13 @@
+package org.squidmin.util;
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+
+/**
+ * Renders a row as text for {@link RowEcho}. Implementations append to {@code out} rather than returning a String,
+ * so one buffer can be reused for every row.
+ */
+public interface RowRenderer {
+
+    void render(Row row, StringBuilder out);
+
+}
@@ -0,0 +1,48 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+
+
+/**
+ * Renders the row key, then one line per cell with family, qualifier and value in aligned columns.
+ */
+public class TabularRowRenderer implements RowRenderer {
+
+
+    private static final int labelWidth = 20;
+
+    private final int qualifierWidth;
+
+
+    /**
+     * @param maxQualifierLength length of the longest qualifier; values are aligned after it
+     */
+    public TabularRowRenderer(int maxQualifierLength) {
+        this.qualifierWidth = Math.max(0, maxQualifierLength) + 1;
+    }
+
+    @Override
+    public void render(Row row, StringBuilder out) {
+        out.append(LogFont.GREEN).append("Row key: ").append(row.getKey().toStringUtf8()).append(LogFont.RESET);
+        for (RowCell cell : row.getCells()) {
+            out.append('\n').append(LogFont.CYAN);
+            int familyStart = out.length();
+            out.append("Family: ").append(cell.getFamily());
+            pad(out, familyStart, labelWidth);
+            int qualifierStart = out.length();
+            out.append("Qualifier: ").append(cell.getQualifier().toStringUtf8());
+            pad(out, qualifierStart, labelWidth + qualifierWidth);
+            out.append("Value: ").append(cell.getValue().toStringUtf8()).append(LogFont.RESET);
+        }
+    }
+
+    private static void pad(StringBuilder out, int columnStart, int width) {
+        for (int i = out.length() - columnStart; i < width; i++) {
+            out.append(' ');
+        }
+    }
+
+
+}
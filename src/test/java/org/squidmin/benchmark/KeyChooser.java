@@ -0,0 +1,180 @@
+package org.squidmin.benchmark;
+
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Picks the index of the record an operation targets, out of the records inserted so far, following YCSB's request
+ * distributions.
+ */
+public abstract class KeyChooser {
+
+
+    /**
+     * Next record index, below {@code recordCount}, the number of records inserted so far.
+     */
+    public abstract long next(Random random, long recordCount);
+
+    public static KeyChooser create(Workload workload) {
+        switch (workload.getDistribution()) {
+            case UNIFORM:
+                return new KeyChooser() {
+                    @Override
+                    public long next(Random random, long recordCount) {
+                        return (long) (random.nextDouble() * recordCount);
+                    }
+                };
+            case ZIPFIAN:
+                return new Scrambled(new Zipfian(workload.getRecordCount(), workload.getZipfianConstant()));
+            case LATEST:
+                return new Latest(new Zipfian(workload.getRecordCount(), workload.getZipfianConstant()));
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + workload.getDistribution());
+        }
+    }
+
+
+    /**
+     * Zipfian ranks over a fixed number of items, rank 0 the most popular, computed with the method of Gray et al.,
+     * "Quickly Generating Billion-Record Synthetic Databases", like YCSB's {@code ZipfianGenerator}.
+     */
+    static class Zipfian {
+
+        private final long items;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        Zipfian(long items, double theta) {
+            if (theta <= 0 || theta >= 1) {
+                throw new IllegalArgumentException("Zipfian constant must be greater than 0 and less than 1, was " + theta);
+            }
+            this.items = items;
+            this.theta = theta;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zetaN = zeta(items, theta);
+            this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta(2, theta) / zetaN);
+        }
+
+        long next(Random random) {
+            double u = random.nextDouble();
+            double uz = u * zetaN;
+            if (uz < 1.0) {
+                return 0;
+            }
+            if (uz < 1.0 + Math.pow(0.5, theta)) {
+                return 1;
+            }
+            return Math.min(items - 1, (long) (items * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) {
+                sum += 1 / Math.pow(i, theta);
+            }
+            return sum;
+        }
+
+    }
+
+
+    /**
+     * Zipfian popularity with the popular records hashed across the key space, so the hot keys are not neighbours.
+     */
+    static class Scrambled extends KeyChooser {
+
+        private final Zipfian zipfian;
+
+        Scrambled(Zipfian zipfian) {
+            this.zipfian = zipfian;
+        }
+
+        @Override
+        public long next(Random random, long recordCount) {
+            return Math.floorMod(fnv64(zipfian.next(random)), recordCount);
+        }
+
+        /**
+         * 64-bit FNV-1a over the bytes of {@code value}.
+         */
+        static long fnv64(long value) {
+            long hash = 0xCBF29CE484222325L;
+            for (int i = 0; i < 8; i++) {
+                hash ^= value & 0xFF;
+                hash *= 0x100000001B3L;
+                value >>>= 8;
+            }
+            return hash;
+        }
+
+    }
+
+
+    /**
+     * Zipfian over recency: the newest record is the most popular. Needs writes to insert records to move.
+     */
+    static class Latest extends KeyChooser {
+
+        private final Zipfian zipfian;
+
+        Latest(Zipfian zipfian) {
+            this.zipfian = zipfian;
+        }
+
+        @Override
+        public long next(Random random, long recordCount) {
+            return Math.max(0, recordCount - 1 - zipfian.next(random));
+        }
+
+    }
+
+
+    /**
+     * Counts inserted records. Writes with the latest distribution insert new records, other writes update existing
+     * ones. Like YCSB's {@code AcknowledgedCounterGenerator}, the count only advances over a contiguous prefix of
+     * acknowledged indices, so readers never pick a record that a slower writer has claimed but not written yet.
+     */
+    static class Inserts {
+
+        private final AtomicLong claimed;
+        private final PriorityQueue<Long> acknowledged = new PriorityQueue<>();
+        private volatile long count;
+
+        Inserts(long initialCount) {
+            this.claimed = new AtomicLong(initialCount);
+            this.count = initialCount;
+        }
+
+        /**
+         * Number of records readers may pick: every record below it has been acknowledged.
+         */
+        long count() { return count; }
+
+        /**
+         * Claims the index of a new record. Readers only see it once it and every index below it are acknowledged
+         * with {@link #inserted}.
+         */
+        long claim() { return claimed.getAndIncrement(); }
+
+        /**
+         * Acknowledges a claimed index. Call it whether or not the write succeeded, or the count stops advancing.
+         */
+        synchronized void inserted(long index) {
+            acknowledged.add(index);
+            long next = count;
+            while (!acknowledged.isEmpty() && acknowledged.peek() == next) {
+                acknowledged.poll();
+                next++;
+            }
+            count = next;
+        }
+
+    }
+
+
+}
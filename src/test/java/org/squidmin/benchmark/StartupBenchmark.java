@@ -0,0 +1,83 @@
+package org.squidmin.benchmark;
+
+
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import lombok.extern.slf4j.Slf4j;
+import org.squidmin.config.DataSettingsFactory;
+import org.squidmin.config.TransportProperties;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures what the first requests after startup cost with and without channel warm-up: the time to create the
+ * data client, the latency of the first point read, and the mean latency of the reads that follow. Every run uses a
+ * new client, so each starts with unconnected channels.
+ * <p>
+ * Needs a Bigtable instance or the emulator ({@code BIGTABLE_EMULATOR_HOST}). Run with {@code mvn test-compile
+ * exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.squidmin.benchmark.StartupBenchmark
+ * -Dexec.args="projectId instanceId tableId [poolSize] [runs]"}.
+ */
+@Slf4j
+public class StartupBenchmark {
+
+
+    private static final int readsPerRun = 20;
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            throw new IllegalArgumentException("Usage: StartupBenchmark projectId instanceId tableId [poolSize] [runs]");
+        }
+        String projectId = args[0];
+        String instanceId = args[1];
+        String tableId = args[2];
+        int poolSize = 3 < args.length ? Integer.parseInt(args[3]) : 4;
+        int runs = 4 < args.length ? Integer.parseInt(args[4]) : 5;
+
+        for (int run = 0; run < runs; run++) {
+            run("cold", projectId, instanceId, tableId, poolSize, false);
+            run("warm-up", projectId, instanceId, tableId, poolSize, true);
+        }
+    }
+
+    private static void run(
+        String name,
+        String projectId,
+        String instanceId,
+        String tableId,
+        int poolSize,
+        boolean warmUp) throws IOException {
+        TransportProperties properties = new TransportProperties();
+        properties.setChannelPoolSize(poolSize);
+        properties.getWarmUp().setEnabled(warmUp);
+        properties.getWarmUp().setTableIds(Collections.singletonList(tableId));
+
+        long start = System.nanoTime();
+        try (BigtableDataClient dataClient = BigtableDataClient.create(
+            DataSettingsFactory.create(projectId, instanceId, properties))) {
+            long created = System.nanoTime();
+            long[] latencies = new long[readsPerRun];
+            for (int i = 0; i < readsPerRun; i++) {
+                long readStart = System.nanoTime();
+                dataClient.readRow(tableId, "startup-benchmark-" + i);
+                latencies[i] = System.nanoTime() - readStart;
+            }
+            long rest = Arrays.stream(latencies, 1, readsPerRun).sum() / (readsPerRun - 1);
+            log.info(
+                "{}: create {} ms, first read {} ms, next {} reads {} us mean, startup to last read {} ms",
+                name,
+                TimeUnit.NANOSECONDS.toMillis(created - start),
+                TimeUnit.NANOSECONDS.toMillis(latencies[0]),
+                readsPerRun - 1,
+                TimeUnit.NANOSECONDS.toMicros(rest),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)
+            );
+        }
+    }
+
+
+}
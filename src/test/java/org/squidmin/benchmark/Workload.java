@@ -0,0 +1,158 @@
+package org.squidmin.benchmark;
+
+
+import lombok.Data;
+
+import java.time.Duration;
+import java.util.Locale;
+
+
+/**
+ * Settings of a {@link WorkloadBenchmark} run, parsed from {@code key=value} arguments with the property names in
+ * kebab case, e.g. {@code mode=open target-rate=2000 distribution=zipfian read=0.8 write=0.15 scan=0.05}.
+ */
+@Data
+public class Workload {
+
+
+    public enum Mode {
+        /** Each thread issues its next operation as soon as the previous one completes. */
+        CLOSED,
+        /** Operations are scheduled at {@code targetRate} regardless of how long earlier ones take. */
+        OPEN
+    }
+
+    public enum Distribution { UNIFORM, ZIPFIAN, LATEST }
+
+
+    /** {@code host:port} of a Bigtable emulator. Unset to run against an in-process {@code FakeBigtable}. */
+    private String emulatorHost;
+
+    private String projectId = "project";
+
+    private String instanceId = "instance";
+
+    private String tableId = "workload";
+
+    private Mode mode = Mode.CLOSED;
+
+    /**
+     * Operations per second over all threads. Required in open-loop mode. In closed-loop mode it paces each thread,
+     * and latencies are corrected for coordinated omission with the resulting expected interval. 0 runs unpaced.
+     */
+    private double targetRate = 0;
+
+    /** Number of threads issuing operations, i.e. the maximum number of operations in flight. */
+    private int threads = 8;
+
+    private Duration duration = Duration.ofSeconds(30);
+
+    /** Time at the start of the run whose measurements are discarded. */
+    private Duration warmup = Duration.ofSeconds(5);
+
+    /** Length of each interval of the throughput and latency time series. */
+    private Duration reportInterval = Duration.ofSeconds(1);
+
+    /** Number of rows loaded before the run. */
+    private long recordCount = 10_000;
+
+    /** Number of characters in each of the three values of a row. */
+    private int valueSize = 100;
+
+    private Distribution distribution = Distribution.ZIPFIAN;
+
+    /** Skew of the zipfian and latest distributions, greater than 0 and less than 1. The default is YCSB's. */
+    private double zipfianConstant = 0.99;
+
+    private double readProportion = 0.5;
+
+    private double writeProportion = 0.5;
+
+    private double scanProportion = 0;
+
+    /** Rows read by each scan. */
+    private int scanLength = 10;
+
+    /**
+     * Path prefix of the result files: {@code -timeseries.csv}, {@code -summary.json} and one {@code .hgrm} per
+     * operation.
+     */
+    private String output = "target/workload";
+
+
+    public static Workload parse(String... args) {
+        Workload workload = new Workload();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            }
+            workload.set(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        workload.validate();
+        return workload;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "emulator-host": emulatorHost = value; break;
+            case "project-id": projectId = value; break;
+            case "instance-id": instanceId = value; break;
+            case "table-id": tableId = value; break;
+            case "mode": mode = Mode.valueOf(value.toUpperCase(Locale.ROOT)); break;
+            case "target-rate": targetRate = Double.parseDouble(value); break;
+            case "threads": threads = Integer.parseInt(value); break;
+            case "duration": duration = duration(value); break;
+            case "warmup": warmup = duration(value); break;
+            case "report-interval": reportInterval = duration(value); break;
+            case "record-count": recordCount = Long.parseLong(value); break;
+            case "value-size": valueSize = Integer.parseInt(value); break;
+            case "distribution": distribution = Distribution.valueOf(value.toUpperCase(Locale.ROOT)); break;
+            case "zipfian-constant": zipfianConstant = Double.parseDouble(value); break;
+            case "read": readProportion = Double.parseDouble(value); break;
+            case "write": writeProportion = Double.parseDouble(value); break;
+            case "scan": scanProportion = Double.parseDouble(value); break;
+            case "scan-length": scanLength = Integer.parseInt(value); break;
+            case "output": output = value; break;
+            default: throw new IllegalArgumentException("Unknown workload setting: " + key);
+        }
+    }
+
+    /**
+     * Accepts ISO-8601 durations and plain seconds, milliseconds or minutes like {@code 30s}, {@code 500ms} or
+     * {@code 2m}.
+     */
+    private static Duration duration(String value) {
+        if (value.startsWith("P") || value.startsWith("p")) {
+            return Duration.parse(value);
+        }
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    private void validate() {
+        if (Mode.OPEN == mode && targetRate <= 0) {
+            throw new IllegalArgumentException("Open-loop mode needs a positive target-rate.");
+        }
+        if (threads < 1 || recordCount < 1 || scanLength < 1) {
+            throw new IllegalArgumentException("threads, record-count and scan-length must be positive.");
+        }
+        if (zipfianConstant <= 0 || zipfianConstant >= 1) {
+            throw new IllegalArgumentException("zipfian-constant must be greater than 0 and less than 1.");
+        }
+        if (readProportion < 0 || writeProportion < 0 || scanProportion < 0
+            || 0 == readProportion + writeProportion + scanProportion) {
+            throw new IllegalArgumentException("Operation proportions must be non-negative and not all 0.");
+        }
+    }
+
+
+}
@@ -0,0 +1,279 @@
+package org.squidmin.benchmark;
+
+
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.common.base.Strings;
+import lombok.extern.slf4j.Slf4j;
+import org.squidmin.client.BigtableClient;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.BulkWriterProperties;
+import org.squidmin.config.TransportProperties;
+import org.squidmin.fake.FakeBigtable;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKey;
+
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+
+/**
+ * YCSB-style load generator for {@link BigtableClient}: a mix of point reads, single-row writes and short scans over
+ * keys drawn from a uniform, zipfian or latest distribution, issued by a fixed number of threads either in a closed
+ * loop or open loop at a fixed rate. See {@link Workload} for the settings.
+ * <p>
+ * Runs against the emulator with {@code emulator-host=host:port}, or an in-process {@link FakeBigtable} otherwise.
+ * Records are loaded before the run. Writes the throughput and latency of every report interval to
+ * {@code <output>-timeseries.csv} and the totals to {@code <output>-summary.json}, see {@link WorkloadStats}.
+ * <p>
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.squidmin.benchmark.WorkloadBenchmark -Dexec.args="mode=open target-rate=2000 read=0.9
+ * write=0.1"}.
+ */
+@Slf4j
+public class WorkloadBenchmark {
+
+
+    private static final String family = "cf";
+
+    private final Workload workload;
+    private final BigtableClient btClient;
+    private final KeyChooser keyChooser;
+    private final KeyChooser.Inserts inserts;
+    private final WorkloadStats stats = new WorkloadStats();
+    private final String value;
+
+
+    WorkloadBenchmark(Workload workload, BigtableClient btClient) {
+        this.workload = workload;
+        this.btClient = btClient;
+        this.keyChooser = KeyChooser.create(workload);
+        this.inserts = new KeyChooser.Inserts(workload.getRecordCount());
+        this.value = Strings.repeat("x", workload.getValueSize());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Workload workload = Workload.parse(args);
+        FakeBigtable fake = null;
+        TransportProperties transportProperties = new TransportProperties();
+        if (null == workload.getEmulatorHost()) {
+            fake = FakeBigtable.start();
+            transportProperties.setEmulatorHost(fake.getEmulatorHost());
+        } else {
+            transportProperties.setEmulatorHost(workload.getEmulatorHost());
+        }
+        BigtableClientManager clientManager = new BigtableClientManager(
+            workload.getProjectId(), workload.getInstanceId(), structure(),
+            new BulkWriterProperties(), transportProperties
+        );
+        BigtableClient btClient = new BigtableClient(workload.getTableId(), clientManager);
+        try {
+            new WorkloadBenchmark(workload, btClient).run();
+        } finally {
+            btClient.close();
+            if (null != fake) {
+                fake.close();
+            }
+        }
+    }
+
+    void run() throws Exception {
+        btClient.createTable();
+        load();
+
+        long periodNanos = 0 == workload.getTargetRate()
+            ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) * workload.getThreads() / workload.getTargetRate());
+        long start = System.nanoTime();
+        long end = start + workload.getWarmup().toNanos() + workload.getDuration().toNanos();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workload.getThreads(); i++) {
+            long firstSlot = start + periodNanos * i / workload.getThreads();
+            Thread thread = new Thread(() -> issue(firstSlot, periodNanos, end), "workload-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        log.info("Running {} threads in {} loop mode for {} after {} warm-up.",
+            workload.getThreads(), workload.getMode(), workload.getDuration(), workload.getWarmup());
+
+        Path timeseries = Paths.get(workload.getOutput() + "-timeseries.csv");
+        if (null != timeseries.getParent()) {
+            Files.createDirectories(timeseries.getParent());
+        }
+        long intervalNanos = workload.getReportInterval().toNanos();
+        long measureStart = start + workload.getWarmup().toNanos();
+        long measureEnd;
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(timeseries))) {
+            csv.println(WorkloadStats.csvHeader());
+            long intervalStart = start;
+            while (intervalStart < end) {
+                long intervalEnd = Math.min(end, intervalStart + intervalNanos);
+                sleepUntil(intervalEnd);
+                boolean keep = intervalEnd > measureStart;
+                stats.interval(
+                    seconds(intervalEnd - measureStart), seconds(intervalEnd - intervalStart), keep, csv
+                );
+                intervalStart = intervalEnd;
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            measureEnd = System.nanoTime();
+            stats.interval(0, 0, true, null);
+        }
+        log.info("Wrote {}", timeseries);
+        stats.writeSummary(workload, seconds(measureEnd - measureStart), workload.getOutput());
+    }
+
+    /**
+     * Writes {@code recordCount} rows through the bulk writer.
+     */
+    private void load() throws Exception {
+        long start = System.nanoTime();
+        for (long i = 0; i < workload.getRecordCount(); i++) {
+            btClient.writeAsync(dto(i));
+        }
+        btClient.flush();
+        log.info("Loaded {} records in {} ms.",
+            workload.getRecordCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * The loop of one thread. In open-loop mode slots are fixed in advance, {@code periodNanos} apart, and a thread
+     * that falls behind issues late operations back to back, each timed from its slot. In closed-loop mode the next
+     * slot is one period after the previous operation started, or immediately when unpaced.
+     */
+    private void issue(long firstSlot, long periodNanos, long end) {
+        Random random = ThreadLocalRandom.current();
+        boolean open = Workload.Mode.OPEN == workload.getMode();
+        long slot = firstSlot;
+        while (slot < end) {
+            sleepUntil(slot);
+            long started = System.nanoTime();
+            if (started >= end) {
+                break;
+            }
+            WorkloadStats.Operation operation = chooseOperation(random);
+            boolean succeeded = execute(operation, random);
+            long finished = System.nanoTime();
+            if (!succeeded) {
+                stats.recordError(operation);
+            } else if (open) {
+                stats.record(operation, finished - started, finished - slot);
+            } else if (periodNanos > 0) {
+                stats.recordWithExpectedInterval(operation, finished - started, periodNanos);
+            } else {
+                stats.record(operation, finished - started, finished - started);
+            }
+            slot = open ? slot + periodNanos : started + periodNanos;
+        }
+    }
+
+    private WorkloadStats.Operation chooseOperation(Random random) {
+        double total = workload.getReadProportion() + workload.getWriteProportion() + workload.getScanProportion();
+        double choice = random.nextDouble() * total;
+        if (choice < workload.getReadProportion()) {
+            return WorkloadStats.Operation.READ;
+        }
+        if (choice < workload.getReadProportion() + workload.getWriteProportion()) {
+            return WorkloadStats.Operation.WRITE;
+        }
+        return WorkloadStats.Operation.SCAN;
+    }
+
+    private boolean execute(WorkloadStats.Operation operation, Random random) {
+        try {
+            switch (operation) {
+                case READ:
+                    btClient.readByRowKey(workload.getTableId(), rowKey(keyChooser.next(random, inserts.count())));
+                    return true;
+                case WRITE:
+                    write(random);
+                    return true;
+                case SCAN:
+                    Query query = Query.create(workload.getTableId())
+                        .range(ByteStringRange.unbounded().startClosed(
+                            rowKey(keyChooser.next(random, inserts.count()))
+                        ))
+                        .limit(workload.getScanLength());
+                    try (Stream<Row> rows = btClient.streamRows(query)) {
+                        rows.forEach(row -> { });
+                    }
+                    return true;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+        } catch (Exception e) {
+            log.debug("{} failed: {}", operation, e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Inserts a new record with the latest distribution, so reads follow the newest records, and otherwise updates
+     * an existing one.
+     */
+    private void write(Random random) throws Exception {
+        if (Workload.Distribution.LATEST == workload.getDistribution()) {
+            long index = inserts.claim();
+            try {
+                btClient.writeSingleRow(dto(index));
+            } finally {
+                inserts.inserted(index);
+            }
+        } else {
+            btClient.writeSingleRow(dto(keyChooser.next(random, inserts.count())));
+        }
+    }
+
+    private DtoExample dto(long index) {
+        return DtoExample.builder()
+            .rowKey(new RowKey(segmentA(index), "w", "0"))
+            .fieldA(value)
+            .fieldB(value)
+            .fieldC(value)
+            .build();
+    }
+
+    private static String rowKey(long index) {
+        return segmentA(index) + RowKey.delim + "w" + RowKey.delim + "0";
+    }
+
+    private static String segmentA(long index) {
+        return String.format("user%012d", index);
+    }
+
+    private static BigtableStructure structure() {
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName(family);
+        mapping.setQualifierNames(new LinkedHashSet<>(Arrays.asList("field_a", "field_b", "field_c")));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        return btStructure;
+    }
+
+    private static void sleepUntil(long deadline) {
+        for (long remaining = deadline - System.nanoTime(); remaining > 0; remaining = deadline - System.nanoTime()) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+
+}
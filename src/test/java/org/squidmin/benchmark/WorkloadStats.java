@@ -0,0 +1,195 @@
+package org.squidmin.benchmark;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Latency histograms and error counts of a workload run, per operation, in microseconds.
+ * <p>
+ * Two latencies are kept for each operation. Service time runs from the moment the operation is actually issued.
+ * Response time runs from the moment it was meant to be issued: in open-loop mode that is its slot in the fixed-rate
+ * schedule, so time spent queued behind slow operations counts; in paced closed-loop mode the stalls are back-filled
+ * from the expected interval. Response time is the number to compare with latency objectives, service time shows
+ * how much of it the client and server account for.
+ */
+@Slf4j
+class WorkloadStats {
+
+
+    enum Operation { READ, WRITE, SCAN }
+
+
+    private static final long highestTrackableMicros = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+
+    WorkloadStats() {
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    /**
+     * Records an operation whose response time is measured from its intended start.
+     */
+    void record(Operation operation, long serviceNanos, long responseNanos) {
+        Stats stat = stats.get(operation);
+        stat.service.recordValue(micros(serviceNanos));
+        stat.response.recordValue(micros(responseNanos));
+    }
+
+    /**
+     * Records an operation of a paced closed loop, filling in the operations a stall held back at
+     * {@code expectedIntervalNanos} apart.
+     */
+    void recordWithExpectedInterval(Operation operation, long serviceNanos, long expectedIntervalNanos) {
+        Stats stat = stats.get(operation);
+        stat.service.recordValue(micros(serviceNanos));
+        stat.response.recordValueWithExpectedInterval(micros(serviceNanos), micros(expectedIntervalNanos));
+    }
+
+    void recordError(Operation operation) {
+        stats.get(operation).intervalErrors.incrementAndGet();
+    }
+
+    /**
+     * Closes the current interval. Kept intervals are added to the totals and, unless {@code csv} is {@code null},
+     * written as one CSV line per operation that ran; warm-up intervals are dropped.
+     */
+    void interval(double elapsedSeconds, double intervalSeconds, boolean keep, PrintWriter csv) {
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats stat = entry.getValue();
+            stat.intervalService = stat.service.getIntervalHistogram(stat.intervalService);
+            stat.intervalResponse = stat.response.getIntervalHistogram(stat.intervalResponse);
+            long errors = stat.intervalErrors.getAndSet(0);
+            if (!keep) {
+                continue;
+            }
+            stat.totalService.add(stat.intervalService);
+            stat.totalResponse.add(stat.intervalResponse);
+            stat.totalErrors += errors;
+            long count = stat.intervalService.getTotalCount();
+            if (null == csv || (0 == count && 0 == errors)) {
+                continue;
+            }
+            csv.printf(Locale.ROOT, "%.3f,%s,%d,%.1f,%d,%d,%d,%d,%d,%d,%d,%d%n",
+                elapsedSeconds,
+                entry.getKey().name().toLowerCase(Locale.ROOT),
+                count,
+                count / intervalSeconds,
+                errors,
+                stat.intervalResponse.getValueAtPercentile(50),
+                stat.intervalResponse.getValueAtPercentile(90),
+                stat.intervalResponse.getValueAtPercentile(99),
+                stat.intervalResponse.getValueAtPercentile(99.9),
+                stat.intervalResponse.getMaxValue(),
+                stat.intervalService.getValueAtPercentile(50),
+                stat.intervalService.getValueAtPercentile(99));
+        }
+        if (null != csv) {
+            csv.flush();
+        }
+    }
+
+    static String csvHeader() {
+        return "elapsed_s,operation,ops,ops_per_s,errors,"
+            + "p50_us,p90_us,p99_us,p999_us,max_us,service_p50_us,service_p99_us";
+    }
+
+    /**
+     * Writes the settings and the totals of every operation as JSON, and the full response time distribution of
+     * each operation as an HdrHistogram percentile file that HdrHistogram's plotter reads.
+     */
+    void writeSummary(Workload workload, double measuredSeconds, String prefix) throws IOException {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("workload", workload);
+        summary.put("measuredSeconds", measuredSeconds);
+        Map<String, Object> operations = new LinkedHashMap<>();
+        long totalOps = 0;
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats stat = entry.getValue();
+            long count = stat.totalService.getTotalCount();
+            if (0 == count && 0 == stat.totalErrors) {
+                continue;
+            }
+            totalOps += count;
+            String name = entry.getKey().name().toLowerCase(Locale.ROOT);
+            Map<String, Object> operation = new LinkedHashMap<>();
+            operation.put("ops", count);
+            operation.put("errors", stat.totalErrors);
+            operation.put("opsPerSecond", count / measuredSeconds);
+            operation.put("responseMicros", percentiles(stat.totalResponse));
+            operation.put("serviceMicros", percentiles(stat.totalService));
+            operations.put(name, operation);
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(Paths.get(prefix + "-" + name + ".hgrm")))) {
+                stat.totalResponse.outputPercentileDistribution(hgrm, 1.0);
+            }
+            log.info("{}: {} ops, {} errors, {} ops/s, response p50 {} us, p99 {} us, p99.9 {} us, max {} us",
+                name, count, stat.totalErrors, Math.round(count / measuredSeconds),
+                stat.totalResponse.getValueAtPercentile(50), stat.totalResponse.getValueAtPercentile(99),
+                stat.totalResponse.getValueAtPercentile(99.9), stat.totalResponse.getMaxValue());
+        }
+        summary.put("opsPerSecond", totalOps / measuredSeconds);
+        summary.put("operations", operations);
+
+        ObjectMapper mapper = new ObjectMapper()
+            .registerModule(new SimpleModule().addSerializer(Duration.class, ToStringSerializer.instance))
+            .enable(SerializationFeature.INDENT_OUTPUT);
+        Path path = Paths.get(prefix + "-summary.json");
+        mapper.writeValue(path.toFile(), summary);
+        log.info("Wrote {}", path);
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("mean", histogram.getMean());
+        percentiles.put("p50", histogram.getValueAtPercentile(50));
+        percentiles.put("p90", histogram.getValueAtPercentile(90));
+        percentiles.put("p99", histogram.getValueAtPercentile(99));
+        percentiles.put("p999", histogram.getValueAtPercentile(99.9));
+        percentiles.put("max", histogram.getMaxValue());
+        return percentiles;
+    }
+
+    private static long micros(long nanos) {
+        return Math.min(highestTrackableMicros, Math.max(1, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+
+    private static class Stats {
+
+        private final Recorder service = new Recorder(highestTrackableMicros, 3);
+        private final Recorder response = new Recorder(highestTrackableMicros, 3);
+        private final AtomicLong intervalErrors = new AtomicLong();
+        private final Histogram totalService = new Histogram(highestTrackableMicros, 3);
+        private final Histogram totalResponse = new Histogram(highestTrackableMicros, 3);
+        private Histogram intervalService;
+        private Histogram intervalResponse;
+        private long totalErrors;
+
+    }
+
+
+}
@@ -0,0 +1,199 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import com.google.cloud.bigtable.data.v2.models.MutateRowsException;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import io.grpc.Status;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.config.BulkWriterProperties;
+import org.squidmin.config.WriteThrottleProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableBulkWriterUnitTest {
+
+
+    private static final String tableId = "bulk_writer_table";
+
+    private BigtableDataClient dataClient;
+
+    private BigtableBulkWriter writer;
+
+
+    @Before
+    public void before() {
+        dataClient = mock(BigtableDataClient.class);
+        BulkWriterProperties properties = new BulkWriterProperties();
+        properties.setMaxBatchEntries(3);
+        properties.setFlushInterval(Duration.ofMinutes(10));
+        writer = new BigtableBulkWriter(tableId, dataClient, properties);
+    }
+
+    @After
+    public void after() { writer.close(); }
+
+
+    @Test
+    public void add_givenMaxBatchEntriesReached_sendOneBulkMutation() throws Exception {
+        when(dataClient.bulkMutateRowsAsync(any(BulkMutation.class))).thenReturn(ApiFutures.immediateFuture(null));
+
+        List<ApiFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(writer.add(entry("row" + i)));
+        }
+
+        verify(dataClient, times(1)).bulkMutateRowsAsync(any(BulkMutation.class));
+        for (ApiFuture<Void> result : results) {
+            Assertions.assertTrue(result.isDone());
+        }
+        Assertions.assertEquals(3, writer.getEntriesWritten().get());
+        Assertions.assertEquals(0, writer.getBufferedBytes());
+    }
+
+    @Test
+    public void add_givenThrottleAtLimit_queueBatchWithoutBlocking() throws Exception {
+        when(dataClient.bulkMutateRowsAsync(any(BulkMutation.class))).thenReturn(ApiFutures.immediateFuture(null));
+        WriteThrottleProperties throttleProperties = new WriteThrottleProperties();
+        throttleProperties.setInitialInFlight(3);
+        WriteThrottle throttle = new WriteThrottle(throttleProperties);
+        WriteThrottle.Permit held = throttle.acquire(3);
+        BulkWriterProperties properties = new BulkWriterProperties();
+        properties.setMaxBatchEntries(3);
+        properties.setFlushInterval(Duration.ofMinutes(10));
+        BigtableBulkWriter throttled = new BigtableBulkWriter(tableId, dataClient, properties, throttle);
+
+        List<ApiFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(throttled.add(entry("row" + i)));
+        }
+
+        verify(dataClient, times(0)).bulkMutateRowsAsync(any(BulkMutation.class));
+        Assertions.assertEquals(1, throttled.getOutstandingBatchCount());
+        throttle.release(held, null);
+        throttled.close();
+
+        verify(dataClient, times(1)).bulkMutateRowsAsync(any(BulkMutation.class));
+        for (ApiFuture<Void> result : results) {
+            Assertions.assertTrue(result.isDone());
+        }
+        Assertions.assertEquals(0, throttle.getInFlight());
+    }
+
+    @Test
+    public void flush_givenPartialBatch_sendBufferedEntries() throws Exception {
+        when(dataClient.bulkMutateRowsAsync(any(BulkMutation.class))).thenReturn(ApiFutures.immediateFuture(null));
+
+        ApiFuture<Void> result = writer.add(entry("row0"));
+        Assertions.assertFalse(result.isDone());
+        Assertions.assertTrue(0 < writer.getBufferedBytes());
+
+        writer.flush();
+
+        Assertions.assertTrue(result.isDone());
+        verify(dataClient, times(1)).bulkMutateRowsAsync(any(BulkMutation.class));
+    }
+
+    @Test
+    public void add_givenPartialBatchFailure_failOnlyRejectedEntries() throws Exception {
+        ApiException error = new ApiException(null, GrpcStatusCode.of(Status.Code.INVALID_ARGUMENT), false);
+        MutateRowsException failure = new MutateRowsException(
+            null, Collections.singletonList(MutateRowsException.FailedMutation.create(1, error)), false
+        );
+        when(dataClient.bulkMutateRowsAsync(any(BulkMutation.class))).thenReturn(ApiFutures.immediateFailedFuture(failure));
+
+        ApiFuture<Void> first = writer.add(entry("row0"));
+        ApiFuture<Void> second = writer.add(entry("row1"));
+        ApiFuture<Void> third = writer.add(entry("row2"));
+
+        first.get();
+        third.get();
+        ExecutionException thrown = Assertions.assertThrows(ExecutionException.class, second::get);
+        Assertions.assertSame(error, thrown.getCause());
+        Assertions.assertEquals(2, writer.getEntriesWritten().get());
+        Assertions.assertEquals(1, writer.getEntriesFailed().get());
+    }
+
+    @Test
+    public void close_givenBufferedEntries_drainBeforeClosing() throws Exception {
+        when(dataClient.bulkMutateRowsAsync(any(BulkMutation.class))).thenReturn(ApiFutures.immediateFuture(null));
+
+        ApiFuture<Void> result = writer.add(entry("row0"));
+        writer.close();
+
+        Assertions.assertTrue(result.isDone());
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.add(entry("row1")));
+    }
+
+    @Test
+    public void close_givenConcurrentAdds_completeEveryAcceptedEntry() throws Exception {
+        AtomicInteger sent = new AtomicInteger();
+        when(dataClient.bulkMutateRowsAsync(any(BulkMutation.class))).thenAnswer(invocation -> {
+            sent.addAndGet(invocation.getArgument(0, BulkMutation.class).getEntryCount());
+            return ApiFutures.immediateFuture(null);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<ApiFuture<Void>> accepted = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> adders = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            int id = thread;
+            adders.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; ; i++) {
+                    try {
+                        accepted.add(writer.add(entry("row" + id + "-" + i)));
+                    } catch (IllegalStateException e) {
+                        return null;
+                    }
+                }
+            }));
+        }
+
+        start.countDown();
+        Thread.sleep(20);
+        writer.close();
+        for (Future<?> adder : adders) {
+            adder.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        Assertions.assertFalse(accepted.isEmpty());
+        for (ApiFuture<Void> result : accepted) {
+            Assertions.assertTrue(result.isDone());
+        }
+        Assertions.assertEquals(accepted.size(), sent.get());
+        Assertions.assertEquals(0, writer.getBufferedBytes());
+    }
+
+    private static RowMutationEntry entry(String rowKey) {
+        return RowMutationEntry.create(rowKey).setCell("cf", "qualifier", "value");
+    }
+
+
+}
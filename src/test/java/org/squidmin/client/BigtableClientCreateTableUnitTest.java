@@ -0,0 +1,105 @@
+package org.squidmin.client;
+
+
+import com.google.bigtable.admin.v2.ColumnFamily;
+import com.google.bigtable.admin.v2.CreateTableRequest;
+import com.google.cloud.bigtable.admin.v2.BigtableTableAdminClient;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.KeyOffset;
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.mockito.ArgumentCaptor;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.FamilyToQualifierMapping;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableClientCreateTableUnitTest {
+
+
+    private static final String tableId = "split_table";
+
+    private BigtableDataClient dataClient;
+
+    private BigtableTableAdminClient adminClient;
+
+    private BigtableClient btClient;
+
+
+    @Before
+    public void before() throws InvalidSchemaException {
+        dataClient = mock(BigtableDataClient.class);
+        adminClient = mock(BigtableTableAdminClient.class);
+        when(adminClient.exists(anyString())).thenReturn(false);
+        FamilyToQualifierMapping versioned = new FamilyToQualifierMapping();
+        versioned.setColumnFamilyName("versioned");
+        versioned.setMaxVersions(3);
+        versioned.setMaxAge(Duration.ofDays(7));
+        FamilyToQualifierMapping unbounded = new FamilyToQualifierMapping();
+        unbounded.setColumnFamilyName("unbounded");
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().addAll(Arrays.asList(versioned, unbounded));
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        when(clientManager.getTableAdminClient()).thenReturn(adminClient);
+        when(clientManager.getBtStructure()).thenReturn(btStructure);
+        when(clientManager.getCompiledSchema()).thenThrow(new InvalidSchemaException("No qualifiers configured."));
+        btClient = new BigtableClient(tableId, clientManager);
+    }
+
+
+    @Test
+    public void createTableWithEvenSplits_givenStructure_applySplitsAndGcRules() {
+        btClient.createTableWithEvenSplits(tableId, 3);
+
+        CreateTableRequest request = createTableRequest();
+        Assertions.assertEquals(3, request.getInitialSplitsCount());
+        ColumnFamily versioned = request.getTable().getColumnFamiliesOrThrow("versioned");
+        Assertions.assertEquals(2, versioned.getGcRule().getUnion().getRulesCount());
+        Assertions.assertEquals(3, versioned.getGcRule().getUnion().getRules(0).getMaxNumVersions());
+        Assertions.assertEquals(
+            Duration.ofDays(7).getSeconds(), versioned.getGcRule().getUnion().getRules(1).getMaxAge().getSeconds()
+        );
+        Assertions.assertFalse(request.getTable().getColumnFamiliesOrThrow("unbounded").hasGcRule());
+    }
+
+    @Test
+    public void createTableLike_givenMoreSamplesThanSplits_useEvenlySpacedSamples() {
+        when(dataClient.sampleRowKeys("source_table")).thenReturn(Arrays.asList(
+            offset("b"), offset("d"), offset("f"), offset("h"), offset("j"), offset("")
+        ));
+
+        btClient.createTableLike(tableId, "source_table", 2);
+
+        List<String> splits = createTableRequest().getInitialSplitsList().stream()
+            .map(split -> split.getKey().toStringUtf8())
+            .collect(Collectors.toList());
+        Assertions.assertEquals(Arrays.asList("d", "h"), splits);
+    }
+
+    private CreateTableRequest createTableRequest() {
+        ArgumentCaptor<com.google.cloud.bigtable.admin.v2.models.CreateTableRequest> request =
+            ArgumentCaptor.forClass(com.google.cloud.bigtable.admin.v2.models.CreateTableRequest.class);
+        verify(adminClient).createTable(request.capture());
+        return request.getValue().toProto("project", "instance");
+    }
+
+    private static KeyOffset offset(String key) {
+        return KeyOffset.create(ByteString.copyFromUtf8(key), 0);
+    }
+
+
+}
@@ -8,6 +8,7 @@ import com.google.cloud.bigtable.admin.v2.models.Table;
 import com.google.cloud.bigtable.data.v2.models.Query;
 import com.google.cloud.bigtable.data.v2.models.Row;
 import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
 import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.After;
@@ -26,6 +27,7 @@ import org.squidmin.fixture.BigtableIntegrationTestFixture;
 import org.squidmin.fixture.BigtableUnitTestFixture;
 import org.squidmin.model.*;
 import org.squidmin.util.BigtableUtil;
+import org.squidmin.util.LatestRowReducer;
 import org.squidmin.util.LogFont;
 
 import java.time.*;
@@ -153,6 +155,22 @@ public class BigtableClientIntegrationTest {
 
     }
 
+    @Test
+    public void writeAsync_givenManyRows_flushAllRows() throws InterruptedException, ExecutionException {
+        String columnFamilyName = columnFamilies.get(0).getColumnFamilyName();
+        String rowKeyPrefix = BigtableIntegrationTestFixture.RowFixture.rowkey.toString() + "#bulk";
+        List<ApiFuture<Void>> futures = Lists.newArrayList();
+        for (int i = 0; i < 250; i++) {
+            futures.add(btClient.writeAsync(
+                RowMutationEntry.create(rowKeyPrefix + i)
+                    .setCell(columnFamilyName, "field_1", BigtableIntegrationTestFixture.timestamp, "bulk_" + i)
+            ));
+        }
+        btClient.flush();
+        ApiFutures.allAsList(futures).get();
+        assertEquals(250, btClient.readTable(tableId, Query.create(tableId).prefix(rowKeyPrefix), false).size());
+    }
+
     @Test
     public void readKey_givenMatchingRowKey_returnRow() {
         btClient.write(
@@ -222,8 +240,11 @@ public class BigtableClientIntegrationTest {
         for (int i = 1; i < allMatchingRows.size(); i++) {
             Assertions.assertNotSame(allMatchingRows.get(i), allMatchingRows.get(i - 1));
         }
-        Assertions.assertTrue(allMatchingRows.contains(latestRow));
-        Assertions.assertEquals(latestRow, allMatchingRows.get(latestRowWrapper.getIndex()));
+        Assertions.assertEquals(latestRow.getKey(), allMatchingRows.get(latestRowWrapper.getIndex()).getKey());
+        long latestTimestamp = LatestRowReducer.latestTimestamp(latestRow);
+        for (Row row : allMatchingRows) {
+            Assertions.assertTrue(LatestRowReducer.latestTimestamp(row) <= latestTimestamp);
+        }
 
     }
 
@@ -0,0 +1,184 @@
+package org.squidmin.client;
+
+
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.DeadlineExceededException;
+import com.google.api.gax.rpc.NotFoundException;
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Filters.Filter;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.CacheProperties;
+import org.squidmin.config.EchoProperties;
+import org.squidmin.config.MetricsProperties;
+import org.squidmin.config.ReadProperties;
+import org.squidmin.config.WriteThrottleProperties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableClientMetricsUnitTest {
+
+
+    private static final String tableId = "metrics_table";
+
+    private SimpleMeterRegistry registry;
+
+    private BigtableDataClient dataClient;
+
+    private BigtableClient btClient;
+
+
+    @Before
+    public void before() {
+        registry = new SimpleMeterRegistry();
+        dataClient = mock(BigtableDataClient.class);
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        btClient = new BigtableClient(
+            tableId, clientManager, new ReadProperties(), new CacheProperties(), new EchoProperties(),
+            new ClientMetrics(registry, new MetricsProperties())
+        );
+    }
+
+
+    @Test
+    public void readByRowKey_givenRow_recordLatencyRowsAndBytes() {
+        when(dataClient.readRow(eq(tableId), anyString())).thenReturn(row("key", "value"));
+
+        btClient.readByRowKey(tableId, "key");
+
+        Timer latency = registry.get(ClientMetrics.LATENCY).tag("operation", "read-by-row-key").timer();
+        Assertions.assertEquals(1, latency.count());
+        Assertions.assertEquals(3, latency.takeSnapshot().percentileValues().length);
+        Assertions.assertEquals(1, counter(ClientMetrics.ROWS, "read-by-row-key"));
+        Assertions.assertEquals("key".length() + "value".length(), counter(ClientMetrics.BYTES, "read-by-row-key"));
+        Assertions.assertEquals(0, btClient.getMetrics().operation("read-by-row-key").getInFlight());
+    }
+
+    @Test
+    public void readFilter_givenNotFound_countErrorByStatus() {
+        when(dataClient.readRows(any(Query.class))).thenThrow(
+            new NotFoundException(null, GrpcStatusCode.of(Status.Code.NOT_FOUND), false)
+        );
+
+        Assertions.assertNull(btClient.readFilter(tableId, filter()));
+
+        double errors = registry.get(ClientMetrics.ERRORS)
+            .tag("operation", "read-filter")
+            .tag("status", "NOT_FOUND")
+            .counter().count();
+        Assertions.assertEquals(1, errors);
+        Assertions.assertEquals(1, registry.get(ClientMetrics.LATENCY).tag("operation", "read-filter").timer().count());
+        Assertions.assertEquals(0, btClient.getMetrics().operation("read-filter").getInFlight());
+    }
+
+    @Test
+    public void streamRows_givenClosedEarly_recordRowsPulledOnce() {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(row("key" + i, "v"));
+        }
+        ServerStream<Row> serverStream = serverStream(rows);
+        when(dataClient.readRows(any(Query.class))).thenReturn(serverStream);
+
+        try (Stream<Row> stream = btClient.streamRows(Query.create(tableId))) {
+            Assertions.assertEquals(3, stream.limit(3).collect(Collectors.toList()).size());
+            Assertions.assertEquals(1, btClient.getMetrics().operation("read-rows").getInFlight());
+        }
+
+        Assertions.assertEquals(1, registry.get(ClientMetrics.LATENCY).tag("operation", "read-rows").timer().count());
+        Assertions.assertEquals(3, counter(ClientMetrics.ROWS, "read-rows"));
+        Assertions.assertEquals(0, btClient.getMetrics().operation("read-rows").getInFlight());
+    }
+
+    @Test
+    public void readTable_givenMetricsDisabled_registerNoMeters() {
+        MetricsProperties properties = new MetricsProperties();
+        properties.setEnabled(false);
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        ServerStream<Row> serverStream = serverStream(Collections.singletonList(row("key", "value")));
+        when(dataClient.readRows(any(Query.class))).thenReturn(serverStream);
+        BigtableClient client = new BigtableClient(
+            tableId, clientManager, new ReadProperties(), new CacheProperties(), new EchoProperties(),
+            new ClientMetrics(registry, properties)
+        );
+
+        Assertions.assertEquals(1, client.readTable(tableId, false).size());
+        Assertions.assertTrue(registry.getMeters().isEmpty());
+    }
+
+    @Test
+    public void write_givenWriteThrottle_publishLimitsAndCuts() {
+        WriteThrottleProperties throttleProperties = new WriteThrottleProperties();
+        throttleProperties.setEnabled(true);
+        WriteThrottle throttle = new WriteThrottle(throttleProperties);
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        when(clientManager.getWriteThrottle()).thenReturn(throttle);
+        BigtableClient throttledClient = new BigtableClient(
+            tableId, clientManager, new ReadProperties(), new CacheProperties(), new EchoProperties(),
+            new ClientMetrics(registry, new MetricsProperties())
+        );
+        doThrow(new DeadlineExceededException(null, GrpcStatusCode.of(Status.Code.DEADLINE_EXCEEDED), true))
+            .when(dataClient).mutateRow(any(RowMutation.class));
+
+        Assertions.assertThrows(
+            DeadlineExceededException.class,
+            () -> throttledClient.write("key", RowMutation.create(tableId, "key").setCell("cf", "q", "v"))
+        );
+
+        Assertions.assertEquals(50, registry.get(ClientMetrics.WRITE_IN_FLIGHT_LIMIT).gauge().value());
+        Assertions.assertEquals(500, registry.get(ClientMetrics.WRITE_RATE_LIMIT).gauge().value());
+        Assertions.assertEquals(1, registry.get(ClientMetrics.WRITE_LIMIT_DECREASES)
+            .tag("cause", "DEADLINE_EXCEEDED").functionCounter().count());
+        Assertions.assertEquals(0, throttle.getInFlight());
+    }
+
+    private double counter(String name, String operation) {
+        return registry.get(name).tag("operation", operation).counter().count();
+    }
+
+    private static Filter filter() {
+        return FILTERS.key().regex("key.*");
+    }
+
+    private static Row row(String key, String value) {
+        return Row.create(ByteString.copyFromUtf8(key), Collections.singletonList(RowCell.create(
+            "cf", ByteString.copyFromUtf8("q"), 0, Collections.emptyList(), ByteString.copyFromUtf8(value)
+        )));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerStream<Row> serverStream(List<Row> rows) {
+        ServerStream<Row> serverStream = mock(ServerStream.class);
+        when(serverStream.iterator()).thenReturn(rows.iterator());
+        return serverStream;
+    }
+
+
+}
@@ -0,0 +1,99 @@
+package org.squidmin.client;
+
+
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.internal.NameUtil;
+import com.google.cloud.bigtable.data.v2.internal.RequestContext;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.CacheProperties;
+import org.squidmin.config.ReadProperties;
+import org.squidmin.model.MultiGetResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableClientMultiGetUnitTest {
+
+
+    private static final String tableId = "multi_get_table";
+
+    private static final RequestContext requestContext = RequestContext.create("project", "instance", "");
+
+    private final List<Query> queries = Collections.synchronizedList(new ArrayList<>());
+
+    private BigtableDataClient dataClient;
+
+    private BigtableClient btClient;
+
+
+    @Before
+    public void before() {
+        dataClient = mock(BigtableDataClient.class);
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+
+        ReadProperties readProperties = new ReadProperties();
+        readProperties.setMaxKeysPerRequest(2);
+        btClient = new BigtableClient(tableId, clientManager, readProperties, new CacheProperties());
+
+        doAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            ResponseObserver<Row> observer = invocation.getArgument(1);
+            queries.add(query);
+            observer.onStart(null);
+            for (ByteString rowKey : query.toProto(requestContext).getRows().getRowKeysList()) {
+                if (!rowKey.toStringUtf8().startsWith("missing")) {
+                    observer.onResponse(Row.create(rowKey, Collections.emptyList()));
+                }
+            }
+            observer.onComplete();
+            return null;
+        }).when(dataClient).readRowsAsync(any(Query.class), any());
+    }
+
+
+    @Test
+    public void readByRowKeys_givenMoreKeysThanLimit_splitIntoBatches() {
+        MultiGetResult result = btClient.readByRowKeys(Arrays.asList("a", "b", "c", "d", "e"));
+
+        verify(dataClient, times(3)).readRowsAsync(any(Query.class), any());
+        for (Query query : queries) {
+            Assertions.assertTrue(query.toProto(requestContext).getRows().getRowKeysCount() <= 2);
+            Assertions.assertEquals(
+                NameUtil.formatTableName("project", "instance", tableId),
+                query.toProto(requestContext).getTableName()
+            );
+        }
+        Assertions.assertEquals(5, result.getRows().size());
+        Assertions.assertTrue(result.getMissingKeys().isEmpty());
+    }
+
+    @Test
+    public void readByRowKeys_givenDuplicateAndMissingKeys_reportMissingKeys() {
+        MultiGetResult result = btClient.readByRowKeys(Arrays.asList("a", "a", "missing_1", "b"));
+
+        verify(dataClient, times(2)).readRowsAsync(any(Query.class), any());
+        Assertions.assertEquals(2, result.getRows().size());
+        Assertions.assertEquals("a", result.getRows().get("a").getKey().toStringUtf8());
+        Assertions.assertEquals(Collections.singleton("missing_1"), result.getMissingKeys());
+    }
+
+
+}
@@ -0,0 +1,108 @@
+package org.squidmin.client;
+
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Range;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.CacheProperties;
+import org.squidmin.config.ReadProperties;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKey;
+import org.squidmin.util.CompiledSchema;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableClientRangeScanUnitTest {
+
+
+    private static final String tableId = "range_scan_table";
+
+    private static final Comparator<ByteString> byteOrder = ByteString.unsignedLexicographicalComparator();
+
+    private final List<Row> storedRows = new ArrayList<>();
+
+    private BigtableDataClient dataClient;
+
+    private CompiledSchema schema;
+
+    private BigtableClient btClient;
+
+
+    @Before
+    public void before() throws Exception {
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName("test_col_fam");
+        mapping.setQualifierNames(new LinkedHashSet<>(Collections.singletonList("val_1")));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        btStructure.getRowKey().setSaltBuckets(4);
+        schema = CompiledSchema.compile(btStructure);
+
+        for (String segmentA : new String[]{"a", "ab", "b"}) {
+            for (int i = 0; i < 10; i++) {
+                ByteString key = new RowKey(segmentA, "x", String.format("%02d", i)).toByteString(schema.getRowKeyCodec());
+                storedRows.add(Row.create(key, Collections.emptyList()));
+            }
+        }
+        storedRows.sort(Comparator.comparing(Row::getKey, byteOrder));
+
+        dataClient = mock(BigtableDataClient.class);
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        when(clientManager.getCompiledSchema()).thenReturn(schema);
+        when(dataClient.readRows(any(Query.class))).thenAnswer(invocation -> serverStream(invocation.getArgument(0)));
+        btClient = new BigtableClient(tableId, clientManager, new ReadProperties(), new CacheProperties());
+    }
+
+
+    @Test
+    public void readByRowKeyPrefix_givenSaltedKeys_fanOutAndMergeInLogicalOrder() {
+        List<Row> rows = btClient.readByRowKeyPrefix(tableId, "a");
+
+        verify(dataClient, times(4)).readRows(any(Query.class));
+        List<String> logicalKeys = rows.stream()
+            .map(row -> schema.getRowKeyCodec().decode(row.getKey()).toString())
+            .collect(Collectors.toList());
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            expected.add(String.format("a#x#%02d", i));
+        }
+        Assertions.assertEquals(expected, logicalKeys);
+    }
+
+    @SuppressWarnings("unchecked")
+    private ServerStream<Row> serverStream(Query query) {
+        ByteStringRange bound = query.getBound();
+        List<Row> matching = storedRows.stream()
+            .filter(row -> byteOrder.compare(bound.getStart(), row.getKey()) <= 0)
+            .filter(row -> Range.BoundType.UNBOUNDED == bound.getEndBound()
+                || byteOrder.compare(row.getKey(), bound.getEnd()) < 0)
+            .collect(Collectors.toList());
+        ServerStream<Row> serverStream = mock(ServerStream.class);
+        when(serverStream.iterator()).thenReturn(matching.iterator());
+        return serverStream;
+    }
+
+
+}
@@ -0,0 +1,74 @@
+package org.squidmin.client;
+
+
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.config.AppProfileClients;
+import org.squidmin.config.BigtableClientManager;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableClientRoutingUnitTest {
+
+
+    private static final String tableId = "routing_table";
+
+    private BigtableDataClient defaultClient;
+
+    private BigtableDataClient interactiveClient;
+
+    private BigtableDataClient batchClient;
+
+    private BigtableClient btClient;
+
+
+    @Before
+    public void before() {
+        defaultClient = mock(BigtableDataClient.class);
+        interactiveClient = mock(BigtableDataClient.class);
+        batchClient = mock(BigtableDataClient.class);
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(defaultClient);
+        when(clientManager.getDataClient(AppProfileClients.INTERACTIVE)).thenReturn(interactiveClient);
+        when(clientManager.getDataClient(AppProfileClients.BATCH)).thenReturn(batchClient);
+        when(clientManager.getDataClientFor("read-by-row-key")).thenReturn(interactiveClient);
+        btClient = new BigtableClient(tableId, clientManager);
+    }
+
+
+    @Test
+    public void readByRowKey_givenRoutedOperation_useAppProfileClient() {
+        btClient.readByRowKey(tableId, "key");
+
+        verify(interactiveClient).readRow(eq(tableId), anyString());
+        verify(defaultClient, never()).readRow(anyString(), anyString());
+    }
+
+    @Test
+    public void write_givenUnroutedOperation_useDefaultClient() {
+        btClient.write("key", RowMutation.create(tableId, "key"));
+
+        verify(defaultClient).mutateRow(any(RowMutation.class));
+    }
+
+    @Test
+    public void using_givenClientName_overrideRouting() {
+        btClient.using(AppProfileClients.BATCH).readByRowKey(tableId, "key");
+
+        verify(batchClient).readRow(eq(tableId), anyString());
+        verify(interactiveClient, never()).readRow(anyString(), anyString());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> btClient.using("unknown"));
+    }
+
+
+}
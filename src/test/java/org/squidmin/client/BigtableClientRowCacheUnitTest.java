@@ -0,0 +1,103 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.CacheProperties;
+import org.squidmin.config.ReadProperties;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableClientRowCacheUnitTest {
+
+
+    private static final String tableId = "row_cache_table";
+
+    private BigtableDataClient dataClient;
+
+    private BigtableClient btClient;
+
+
+    @Before
+    public void before() {
+        dataClient = mock(BigtableDataClient.class);
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        when(dataClient.readRow(anyString(), anyString())).thenAnswer(invocation -> {
+            String rowKey = invocation.getArgument(1);
+            return rowKey.startsWith("missing") ? null : Row.create(ByteString.copyFromUtf8(rowKey), Collections.emptyList());
+        });
+
+        CacheProperties cacheProperties = new CacheProperties();
+        cacheProperties.setEnabled(true);
+        cacheProperties.setMaximumSize(2);
+        btClient = new BigtableClient(tableId, clientManager, new ReadProperties(), cacheProperties);
+    }
+
+
+    @Test
+    public void readByRowKey_givenRepeatedReads_readBigtableOnce() {
+        btClient.readByRowKey("a");
+        btClient.readByRowKey("a");
+        Assertions.assertNull(btClient.readByRowKey("missing_1"));
+        Assertions.assertNull(btClient.readByRowKey("missing_1"));
+
+        verify(dataClient, times(1)).readRow(tableId, "a");
+        verify(dataClient, times(1)).readRow(tableId, "missing_1");
+        Assertions.assertEquals(2, btClient.getRowCache().stats().hitCount());
+        Assertions.assertEquals(2, btClient.getRowCache().stats().missCount());
+    }
+
+    @Test
+    public void write_givenCachedRow_invalidateCachedRow() {
+        btClient.readByRowKey("a");
+        btClient.write("a", RowMutation.create(tableId, "a").setCell("cf", "q", "v"));
+        btClient.readByRowKey("a");
+
+        verify(dataClient).mutateRow(any(RowMutation.class));
+        verify(dataClient, times(2)).readRow(eq(tableId), eq("a"));
+    }
+
+    @Test
+    public void readByRowKeyAsync_givenWriteWhileReadInFlight_doNotCacheStaleRow() throws Exception {
+        SettableApiFuture<Row> rpc = SettableApiFuture.create();
+        when(dataClient.readRowAsync(tableId, "a")).thenReturn(rpc);
+        Row stale = Row.create(ByteString.copyFromUtf8("a"), Collections.emptyList());
+
+        ApiFuture<Row> read = btClient.readByRowKeyAsync(tableId, "a");
+        btClient.write("a", RowMutation.create(tableId, "a").setCell("cf", "q", "v"));
+        rpc.set(stale);
+
+        Assertions.assertSame(stale, read.get());
+        Assertions.assertNull(btClient.getRowCache().getIfPresent(tableId, "a"));
+    }
+
+    @Test
+    public void readByRowKey_givenMoreRowsThanMaximumSize_evictRows() {
+        btClient.readByRowKey("a");
+        btClient.readByRowKey("b");
+        btClient.readByRowKey("c");
+
+        Assertions.assertTrue(btClient.getRowCache().size() <= 2);
+        Assertions.assertTrue(0 < btClient.getRowCache().stats().evictionCount());
+    }
+
+
+}
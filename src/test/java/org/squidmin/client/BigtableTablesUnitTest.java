@@ -0,0 +1,138 @@
+package org.squidmin.client;
+
+
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.cloud.bigtable.data.v2.internal.RequestContext;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.mockito.ArgumentCaptor;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.TablesProperties;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKey;
+import org.squidmin.model.RowKeyFormat;
+import org.squidmin.util.CompiledSchema;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableTablesUnitTest {
+
+
+    private BigtableDataClient dataClient;
+
+    private BigtableClientManager clientManager;
+
+    private BigtableClient btClient;
+
+    private TablesProperties properties;
+
+    private BigtableTables tables;
+
+
+    @Before
+    public void before() throws InvalidSchemaException {
+        dataClient = mock(BigtableDataClient.class);
+        BigtableStructure btStructure = structure("default_cf", "val_1");
+        clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        when(clientManager.getBtStructure()).thenReturn(btStructure);
+        when(clientManager.getCompiledSchema()).thenReturn(CompiledSchema.compile(btStructure));
+        properties = new TablesProperties();
+        btClient = new BigtableClient("default_table", clientManager);
+        tables = new BigtableTables(btClient, properties);
+    }
+
+
+    @Test
+    public void get_givenRepeatedCalls_returnCachedHandle() throws InvalidSchemaException {
+        BigtableClient handle = tables.get("events");
+
+        Assertions.assertSame(handle, tables.get("events"));
+        Assertions.assertEquals("events", handle.getTableId());
+        Assertions.assertEquals(1, tables.size());
+    }
+
+    @Test
+    public void get_givenTableStructure_writeWithTableSchema() throws InvalidSchemaException {
+        TablesProperties.Table orders = new TablesProperties.Table();
+        orders.getColumnFamilies().addAll(structure("orders_cf", "amount").getColumnFamilies());
+        properties.getTables().put("orders", orders);
+
+        tables.get("orders").writeSingleRow(dto());
+        tables.get("events").writeSingleRow(dto());
+
+        ArgumentCaptor<RowMutation> mutations = ArgumentCaptor.forClass(RowMutation.class);
+        verify(dataClient, times(2)).mutateRow(mutations.capture());
+        RequestContext context = RequestContext.create("project", "instance", "");
+        Assertions.assertEquals("orders", tableName(mutations.getAllValues().get(0), context));
+        Assertions.assertEquals("orders_cf", familyName(mutations.getAllValues().get(0), context));
+        Assertions.assertEquals("events", tableName(mutations.getAllValues().get(1), context));
+        Assertions.assertEquals("default_cf", familyName(mutations.getAllValues().get(1), context));
+    }
+
+    @Test
+    public void close_givenTableHandle_keepParentClientOpen() throws Exception {
+        when(dataClient.readRow("default_table", "key")).thenReturn(null);
+
+        tables.get("events").close();
+
+        verify(clientManager, never()).closeBulkWriters();
+        verify(clientManager, never()).closeAppProfileClients();
+        verify(clientManager, never()).destroy();
+        verify(dataClient, never()).close();
+        btClient.readByRowKey("key");
+        btClient.writeSingleRow(dto());
+        verify(dataClient).readRow("default_table", "key");
+        verify(dataClient).mutateRow(any(RowMutation.class));
+    }
+
+    @Test
+    public void get_givenInvalidStructure_throwAndDoNotCache() {
+        TablesProperties.Table broken = new TablesProperties.Table();
+        broken.setRowKey(new RowKeyFormat());
+        broken.getRowKey().setSaltBuckets(1000);
+        properties.getTables().put("broken", broken);
+
+        Assertions.assertThrows(InvalidSchemaException.class, () -> tables.get("broken"));
+        Assertions.assertEquals(0, tables.size());
+    }
+
+    private static String tableName(RowMutation mutation, RequestContext context) {
+        String tableName = mutation.toProto(context).getTableName();
+        return tableName.substring(tableName.lastIndexOf('/') + 1);
+    }
+
+    private static String familyName(RowMutation mutation, RequestContext context) {
+        return mutation.toProto(context).getMutations(0).getSetCell().getFamilyName();
+    }
+
+    private static DtoExample dto() {
+        return DtoExample.builder().rowKey(new RowKey("a", "b", "c")).fieldA("A").build();
+    }
+
+    private static BigtableStructure structure(String family, String... qualifiers) {
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName(family);
+        mapping.setQualifierNames(new LinkedHashSet<>(Arrays.asList(qualifiers)));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        return btStructure;
+    }
+
+
+}
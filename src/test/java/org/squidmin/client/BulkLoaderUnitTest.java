@@ -0,0 +1,183 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.bigtable.data.v2.models.RowMutationEntry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.junit.rules.TemporaryFolder;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.BulkLoadProperties;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.BulkLoadResult;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.util.CompiledSchema;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class BulkLoaderUnitTest {
+
+
+    private static final String tableId = "bulk_load_table";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Set<String> writtenKeys = ConcurrentHashMap.newKeySet();
+
+    private final Set<String> failedKeys = ConcurrentHashMap.newKeySet();
+
+    private BulkLoadProperties properties;
+
+    private BigtableClient btClient;
+
+
+    @Before
+    public void before() throws Exception {
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName("cf");
+        mapping.setQualifierNames(new LinkedHashSet<>(Arrays.asList("val_1", "val_2", "val_3")));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        BigtableBulkWriter bulkWriter = mock(BigtableBulkWriter.class);
+        when(bulkWriter.add(any(RowMutationEntry.class))).thenAnswer(invocation -> {
+            String rowKey = ((RowMutationEntry) invocation.getArgument(0)).toProto().getRowKey().toStringUtf8();
+            if (rowKey.startsWith("fail") && failedKeys.add(rowKey)) {
+                return ApiFutures.immediateFailedFuture(new IllegalStateException("rejected by server"));
+            }
+            writtenKeys.add(rowKey);
+            return ApiFutures.immediateFuture(null);
+        });
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getBtStructure()).thenReturn(btStructure);
+        when(clientManager.getCompiledSchema()).thenReturn(CompiledSchema.compile(btStructure));
+        when(clientManager.getBulkWriter(tableId)).thenReturn(bulkWriter);
+        btClient = new BigtableClient(tableId, clientManager);
+        properties = new BulkLoadProperties();
+        properties.setWorkers(3);
+        properties.setChunkBytes(32);
+        properties.setQueueCapacity(2);
+    }
+
+
+    @Test
+    public void load_givenCsv_writeEveryValidRecordAndCountRejects() throws Exception {
+        properties.setSkipHeader(true);
+        StringBuilder csv = new StringBuilder("segment_a,segment_b,segment_c,field_a,field_b,field_c\n");
+        for (int i = 0; i < 50; i++) {
+            csv.append("key").append(i).append(",b,c,\"x, ").append(i).append("\",,z\r\n");
+        }
+        csv.append("\n").append("too,few\n").append("\"open,b,c,x\n").append("last,b,c");
+        Path input = write("rows.csv", csv.toString());
+
+        BulkLoadResult result = new BulkLoader(properties).load(btClient, input);
+
+        Assertions.assertEquals(51, result.getRecords());
+        Assertions.assertEquals(2, result.getRejected());
+        Assertions.assertEquals(51, writtenKeys.size());
+        Assertions.assertTrue(writtenKeys.contains("key49#b#c"));
+        Assertions.assertTrue(writtenKeys.contains("last#b#c"));
+        Assertions.assertEquals(Files.size(input), result.getCheckpoint());
+        Assertions.assertEquals(Files.size(input), BulkLoader.readCheckpoint(BulkLoader.checkpointPath(input)));
+    }
+
+    @Test
+    public void load_givenCheckpoint_resumeFromOffset() throws Exception {
+        String done = "{\"rowKey\":{\"segmentA\":\"done\",\"segmentB\":\"b\",\"segmentC\":\"c\"},\"fieldA\":\"x\"}\n";
+        String pending = "{\"rowKey\":{\"segmentA\":\"pending\",\"segmentB\":\"b\",\"segmentC\":\"c\"},\"fieldB\":\"y\"}\n";
+        Path input = write("rows.ndjson", done + pending + "{not json}\n");
+        Files.write(BulkLoader.checkpointPath(input), Integer.toString(done.length()).getBytes(StandardCharsets.UTF_8));
+
+        BulkLoadResult result = new BulkLoader(properties).load(btClient, input);
+
+        Assertions.assertEquals(done.length(), result.getStartOffset());
+        Assertions.assertEquals(1, result.getRecords());
+        Assertions.assertEquals(1, result.getRejected());
+        Assertions.assertEquals(Set.of("pending#b#c"), writtenKeys);
+    }
+
+    @Test
+    public void load_givenFailedWrite_holdCheckpointAndWriteRowOnResume() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            csv.append(10 == i ? "fail" : "key" + i).append(",b,c,x\n");
+        }
+        Path input = write("rows.csv", csv.toString());
+        long failedOffset = csv.indexOf("fail");
+
+        IOException e = Assertions.assertThrows(IOException.class, () -> new BulkLoader(properties).load(btClient, input));
+
+        Assertions.assertTrue(e.getMessage().contains("1 failed writes"), e.getMessage());
+        Assertions.assertFalse(writtenKeys.contains("fail#b#c"));
+        long checkpoint = BulkLoader.readCheckpoint(BulkLoader.checkpointPath(input));
+        Assertions.assertTrue(checkpoint <= failedOffset, "checkpoint " + checkpoint + " passed the failed write");
+
+        BulkLoadResult result = new BulkLoader(properties).load(btClient, input);
+
+        Assertions.assertTrue(writtenKeys.contains("fail#b#c"));
+        Assertions.assertEquals(checkpoint, result.getStartOffset());
+        Assertions.assertEquals(0, result.getRejected());
+        Assertions.assertEquals(Files.size(input), result.getCheckpoint());
+    }
+
+    @Test
+    public void load_givenLinesUpToMaxChunkBytes_splitChunksWithinLimit() throws Exception {
+        properties.setChunkBytes(1000);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            // 16 bytes with the line break, so a 40-byte chunk ends after two lines and a 16-byte one after one.
+            csv.append(String.format("key%02d,b,c,xyzw\n", i));
+        }
+        Path input = write("rows.csv", csv.toString());
+
+        BulkLoadResult result = new BulkLoader(properties, 40).load(btClient, input);
+        Assertions.assertEquals(20, result.getRecords());
+        Files.delete(BulkLoader.checkpointPath(input));
+        Assertions.assertEquals(20, new BulkLoader(properties, 16).load(btClient, input).getRecords());
+        Assertions.assertEquals(20, writtenKeys.size());
+    }
+
+    @Test
+    public void load_givenLineLongerThanMaxChunkBytes_failAtItsOffset() throws Exception {
+        properties.setChunkBytes(1000);
+        Path input = write("rows.csv", "key0,b,c,xyzw\nkey1,b,c,xyzwv\nkey2,b,c,x\n");
+
+        IOException e = Assertions.assertThrows(
+            IOException.class, () -> new BulkLoader(properties, 14).load(btClient, input)
+        );
+
+        Assertions.assertEquals("Line at offset 14 of " + input + " is longer than 14 bytes", e.getCause().getMessage());
+        Assertions.assertFalse(writtenKeys.contains("key1#b#c"));
+    }
+
+    @Test
+    public void parseCsv_givenQuotedFields_unescapeQuotes() {
+        Assertions.assertEquals(
+            Arrays.asList("a", "b,c", "say \"hi\"", ""),
+            BulkLoader.parseCsv("a,\"b,c\",\"say \"\"hi\"\"\",")
+        );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> BulkLoader.parseCsv("a,\"b"));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = folder.getRoot().toPath().resolve(name);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+
+}
@@ -0,0 +1,247 @@
+package org.squidmin.client;
+
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.KeyOffset;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Range;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class ParallelScanUnitTest {
+
+
+    private static final String tableId = "parallel_scan_table";
+
+    private static final Comparator<ByteString> byteOrder = ByteString.unsignedLexicographicalComparator();
+
+    private final List<Row> tableRows = new ArrayList<>();
+
+    private BigtableDataClient dataClient;
+
+    private ExecutorService executor;
+
+
+    @Before
+    public void before() {
+        for (int i = 0; i < 100; i++) {
+            tableRows.add(Row.create(ByteString.copyFromUtf8(String.format("row%03d", i)), Collections.emptyList()));
+        }
+        dataClient = mock(BigtableDataClient.class);
+        when(dataClient.sampleRowKeys(anyString())).thenReturn(Arrays.asList(
+            KeyOffset.create(ByteString.copyFromUtf8("row025"), 100),
+            KeyOffset.create(ByteString.copyFromUtf8("row050"), 200),
+            KeyOffset.create(ByteString.copyFromUtf8("row075"), 300),
+            KeyOffset.create(ByteString.EMPTY, 400)
+        ));
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void after() { executor.shutdownNow(); }
+
+
+    @Test
+    public void split_givenSampledKeys_returnContiguousRanges() {
+        List<ByteStringRange> ranges = ParallelScan.split(dataClient.sampleRowKeys(tableId), 4);
+
+        Assertions.assertEquals(4, ranges.size());
+        Assertions.assertEquals(Range.BoundType.UNBOUNDED, ranges.get(0).getStartBound());
+        Assertions.assertEquals(ranges.get(0).getEnd(), ranges.get(1).getStart());
+        Assertions.assertEquals(Range.BoundType.UNBOUNDED, ranges.get(3).getEndBound());
+    }
+
+    @Test
+    public void readTableParallel_givenOrderedDelivery_returnRowsInKeyOrder() throws Exception {
+        when(dataClient.readRows(any(Query.class))).thenAnswer(invocation -> serverStream(invocation.getArgument(0), null));
+
+        List<Row> delivered = Collections.synchronizedList(new ArrayList<>());
+        ParallelScan scan = ParallelScan.start(tableId, dataClient, null, 4, true, delivered::add, executor);
+        scan.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(scan.isSuccessful());
+        Assertions.assertEquals(tableRows, delivered);
+        Assertions.assertEquals(100, scan.getShards().stream().mapToLong(ParallelScan.Shard::getRowsRead).sum());
+    }
+
+    @Test
+    public void retryShard_givenFailedShard_resumeAfterLastDeliveredRow() throws Exception {
+        AtomicBoolean failedOnce = new AtomicBoolean();
+        when(dataClient.readRows(any(Query.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            boolean failMidway = Range.BoundType.CLOSED == query.getBound().getStartBound()
+                && query.getBound().getStart().toStringUtf8().equals("row050")
+                && failedOnce.compareAndSet(false, true);
+            return serverStream(query, failMidway ? "row060" : null);
+        });
+
+        List<Row> delivered = Collections.synchronizedList(new ArrayList<>());
+        ParallelScan scan = ParallelScan.start(tableId, dataClient, null, 4, false, delivered::add, executor);
+        scan.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Assertions.assertEquals(1, scan.getFailedShards().size());
+        ParallelScan.Shard failed = scan.getFailedShards().get(0);
+        Assertions.assertEquals("row059", failed.getLastRowKey().toStringUtf8());
+
+        scan.retryShard(failed.getIndex()).get(10, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(scan.isSuccessful());
+        List<Row> sorted = delivered.stream()
+            .sorted(Comparator.comparing(Row::getKey, byteOrder))
+            .collect(Collectors.toList());
+        Assertions.assertEquals(tableRows, sorted);
+    }
+
+    @Test
+    public void readTableParallel_givenOrderedDelivery_bufferAtMostMaxBufferedRows() throws Exception {
+        CountDownLatch firstShard = new CountDownLatch(1);
+        when(dataClient.readRows(any(Query.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            if (Range.BoundType.UNBOUNDED == query.getBound().getStartBound()) {
+                firstShard.await();
+            }
+            return serverStream(query, null);
+        });
+
+        List<Row> delivered = Collections.synchronizedList(new ArrayList<>());
+        ParallelScan scan = ParallelScan.start(tableId, dataClient, null, 4, true, delivered::add, executor, 5);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (scan.getBufferedRows() < 5 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+
+        Assertions.assertEquals(5, scan.getBufferedRows());
+        Assertions.assertTrue(delivered.isEmpty());
+        firstShard.countDown();
+        scan.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(scan.isSuccessful());
+        Assertions.assertEquals(tableRows, delivered);
+        Assertions.assertEquals(0, scan.getBufferedRows());
+    }
+
+    @Test
+    public void readTableParallel_givenConsumerFailure_stopOrderedScanWithoutRedelivery() throws Exception {
+        when(dataClient.readRows(any(Query.class))).thenAnswer(invocation -> serverStream(invocation.getArgument(0), null));
+
+        List<Row> delivered = Collections.synchronizedList(new ArrayList<>());
+        ParallelScan scan = ParallelScan.start(tableId, dataClient, null, 4, true, row -> {
+            if (row.getKey().toStringUtf8().equals("row030")) {
+                throw new IllegalStateException("Simulated consumer failure");
+            }
+            delivered.add(row);
+        }, executor, 5);
+        scan.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Assertions.assertFalse(scan.isSuccessful());
+        Assertions.assertEquals("Simulated consumer failure", scan.getDeliveryError().getMessage());
+        Assertions.assertEquals(tableRows.subList(0, 30), delivered);
+    }
+
+    @Test
+    public void readTableParallel_givenOrderedDelivery_callConsumerOutsideScanLock() throws Exception {
+        when(dataClient.readRows(any(Query.class))).thenAnswer(invocation -> serverStream(invocation.getArgument(0), null));
+        CountDownLatch consuming = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Row> delivered = Collections.synchronizedList(new ArrayList<>());
+        ParallelScan scan = ParallelScan.start(tableId, dataClient, null, 4, true, row -> {
+            if (delivered.isEmpty()) {
+                consuming.countDown();
+                awaitQuietly(release);
+            }
+            delivered.add(row);
+        }, executor, 5);
+        Assertions.assertTrue(consuming.await(10, TimeUnit.SECONDS));
+
+        // Times out if the consumer runs under the monitor that getBufferedRows synchronizes on.
+        CompletableFuture.supplyAsync(scan::getBufferedRows).get(1, TimeUnit.SECONDS);
+        release.countDown();
+        scan.getCompletion().get(10, TimeUnit.SECONDS);
+
+        Assertions.assertTrue(scan.isSuccessful());
+        Assertions.assertEquals(tableRows, delivered);
+    }
+
+    private ServerStream<Row> serverStream(Query query, String failAtKey) {
+        ByteStringRange bound = query.getBound();
+        List<Row> matching = tableRows.stream()
+            .filter(row -> contains(bound, row.getKey()))
+            .collect(Collectors.toList());
+        Iterator<Row> rows = matching.iterator();
+        ServerStream<Row> serverStream = mock(ServerStream.class);
+        when(serverStream.iterator()).thenReturn(new Iterator<Row>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public Row next() {
+                Row next = rows.next();
+                if (null != failAtKey && failAtKey.equals(next.getKey().toStringUtf8())) {
+                    throw new IllegalStateException("Simulated stream failure");
+                }
+                return next;
+            }
+        });
+        return serverStream;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean contains(ByteStringRange range, ByteString key) {
+        switch (range.getStartBound()) {
+            case CLOSED:
+                if (byteOrder.compare(key, range.getStart()) < 0) return false;
+                break;
+            case OPEN:
+                if (byteOrder.compare(key, range.getStart()) <= 0) return false;
+                break;
+            default:
+        }
+        switch (range.getEndBound()) {
+            case CLOSED:
+                return byteOrder.compare(key, range.getEnd()) <= 0;
+            case OPEN:
+                return byteOrder.compare(key, range.getEnd()) < 0;
+            default:
+                return true;
+        }
+    }
+
+
+}
@@ -0,0 +1,147 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.SettableApiFuture;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+public class SingleFlightUnitTest {
+
+
+    @Test
+    public void executeAsync_givenIdenticalKeysInFlight_shareOneCall() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        SettableApiFuture<String> rpc = SettableApiFuture.create();
+        AtomicInteger calls = new AtomicInteger();
+
+        ApiFuture<String> first = singleFlight.executeAsync("key", () -> { calls.incrementAndGet(); return rpc; });
+        ApiFuture<String> second = singleFlight.executeAsync("key", () -> { calls.incrementAndGet(); return rpc; });
+        ApiFuture<String> other = singleFlight.executeAsync("other", () -> { calls.incrementAndGet(); return rpc; });
+        rpc.set("value");
+
+        Assertions.assertEquals("value", first.get());
+        Assertions.assertEquals("value", second.get());
+        Assertions.assertEquals("value", other.get());
+        Assertions.assertEquals(2, calls.get());
+        Assertions.assertEquals(1, singleFlight.getSavedCalls());
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void executeAsync_givenOneWaiterCancels_doNotCancelOtherWaiters() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        SettableApiFuture<String> rpc = SettableApiFuture.create();
+
+        ApiFuture<String> first = singleFlight.executeAsync("key", () -> rpc);
+        ApiFuture<String> second = singleFlight.executeAsync("key", () -> rpc);
+        first.cancel(true);
+        rpc.set("value");
+
+        Assertions.assertFalse(rpc.isCancelled());
+        Assertions.assertEquals("value", second.get());
+    }
+
+    @Test
+    public void executeAsync_givenSoleWaiterCancels_cancelCall() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        SettableApiFuture<String> rpc = SettableApiFuture.create();
+        SettableApiFuture<String> retry = SettableApiFuture.create();
+
+        singleFlight.executeAsync("key", () -> rpc).cancel(true);
+
+        Assertions.assertTrue(rpc.isCancelled());
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+
+        ApiFuture<String> next = singleFlight.executeAsync("key", () -> retry);
+        retry.set("value");
+        Assertions.assertEquals("value", next.get());
+        Assertions.assertEquals(2, singleFlight.getExecutions());
+    }
+
+    @Test
+    public void executeAsync_givenAllWaitersCancel_cancelCallAfterLastOne() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        SettableApiFuture<String> rpc = SettableApiFuture.create();
+
+        ApiFuture<String> first = singleFlight.executeAsync("key", () -> rpc);
+        ApiFuture<String> second = singleFlight.executeAsync("key", () -> rpc);
+        first.cancel(true);
+
+        Assertions.assertFalse(rpc.isCancelled());
+        Assertions.assertEquals(1, singleFlight.getInFlightCount());
+
+        second.cancel(true);
+
+        Assertions.assertTrue(rpc.isCancelled());
+        Assertions.assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    public void execute_givenConcurrentCallers_runCallOnce() throws Exception {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+        CountDownLatch callStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                callStarted.countDown();
+                awaitQuietly(release);
+                return "value";
+            })));
+            callStarted.await(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                    calls.incrementAndGet();
+                    return "value";
+                })));
+            }
+            while (singleFlight.getRequests() < 8) {
+                Thread.sleep(1);
+            }
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                Assertions.assertEquals("value", result.get(5, TimeUnit.SECONDS));
+            }
+            Assertions.assertEquals(1, calls.get());
+            Assertions.assertEquals(7, singleFlight.getSavedCalls());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void execute_givenFailingCall_propagateFailureAndAllowRetry() {
+        SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("failed");
+        }));
+        Assertions.assertEquals("value", singleFlight.execute("key", () -> "value"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+}
@@ -0,0 +1,117 @@
+package org.squidmin.client;
+
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.CacheProperties;
+import org.squidmin.config.EchoProperties;
+import org.squidmin.config.MetricsProperties;
+import org.squidmin.config.ReadProperties;
+import org.squidmin.config.SlowLogProperties;
+import org.squidmin.util.FilterFingerprint;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class SlowOperationLogUnitTest {
+
+
+    @Test
+    public void record_givenCallsWithSameShape_aggregateByFingerprint() {
+        SlowOperationLog slowLog = new SlowOperationLog(properties(Duration.ofMillis(10), 1000));
+
+        slowLog.record("read-filter", FILTERS.key().regex("a.*"), Duration.ofMillis(1).toNanos(), 5, null);
+        slowLog.record("read-filter", FILTERS.key().regex("b.*"), Duration.ofMillis(20).toNanos(), 5, null);
+        slowLog.record("read-filter", FILTERS.value().regex("b.*"), Duration.ofMillis(2).toNanos(), 0, new IllegalStateException());
+
+        List<SlowOperationLog.Stats> stats = slowLog.getStats();
+        Assertions.assertEquals(2, stats.size());
+        SlowOperationLog.Stats keyRegex = stats.get(0);
+        Assertions.assertEquals("row_key_regex", keyRegex.getShape());
+        Assertions.assertEquals(2, keyRegex.getCount());
+        Assertions.assertEquals(1, keyRegex.getSlowCount());
+        Assertions.assertEquals(Duration.ofMillis(20).toNanos(), keyRegex.getMaxNanos());
+        Assertions.assertEquals(1, stats.get(1).getErrorCount());
+    }
+
+    @Test
+    public void record_givenOperationsWithEqualHashCodes_keepSeparateStats() {
+        SlowOperationLog slowLog = new SlowOperationLog(properties(Duration.ofSeconds(1), 1000));
+
+        // "Aa" and "BB" have the same String hashCode.
+        slowLog.record("Aa", FILTERS.key().regex("a"), 1, 1, null);
+        slowLog.record("BB", FILTERS.key().regex("a"), 1, 1, null);
+
+        List<SlowOperationLog.Stats> stats = slowLog.getStats();
+        Assertions.assertEquals(2, stats.size());
+        Assertions.assertEquals(1, stats.get(0).getCount());
+        Assertions.assertEquals(1, stats.get(1).getCount());
+    }
+
+    @Test
+    public void record_givenMaxFingerprintsReached_countUntracked() {
+        SlowOperationLog slowLog = new SlowOperationLog(properties(Duration.ofSeconds(1), 1));
+
+        slowLog.record("read-filter", FILTERS.key().regex("a"), 1, 1, null);
+        slowLog.record("read-filter", FILTERS.value().regex("a"), 1, 1, null);
+        slowLog.record("read-filter", FILTERS.key().regex("b"), 1, 1, null);
+
+        Assertions.assertEquals(1, slowLog.getStats().size());
+        Assertions.assertEquals(2, slowLog.getStats().get(0).getCount());
+        Assertions.assertEquals(1, slowLog.getUntrackedCount());
+    }
+
+    @Test
+    public void readFilter_givenMetricsDisabled_stillRecordSlowLog() {
+        SlowOperationLog slowLog = new SlowOperationLog(properties(Duration.ZERO, 1000));
+        MetricsProperties metricsProperties = new MetricsProperties();
+        metricsProperties.setEnabled(false);
+        BigtableDataClient dataClient = mock(BigtableDataClient.class);
+        BigtableClientManager clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        ServerStream<Row> serverStream = serverStream(Collections.singletonList(
+            Row.create(ByteString.copyFromUtf8("a#b#c"), Collections.emptyList())
+        ));
+        when(dataClient.readRows(any(Query.class))).thenReturn(serverStream);
+        BigtableClient btClient = new BigtableClient(
+            "slow_table", clientManager, new ReadProperties(), new CacheProperties(), new EchoProperties(),
+            new ClientMetrics(null, metricsProperties, slowLog)
+        );
+
+        btClient.readFilter("slow_table", FILTERS.key().regex("a#.*"));
+
+        SlowOperationLog.Stats stats = slowLog.getStats().get(0);
+        Assertions.assertEquals("read-filter", stats.getOperation());
+        Assertions.assertEquals(FilterFingerprint.of(FILTERS.key().regex("x")), stats.getFingerprint());
+        Assertions.assertEquals(1, stats.getSlowCount());
+    }
+
+    private static SlowLogProperties properties(Duration threshold, int maxFingerprints) {
+        SlowLogProperties properties = new SlowLogProperties();
+        properties.setThreshold(threshold);
+        properties.setMaxFingerprints(maxFingerprints);
+        return properties;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ServerStream<Row> serverStream(List<Row> rows) {
+        ServerStream<Row> serverStream = mock(ServerStream.class);
+        when(serverStream.iterator()).thenReturn(rows.iterator());
+        return serverStream;
+    }
+
+
+}
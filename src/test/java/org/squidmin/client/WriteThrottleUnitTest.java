@@ -0,0 +1,357 @@
+package org.squidmin.client;
+
+
+import com.google.api.core.ApiFuture;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.ApiException;
+import com.google.cloud.bigtable.data.v2.models.MutateRowsException;
+import com.google.common.base.Ticker;
+import io.grpc.Status;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.config.WriteThrottleProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Runs {@link WriteThrottle} against a {@link SimulatedBackend} on simulated time, in 1 ms steps, so every run is
+ * deterministic and minutes of load take well under a second.
+ */
+public class WriteThrottleUnitTest {
+
+
+    private static final long millis = TimeUnit.MILLISECONDS.toNanos(1);
+
+
+    @Test
+    public void simulation_givenHealthyBackend_growLimitsAdditively() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        WriteThrottle throttle = new WriteThrottle(properties(), ticker, nanos -> { }, ticker::schedule);
+        SimulatedBackend backend = new SimulatedBackend(ticker, 10_000, 10, Integer.MAX_VALUE);
+
+        SimulatedBackend.Window first = backend.run(throttle, Duration.ofSeconds(1));
+        backend.run(throttle, Duration.ofSeconds(18));
+        SimulatedBackend.Window last = backend.run(throttle, Duration.ofSeconds(1));
+
+        // One increase per 500 ms interval in which the limits held writes back.
+        Assertions.assertEquals(20 + 40 * 10, throttle.getInFlightLimit());
+        Assertions.assertEquals(1000 + 40 * 1000, throttle.getRateLimit());
+        for (String cause : WriteThrottle.DECREASE_CAUSES) {
+            Assertions.assertEquals(0, throttle.getDecreaseCount(cause));
+        }
+        Assertions.assertTrue(last.throughput() > 10 * first.throughput());
+        Assertions.assertEquals(10, last.maxLatencyMillis());
+    }
+
+    @Test
+    public void simulation_givenQueueingBackend_convergeNearTargetLatency() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        WriteThrottle throttle = new WriteThrottle(properties(), ticker, nanos -> { }, ticker::schedule);
+        // Serves 200 writes at a time in 10 ms, so it tops out at 20,000 writes/s and reaches the 50 ms target with
+        // 1,000 writes in flight.
+        SimulatedBackend backend = new SimulatedBackend(ticker, 200, 10, Integer.MAX_VALUE);
+
+        backend.run(throttle, Duration.ofSeconds(120));
+        SimulatedBackend.Window tail = backend.run(throttle, Duration.ofSeconds(60));
+
+        Assertions.assertTrue(throttle.getDecreaseCount(WriteThrottle.LATENCY) >= 2);
+        Assertions.assertEquals(0, throttle.getDecreaseCount("RESOURCE_EXHAUSTED"));
+        Assertions.assertEquals(0, tail.errors);
+        Assertions.assertTrue(tail.minInFlightLimit >= 400, "in-flight limit fell to " + tail.minInFlightLimit);
+        Assertions.assertTrue(tail.maxInFlightLimit <= 1100, "in-flight limit rose to " + tail.maxInFlightLimit);
+        Assertions.assertTrue(tail.meanLatencyMillis() >= 20 && tail.meanLatencyMillis() <= 60,
+            "mean latency " + tail.meanLatencyMillis());
+        Assertions.assertTrue(tail.maxLatencyMillis() <= 60, "max latency " + tail.maxLatencyMillis());
+        Assertions.assertTrue(tail.throughput() >= 0.9 * 20_000, "throughput " + tail.throughput());
+    }
+
+    @Test
+    public void simulation_givenResourceExhausted_cutLimitsMultiplicatively() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        WriteThrottle throttle = new WriteThrottle(properties(), ticker, nanos -> { }, ticker::schedule);
+        // Never slows down, but rejects writes beyond 300 in flight.
+        SimulatedBackend backend = new SimulatedBackend(ticker, 10_000, 10, 300);
+
+        backend.run(throttle, Duration.ofSeconds(30));
+        SimulatedBackend.Window tail = backend.run(throttle, Duration.ofSeconds(30));
+
+        Assertions.assertTrue(throttle.getDecreaseCount("RESOURCE_EXHAUSTED") >= 2);
+        Assertions.assertEquals(0, throttle.getDecreaseCount(WriteThrottle.LATENCY));
+        Assertions.assertTrue(tail.minInFlightLimit >= 150, "in-flight limit fell to " + tail.minInFlightLimit);
+        Assertions.assertTrue(tail.maxInFlightLimit <= 310, "in-flight limit rose to " + tail.maxInFlightLimit);
+        Assertions.assertTrue(tail.errors < 0.01 * tail.writes, tail.errors + " of " + tail.writes + " failed");
+    }
+
+    @Test
+    public void release_givenOverloadErrors_cutOncePerInterval() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        WriteThrottle throttle = new WriteThrottle(properties(), ticker, ticker::advance, ticker::schedule);
+
+        throttle.release(throttle.acquire(1), error(Status.Code.INVALID_ARGUMENT));
+        Assertions.assertEquals(20, throttle.getInFlightLimit());
+
+        throttle.release(throttle.acquire(1), error(Status.Code.DEADLINE_EXCEEDED));
+        throttle.release(throttle.acquire(1), error(Status.Code.DEADLINE_EXCEEDED));
+        Assertions.assertEquals(10, throttle.getInFlightLimit());
+        Assertions.assertEquals(500, throttle.getRateLimit());
+        Assertions.assertEquals(1, throttle.getDecreaseCount("DEADLINE_EXCEEDED"));
+
+        ticker.advance(TimeUnit.MILLISECONDS.toNanos(500));
+        MutateRowsException partial = new MutateRowsException(null, Collections.singletonList(
+            MutateRowsException.FailedMutation.create(3, error(Status.Code.RESOURCE_EXHAUSTED))
+        ), true);
+        throttle.release(throttle.acquire(1), partial);
+        Assertions.assertEquals(5, throttle.getInFlightLimit());
+        Assertions.assertEquals(1, throttle.getDecreaseCount("RESOURCE_EXHAUSTED"));
+        Assertions.assertEquals(0, throttle.getInFlight());
+    }
+
+    @Test
+    public void acquire_givenRateLimit_waitForNextSlot() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        List<Long> sleeps = new ArrayList<>();
+        WriteThrottle throttle = new WriteThrottle(properties(), ticker, sleeps::add, ticker::schedule);
+
+        throttle.acquire(1);
+        throttle.acquire(2);
+        throttle.acquire(1);
+
+        // 1,000 writes/s: each write books 1 ms of the schedule.
+        Assertions.assertEquals(List.of(millis, 3 * millis), sleeps);
+        Assertions.assertEquals(4, throttle.getInFlight());
+    }
+
+    @Test
+    public void acquireAsync_givenInFlightLimit_grantInOrderOnRelease() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        WriteThrottle throttle = new WriteThrottle(properties(), ticker, ticker::advance, ticker::schedule);
+
+        WriteThrottle.Permit held = throttle.acquireAsync(20).get();
+        ApiFuture<WriteThrottle.Permit> first = throttle.acquireAsync(5);
+        ApiFuture<WriteThrottle.Permit> second = throttle.acquireAsync(1);
+        Assertions.assertFalse(first.isDone());
+        Assertions.assertFalse(second.isDone());
+        // A later caller does not overtake the queued ones.
+        Assertions.assertNull(throttle.tryAcquire(1, 1, TimeUnit.SECONDS));
+
+        ticker.advance(TimeUnit.SECONDS.toNanos(1));
+        throttle.release(held, null);
+
+        Assertions.assertNotNull(first.get(1, TimeUnit.SECONDS));
+        Assertions.assertFalse(second.isDone());
+        // The 1 s write cut the rate to 500 writes/s, so the second waiter starts after the 10 ms the first booked.
+        ticker.advance(10 * millis - 1);
+        Assertions.assertFalse(second.isDone());
+        ticker.advance(1);
+        Assertions.assertNotNull(second.get(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(6, throttle.getInFlight());
+    }
+
+    @Test
+    public void acquireAsync_givenCancelledWaiter_giveUpItsPermits() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        WriteThrottle throttle = new WriteThrottle(properties(), ticker, ticker::advance, ticker::schedule);
+
+        WriteThrottle.Permit held = throttle.acquire(15);
+        ApiFuture<WriteThrottle.Permit> cancelled = throttle.acquireAsync(10);
+        ApiFuture<WriteThrottle.Permit> next = throttle.acquireAsync(5);
+        cancelled.cancel(true);
+        ticker.advance(15 * millis);
+
+        Assertions.assertNotNull(next.get(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(20, throttle.getInFlight());
+        ticker.advance(TimeUnit.SECONDS.toNanos(1));
+        throttle.release(held, null);
+        throttle.release(next.get(), null);
+        Assertions.assertEquals(0, throttle.getInFlight());
+    }
+
+    @Test
+    public void acquireAsync_givenRateLimit_completeOnceSimulatedDelayPasses() throws Exception {
+        FakeTicker ticker = new FakeTicker();
+        WriteThrottle throttle = new WriteThrottle(properties(), ticker, ticker::advance, ticker::schedule);
+
+        ApiFuture<WriteThrottle.Permit> first = throttle.acquireAsync(1);
+        ApiFuture<WriteThrottle.Permit> second = throttle.acquireAsync(2);
+        ApiFuture<WriteThrottle.Permit> third = throttle.acquireAsync(1);
+
+        // 1,000 writes/s: the second write starts after 1 ms and the third after 3 ms.
+        Assertions.assertTrue(first.isDone());
+        Assertions.assertFalse(second.isDone());
+        ticker.advance(millis - 1);
+        Assertions.assertFalse(second.isDone());
+        ticker.advance(1);
+        Assertions.assertTrue(second.isDone());
+        Assertions.assertFalse(third.isDone());
+        ticker.advance(2 * millis);
+        Assertions.assertTrue(third.isDone());
+        Assertions.assertEquals(4, throttle.getInFlight());
+    }
+
+    private static WriteThrottleProperties properties() {
+        WriteThrottleProperties properties = new WriteThrottleProperties();
+        properties.setEnabled(true);
+        properties.setTargetLatency(Duration.ofMillis(50));
+        properties.setAdjustInterval(Duration.ofMillis(500));
+        properties.setInitialInFlight(20);
+        properties.setInFlightIncrease(10);
+        properties.setInitialRate(1000);
+        properties.setRateIncrease(1000);
+        return properties;
+    }
+
+    private static ApiException error(Status.Code code) {
+        return new ApiException(null, GrpcStatusCode.of(code), false);
+    }
+
+
+    /**
+     * Simulated time. Tasks scheduled on it run, in order, when {@link #advance} reaches their time.
+     */
+    private static class FakeTicker extends Ticker {
+
+        private long nanos = 0;
+        private final TreeMap<Long, List<Runnable>> scheduled = new TreeMap<>();
+
+        @Override
+        public long read() {
+            return nanos;
+        }
+
+        void advance(long delta) {
+            nanos += delta;
+            while (!scheduled.isEmpty() && scheduled.firstKey() <= nanos) {
+                scheduled.pollFirstEntry().getValue().forEach(Runnable::run);
+            }
+        }
+
+        void schedule(Runnable task, long delay) {
+            scheduled.computeIfAbsent(nanos + delay, at -> new ArrayList<>()).add(task);
+        }
+
+    }
+
+
+    /**
+     * A backend serving {@code capacity} writes at a time in {@code baseLatencyMillis}. Beyond that writes queue, so
+     * latency grows in proportion to the writes in flight, and beyond {@code rejectAbove} writes in flight it fails
+     * them with {@code RESOURCE_EXHAUSTED} after 1 ms. Clients offer more writes than the throttle admits, and in each
+     * step take the rate slots that start within the step.
+     */
+    private static class SimulatedBackend {
+
+        private static final int offeredPerMilli = 100;
+
+        private final FakeTicker ticker;
+        private final int capacity;
+        private final long baseLatencyMillis;
+        private final int rejectAbove;
+        private final PriorityQueue<Write> pending = new PriorityQueue<>(
+            (a, b) -> Long.compare(a.completesAt, b.completesAt)
+        );
+
+        SimulatedBackend(FakeTicker ticker, int capacity, long baseLatencyMillis, int rejectAbove) {
+            this.ticker = ticker;
+            this.capacity = capacity;
+            this.baseLatencyMillis = baseLatencyMillis;
+            this.rejectAbove = rejectAbove;
+        }
+
+        Window run(WriteThrottle throttle, Duration duration) throws InterruptedException {
+            Window window = new Window(duration);
+            for (long step = 0; step < duration.toMillis(); step++) {
+                ticker.advance(millis);
+                long now = ticker.read();
+                while (!pending.isEmpty() && pending.peek().completesAt <= now) {
+                    Write write = pending.poll();
+                    throttle.release(write.permit, write.error);
+                    if (null == write.error) {
+                        window.writes++;
+                        window.latencyMillis += (now - write.startedAt) / millis;
+                        window.maxLatencyMillis = Math.max(window.maxLatencyMillis, (now - write.startedAt) / millis);
+                    } else {
+                        window.errors++;
+                    }
+                }
+                for (int i = 0; i < offeredPerMilli; i++) {
+                    WriteThrottle.Permit permit = throttle.tryAcquire(1, 1, TimeUnit.MILLISECONDS);
+                    if (null == permit) {
+                        break;
+                    }
+                    pending.add(submit(permit, now));
+                }
+                window.minInFlightLimit = Math.min(window.minInFlightLimit, throttle.getInFlightLimit());
+                window.maxInFlightLimit = Math.max(window.maxInFlightLimit, throttle.getInFlightLimit());
+            }
+            return window;
+        }
+
+        private Write submit(WriteThrottle.Permit permit, long now) {
+            int inFlight = pending.size() + 1;
+            if (inFlight > rejectAbove) {
+                return new Write(permit, now, now + millis, error(Status.Code.RESOURCE_EXHAUSTED));
+            }
+            long latency = baseLatencyMillis * millis * Math.max(capacity, inFlight) / capacity;
+            return new Write(permit, now, now + latency, null);
+        }
+
+
+        private static class Write {
+
+            private final WriteThrottle.Permit permit;
+            private final long startedAt;
+            private final long completesAt;
+            private final ApiException error;
+
+            private Write(WriteThrottle.Permit permit, long startedAt, long completesAt, ApiException error) {
+                this.permit = permit;
+                this.startedAt = startedAt;
+                this.completesAt = completesAt;
+                this.error = error;
+            }
+
+        }
+
+
+        /**
+         * What completed during one run.
+         */
+        private static class Window {
+
+            private final Duration duration;
+            private long writes;
+            private long errors;
+            private long latencyMillis;
+            private long maxLatencyMillis;
+            private int minInFlightLimit = Integer.MAX_VALUE;
+            private int maxInFlightLimit = 0;
+
+            private Window(Duration duration) {
+                this.duration = duration;
+            }
+
+            double throughput() {
+                return writes / (duration.toMillis() / 1000.0);
+            }
+
+            double meanLatencyMillis() {
+                return (double) latencyMillis / writes;
+            }
+
+            long maxLatencyMillis() {
+                return maxLatencyMillis;
+            }
+
+        }
+
+    }
+
+
+}
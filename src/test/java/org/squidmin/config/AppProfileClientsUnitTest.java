@@ -0,0 +1,34 @@
+package org.squidmin.config;
+
+
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+
+public class AppProfileClientsUnitTest {
+
+
+    @Test
+    public void create_givenAppProfiles_createOneClientPerProfile() throws Exception {
+        RoutingProperties properties = new RoutingProperties();
+        properties.getAppProfiles().put(AppProfileClients.INTERACTIVE, "serving");
+        properties.getAppProfiles().put(AppProfileClients.BATCH, "analytics");
+        properties.getOperations().put("read-filter", AppProfileClients.BATCH);
+        BigtableDataSettings settings = BigtableDataSettings.newBuilderForEmulator(8086)
+            .setProjectId("project")
+            .setInstanceId("instance")
+            .build();
+
+        try (AppProfileClients clients = AppProfileClients.create(settings, properties)) {
+            Assertions.assertNotSame(clients.get(AppProfileClients.INTERACTIVE), clients.get(AppProfileClients.BATCH));
+            Assertions.assertSame(clients.get(AppProfileClients.INTERACTIVE), clients.forOperation("read-by-row-key"));
+            Assertions.assertSame(clients.get(AppProfileClients.BATCH), clients.forOperation("read-table"));
+            Assertions.assertSame(clients.get(AppProfileClients.BATCH), clients.forOperation("read-filter"));
+            Assertions.assertNull(clients.get(AppProfileClients.WRITE));
+            Assertions.assertNull(clients.forOperation("write"));
+        }
+    }
+
+
+}
@@ -0,0 +1,69 @@
+package org.squidmin.config;
+
+
+import com.google.api.gax.grpc.InstantiatingGrpcChannelProvider;
+import com.google.api.gax.retrying.RetrySettings;
+import com.google.cloud.bigtable.data.v2.BigtableDataSettings;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+
+public class DataSettingsFactoryUnitTest {
+
+
+    @Test
+    public void create_givenTransportProperties_applyToSettings() {
+        TransportProperties properties = new TransportProperties();
+        properties.setChannelPoolSize(8);
+        properties.setKeepAliveTime(Duration.ofSeconds(30));
+        TransportProperties.Rpc readRows = new TransportProperties.Rpc();
+        readRows.setTotalTimeout(Duration.ofSeconds(5));
+        readRows.setMaxAttempts(3);
+        properties.getRpc().put("read-rows", readRows);
+        TransportProperties.Rpc mutateRow = new TransportProperties.Rpc();
+        mutateRow.setInitialRpcTimeout(Duration.ofMillis(250));
+        properties.getRpc().put("mutate-row", mutateRow);
+
+        BigtableDataSettings settings = DataSettingsFactory.create("project", "instance", properties);
+
+        InstantiatingGrpcChannelProvider channelProvider =
+            (InstantiatingGrpcChannelProvider) settings.getStubSettings().getTransportChannelProvider();
+        Assertions.assertEquals(8, channelProvider.toBuilder().getPoolSize());
+        Assertions.assertEquals(org.threeten.bp.Duration.ofSeconds(30), channelProvider.getKeepAliveTime());
+        RetrySettings readRowsRetries = settings.getStubSettings().readRowsSettings().getRetrySettings();
+        Assertions.assertEquals(org.threeten.bp.Duration.ofSeconds(5), readRowsRetries.getTotalTimeout());
+        Assertions.assertEquals(3, readRowsRetries.getMaxAttempts());
+        Assertions.assertEquals(
+            org.threeten.bp.Duration.ofMillis(250),
+            settings.getStubSettings().mutateRowSettings().getRetrySettings().getInitialRpcTimeout()
+        );
+        Assertions.assertFalse(settings.isRefreshingChannel());
+    }
+
+    @Test
+    public void create_givenWarmUp_primeConfiguredTables() {
+        TransportProperties properties = new TransportProperties();
+        properties.getWarmUp().setEnabled(true);
+        properties.getWarmUp().setTableIds(Arrays.asList("table_a", "table_b"));
+
+        BigtableDataSettings.Builder settings = DataSettingsFactory.builder("project", "instance", properties);
+
+        Assertions.assertTrue(settings.isRefreshingChannel());
+        Assertions.assertEquals(Arrays.asList("table_a", "table_b"), settings.getPrimingTableIds());
+    }
+
+    @Test
+    public void create_givenUnknownRpc_throwIllegalArgumentException() {
+        TransportProperties properties = new TransportProperties();
+        properties.getRpc().put("read-everything", new TransportProperties.Rpc());
+
+        Assertions.assertThrows(
+            IllegalArgumentException.class, () -> DataSettingsFactory.create("project", "instance", properties)
+        );
+    }
+
+
+}
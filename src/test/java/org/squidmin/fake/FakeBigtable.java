@@ -0,0 +1,433 @@
+package org.squidmin.fake;
+
+
+import com.google.bigtable.admin.v2.ColumnFamily;
+import com.google.bigtable.admin.v2.CreateTableRequest;
+import com.google.bigtable.admin.v2.DeleteTableRequest;
+import com.google.bigtable.admin.v2.DropRowRangeRequest;
+import com.google.bigtable.admin.v2.GetTableRequest;
+import com.google.bigtable.admin.v2.ListTablesRequest;
+import com.google.bigtable.admin.v2.ListTablesResponse;
+import com.google.bigtable.admin.v2.ModifyColumnFamiliesRequest;
+import com.google.bigtable.admin.v2.Table;
+import com.google.bigtable.v2.BigtableGrpc;
+import com.google.bigtable.v2.CheckAndMutateRowRequest;
+import com.google.bigtable.v2.CheckAndMutateRowResponse;
+import com.google.bigtable.v2.Cell;
+import com.google.bigtable.v2.Column;
+import com.google.bigtable.v2.Family;
+import com.google.bigtable.v2.MutateRowRequest;
+import com.google.bigtable.v2.MutateRowResponse;
+import com.google.bigtable.v2.MutateRowsRequest;
+import com.google.bigtable.v2.MutateRowsResponse;
+import com.google.bigtable.v2.ReadModifyWriteRowRequest;
+import com.google.bigtable.v2.ReadModifyWriteRowResponse;
+import com.google.bigtable.v2.ReadRowsRequest;
+import com.google.bigtable.v2.ReadRowsResponse;
+import com.google.bigtable.v2.Row;
+import com.google.bigtable.v2.SampleRowKeysRequest;
+import com.google.bigtable.v2.SampleRowKeysResponse;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.BytesValue;
+import com.google.protobuf.Empty;
+import com.google.protobuf.Message;
+import com.google.protobuf.StringValue;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.protobuf.ProtoUtils;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.ServerCalls;
+import io.grpc.stub.StreamObserver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * In-memory Bigtable served over gRPC on a local port, for tests that need real client behaviour without the
+ * emulator or a GCP project. Point a client at it with {@code bigtable.transport.emulator-host} set to
+ * {@link #getEmulatorHost()}.
+ * <p>
+ * The data API supports reads with row sets, limits and filters, single and batched mutations, check-and-mutate,
+ * read-modify-write and row key sampling. The table admin API supports creating (with split keys), getting, listing
+ * and deleting tables, modifying column families and dropping row ranges. Instances and projects are not modelled:
+ * tables are looked up by the last segment of their name.
+ */
+@Slf4j
+public class FakeBigtable implements AutoCloseable {
+
+
+    private static final String adminService = "google.bigtable.admin.v2.BigtableTableAdmin";
+
+    /**
+     * Approximate payload after which a {@code ReadRows} response is sent and a new one started.
+     */
+    private static final int maxResponseBytes = 1 << 20;
+
+    private final Map<String, FakeTable> tables = new ConcurrentHashMap<>();
+    private final Server server;
+    private volatile int sampleInterval = 100;
+
+
+    private FakeBigtable() {
+        server = NettyServerBuilder.forAddress(new InetSocketAddress("localhost", 0))
+            .addService(new DataService())
+            .addService(adminService())
+            .build();
+    }
+
+    /**
+     * Starts a fake on a free local port.
+     */
+    public static FakeBigtable start() throws IOException {
+        FakeBigtable fake = new FakeBigtable();
+        fake.server.start();
+        log.info("Started fake Bigtable on {}.", fake.getEmulatorHost());
+        return fake;
+    }
+
+    /**
+     * {@code host:port} to connect to, as expected by {@code bigtable.transport.emulator-host}.
+     */
+    public String getEmulatorHost() {
+        return "localhost:" + server.getPort();
+    }
+
+    /**
+     * Creates a table directly, bypassing the admin API.
+     */
+    public FakeTable createTable(String tableId, String... families) {
+        Map<String, ColumnFamily> columnFamilies = new ConcurrentHashMap<>();
+        for (String family : families) {
+            columnFamilies.put(family, ColumnFamily.getDefaultInstance());
+        }
+        FakeTable table = new FakeTable(tableId, columnFamilies, Collections.emptyList());
+        if (null != tables.putIfAbsent(tableId, table)) {
+            throw new IllegalStateException("Table " + tableId + " already exists.");
+        }
+        return table;
+    }
+
+    /**
+     * Returns a table, or {@code null} if it does not exist.
+     */
+    public FakeTable getTable(String tableId) {
+        return tables.get(tableId);
+    }
+
+    public Collection<FakeTable> getTables() {
+        return Collections.unmodifiableCollection(tables.values());
+    }
+
+    /**
+     * Sets how many rows apart the keys returned by {@code SampleRowKeys} are. Defaults to 100.
+     */
+    public void setSampleInterval(int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("sampleInterval must be positive.");
+        }
+        this.sampleInterval = sampleInterval;
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        server.shutdownNow();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private FakeTable table(String tableName) {
+        String tableId = tableName.substring(tableName.lastIndexOf('/') + 1);
+        FakeTable table = tables.get(tableId);
+        if (null == table) {
+            throw Status.NOT_FOUND.withDescription("Table not found: " + tableName).asRuntimeException();
+        }
+        return table;
+    }
+
+    private static Table toProto(String parent, FakeTable table) {
+        return Table.newBuilder()
+            .setName(parent + "/tables/" + table.getTableId())
+            .putAllColumnFamilies(table.getFamilies())
+            .build();
+    }
+
+    private static String parent(String tableName) {
+        return tableName.substring(0, Math.max(0, tableName.lastIndexOf("/tables/")));
+    }
+
+
+    private class DataService extends BigtableGrpc.BigtableImplBase {
+
+        @Override
+        public void readRows(ReadRowsRequest request, StreamObserver<ReadRowsResponse> observer) {
+            ServerCallStreamObserver<ReadRowsResponse> call = (ServerCallStreamObserver<ReadRowsResponse>) observer;
+            ReadRowsResponse.Builder response = ReadRowsResponse.newBuilder();
+            int[] responseBytes = new int[1];
+            try {
+                table(request.getTableName()).read(
+                    request.getRows(), request.getFilter(), request.getRowsLimit(), (rowKey, cells) -> {
+                        if (call.isCancelled()) {
+                            return false;
+                        }
+                        responseBytes[0] += addChunks(response, rowKey, cells);
+                        if (responseBytes[0] >= maxResponseBytes) {
+                            observer.onNext(response.build());
+                            response.clear();
+                            responseBytes[0] = 0;
+                        }
+                        return true;
+                    }
+                );
+                if (response.getChunksCount() > 0) {
+                    observer.onNext(response.build());
+                }
+                observer.onCompleted();
+            } catch (StatusRuntimeException e) {
+                observer.onError(e);
+            }
+        }
+
+        /**
+         * Adds one chunk per cell. The row key goes on the first chunk, the family whenever it changes and the
+         * qualifier whenever the column changes; the last chunk commits the row.
+         */
+        private int addChunks(ReadRowsResponse.Builder response, ByteString rowKey, List<FakeTable.Cell> cells) {
+            int bytes = rowKey.size();
+            FakeTable.Cell previous = null;
+            for (int i = 0; i < cells.size(); i++) {
+                FakeTable.Cell cell = cells.get(i);
+                ReadRowsResponse.CellChunk.Builder chunk = ReadRowsResponse.CellChunk.newBuilder()
+                    .setTimestampMicros(cell.timestamp)
+                    .addAllLabels(cell.labels)
+                    .setValue(cell.value);
+                if (null == previous) {
+                    chunk.setRowKey(rowKey);
+                }
+                if (null == previous || !previous.family.equals(cell.family)) {
+                    chunk.setFamilyName(StringValue.of(cell.family));
+                    chunk.setQualifier(BytesValue.of(cell.qualifier));
+                } else if (!previous.qualifier.equals(cell.qualifier)) {
+                    chunk.setQualifier(BytesValue.of(cell.qualifier));
+                }
+                if (i == cells.size() - 1) {
+                    chunk.setCommitRow(true);
+                }
+                response.addChunks(chunk);
+                bytes += cell.qualifier.size() + cell.value.size();
+                previous = cell;
+            }
+            return bytes;
+        }
+
+        @Override
+        public void sampleRowKeys(SampleRowKeysRequest request, StreamObserver<SampleRowKeysResponse> observer) {
+            try {
+                for (Map.Entry<ByteString, Long> sample : table(request.getTableName()).sampleRowKeys(sampleInterval)) {
+                    observer.onNext(SampleRowKeysResponse.newBuilder()
+                        .setRowKey(sample.getKey())
+                        .setOffsetBytes(sample.getValue())
+                        .build());
+                }
+                observer.onCompleted();
+            } catch (StatusRuntimeException e) {
+                observer.onError(e);
+            }
+        }
+
+        @Override
+        public void mutateRow(MutateRowRequest request, StreamObserver<MutateRowResponse> observer) {
+            unary(observer, () -> {
+                table(request.getTableName()).mutate(request.getRowKey(), request.getMutationsList());
+                return MutateRowResponse.getDefaultInstance();
+            });
+        }
+
+        /**
+         * Applies each entry on its own and reports a status per entry, so a bad entry does not fail the batch.
+         */
+        @Override
+        public void mutateRows(MutateRowsRequest request, StreamObserver<MutateRowsResponse> observer) {
+            FakeTable table;
+            try {
+                table = table(request.getTableName());
+            } catch (StatusRuntimeException e) {
+                observer.onError(e);
+                return;
+            }
+            MutateRowsResponse.Builder response = MutateRowsResponse.newBuilder();
+            for (int i = 0; i < request.getEntriesCount(); i++) {
+                MutateRowsRequest.Entry entry = request.getEntries(i);
+                Status status = Status.OK;
+                try {
+                    table.mutate(entry.getRowKey(), entry.getMutationsList());
+                } catch (StatusRuntimeException e) {
+                    status = e.getStatus();
+                }
+                response.addEntries(MutateRowsResponse.Entry.newBuilder()
+                    .setIndex(i)
+                    .setStatus(com.google.rpc.Status.newBuilder()
+                        .setCode(status.getCode().value())
+                        .setMessage(null == status.getDescription() ? "" : status.getDescription())));
+            }
+            observer.onNext(response.build());
+            observer.onCompleted();
+        }
+
+        @Override
+        public void checkAndMutateRow(
+            CheckAndMutateRowRequest request,
+            StreamObserver<CheckAndMutateRowResponse> observer) {
+            unary(observer, () -> CheckAndMutateRowResponse.newBuilder()
+                .setPredicateMatched(table(request.getTableName()).checkAndMutate(
+                    request.getRowKey(),
+                    request.getPredicateFilter(),
+                    request.getTrueMutationsList(),
+                    request.getFalseMutationsList()))
+                .build());
+        }
+
+        /**
+         * Returns only the cells written by the rules, grouped by family and column.
+         */
+        @Override
+        public void readModifyWriteRow(
+            ReadModifyWriteRowRequest request,
+            StreamObserver<ReadModifyWriteRowResponse> observer) {
+            unary(observer, () -> {
+                List<FakeTable.Cell> written = new ArrayList<>(
+                    table(request.getTableName()).readModifyWrite(request.getRowKey(), request.getRulesList())
+                );
+                written.sort(FakeTable.Cell.order);
+                Row.Builder row = Row.newBuilder().setKey(request.getRowKey());
+                Family.Builder family = null;
+                Column.Builder column = null;
+                for (FakeTable.Cell cell : written) {
+                    if (null == family || !family.getName().equals(cell.family)) {
+                        family = row.addFamiliesBuilder().setName(cell.family);
+                        column = null;
+                    }
+                    if (null == column || !column.getQualifier().equals(cell.qualifier)) {
+                        column = family.addColumnsBuilder().setQualifier(cell.qualifier);
+                    }
+                    column.addCells(Cell.newBuilder().setTimestampMicros(cell.timestamp).setValue(cell.value));
+                }
+                return ReadModifyWriteRowResponse.newBuilder().setRow(row).build();
+            });
+        }
+
+    }
+
+
+    private ServerServiceDefinition adminService() {
+        return ServerServiceDefinition.builder(adminService)
+            .addMethod(adminMethod("CreateTable", CreateTableRequest.getDefaultInstance(), Table.getDefaultInstance()),
+                ServerCalls.asyncUnaryCall((request, observer) -> unary(observer, () -> createTable(request))))
+            .addMethod(adminMethod("GetTable", GetTableRequest.getDefaultInstance(), Table.getDefaultInstance()),
+                ServerCalls.asyncUnaryCall((request, observer) -> unary(observer,
+                    () -> toProto(parent(request.getName()), table(request.getName())))))
+            .addMethod(adminMethod("ListTables",
+                    ListTablesRequest.getDefaultInstance(), ListTablesResponse.getDefaultInstance()),
+                ServerCalls.asyncUnaryCall((request, observer) -> unary(observer, () -> {
+                    ListTablesResponse.Builder response = ListTablesResponse.newBuilder();
+                    tables.values().forEach(table -> response.addTables(toProto(request.getParent(), table)));
+                    return response.build();
+                })))
+            .addMethod(adminMethod("DeleteTable", DeleteTableRequest.getDefaultInstance(), Empty.getDefaultInstance()),
+                ServerCalls.asyncUnaryCall((request, observer) -> unary(observer, () -> {
+                    tables.remove(table(request.getName()).getTableId());
+                    return Empty.getDefaultInstance();
+                })))
+            .addMethod(adminMethod("DropRowRange",
+                    DropRowRangeRequest.getDefaultInstance(), Empty.getDefaultInstance()),
+                ServerCalls.asyncUnaryCall((request, observer) -> unary(observer, () -> {
+                    table(request.getName()).dropRows(request.getRowKeyPrefix());
+                    return Empty.getDefaultInstance();
+                })))
+            .addMethod(adminMethod("ModifyColumnFamilies",
+                    ModifyColumnFamiliesRequest.getDefaultInstance(), Table.getDefaultInstance()),
+                ServerCalls.asyncUnaryCall((request, observer) -> unary(observer, () -> modifyFamilies(request))))
+            .build();
+    }
+
+    private Table createTable(CreateTableRequest request) {
+        List<ByteString> splitKeys = new ArrayList<>();
+        request.getInitialSplitsList().forEach(split -> splitKeys.add(split.getKey()));
+        FakeTable table = new FakeTable(
+            request.getTableId(), request.getTable().getColumnFamiliesMap(), splitKeys
+        );
+        if (null != tables.putIfAbsent(request.getTableId(), table)) {
+            throw Status.ALREADY_EXISTS
+                .withDescription("Table already exists: " + request.getTableId())
+                .asRuntimeException();
+        }
+        return toProto(request.getParent(), table);
+    }
+
+    private Table modifyFamilies(ModifyColumnFamiliesRequest request) {
+        FakeTable table = table(request.getName());
+        for (ModifyColumnFamiliesRequest.Modification modification : request.getModificationsList()) {
+            switch (modification.getModCase()) {
+                case CREATE:
+                    table.getFamilies().put(modification.getId(), modification.getCreate());
+                    break;
+                case UPDATE:
+                    table.getFamilies().put(modification.getId(), modification.getUpdate());
+                    break;
+                case DROP:
+                    table.getFamilies().remove(modification.getId());
+                    break;
+                default:
+            }
+        }
+        return toProto(parent(request.getName()), table);
+    }
+
+    private static <Q extends Message, R extends Message> MethodDescriptor<Q, R> adminMethod(
+        String name,
+        Q request,
+        R response) {
+        return MethodDescriptor.<Q, R>newBuilder()
+            .setType(MethodDescriptor.MethodType.UNARY)
+            .setFullMethodName(MethodDescriptor.generateFullMethodName(adminService, name))
+            .setRequestMarshaller(ProtoUtils.marshaller(request))
+            .setResponseMarshaller(ProtoUtils.marshaller(response))
+            .build();
+    }
+
+    private static <R> void unary(StreamObserver<R> observer, UnaryCall<R> call) {
+        R response;
+        try {
+            response = call.call();
+        } catch (StatusRuntimeException e) {
+            observer.onError(e);
+            return;
+        } catch (RuntimeException e) {
+            observer.onError(Status.INTERNAL.withDescription(e.toString()).withCause(e).asRuntimeException());
+            return;
+        }
+        observer.onNext(response);
+        observer.onCompleted();
+    }
+
+
+    @FunctionalInterface
+    private interface UnaryCall<R> {
+
+        R call();
+
+    }
+
+
+}
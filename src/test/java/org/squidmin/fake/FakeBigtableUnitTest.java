@@ -0,0 +1,148 @@
+package org.squidmin.fake;
+
+
+import com.google.api.gax.rpc.NotFoundException;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.ConditionalRowMutation;
+import com.google.cloud.bigtable.data.v2.models.Mutation;
+import com.google.cloud.bigtable.data.v2.models.ReadModifyWriteRow;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.common.primitives.Longs;
+import com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.client.BigtableClient;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.BulkWriterProperties;
+import org.squidmin.config.TransportProperties;
+import org.squidmin.model.BigtableRowWrapper;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKey;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+
+
+public class FakeBigtableUnitTest {
+
+
+    private static final String tableId = "fake_table";
+
+    private FakeBigtable fake;
+
+    private BigtableClientManager clientManager;
+
+    private BigtableClient btClient;
+
+
+    @Before
+    public void before() throws Exception {
+        fake = FakeBigtable.start();
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName("cf");
+        mapping.setQualifierNames(new LinkedHashSet<>(Arrays.asList("val_1", "val_2", "val_3")));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        TransportProperties transportProperties = new TransportProperties();
+        transportProperties.setEmulatorHost(fake.getEmulatorHost());
+        clientManager = new BigtableClientManager(
+            "project", "instance", btStructure, new BulkWriterProperties(), transportProperties
+        );
+        btClient = new BigtableClient(tableId, clientManager);
+        btClient.createTable();
+    }
+
+    @After
+    public void after() throws Exception {
+        btClient.close();
+        fake.close();
+    }
+
+
+    @Test
+    public void bigtableClient_givenFake_writeAndReadThroughRealClient() throws Exception {
+        btClient.writeSingleRow(dto("bear", "1", "old"));
+        btClient.writeRows(Arrays.asList(dto("bear", "2", "newer"), dto("owl", "1", "other")));
+        btClient.writeSingleRow(dto("bear", "3", "newest"));
+
+        Row row = btClient.readByRowKey(tableId, "bear#1#c");
+        Assertions.assertEquals("old", row.getCells("cf", "val_1").get(0).getValue().toStringUtf8());
+        Assertions.assertNull(btClient.readByRowKey(tableId, "missing#1#c"));
+
+        Assertions.assertEquals(Arrays.asList("bear#1#c", "bear#2#c", "bear#3#c"),
+            keys(btClient.readByRowKeyPrefix(tableId, "bear")));
+        Assertions.assertEquals(Arrays.asList("bear#2#c", "owl#1#c"),
+            keys(btClient.readFilter(tableId, FILTERS.value().regex("newer|other"))));
+
+        BigtableRowWrapper latest = btClient.readFilterLatest(tableId, FILTERS.key().regex("bear.*"));
+        Assertions.assertEquals("bear#3#c", latest.getValue().getKey().toStringUtf8());
+        Assertions.assertEquals(4, fake.getTable(tableId).getRowCount());
+    }
+
+    @Test
+    public void bigtableClient_givenFake_flushBulkWritesAndPreSplitLikeSource() throws Exception {
+        for (int i = 0; i < 40; i++) {
+            btClient.writeAsync(dto(String.format("k%02d", i), "b", "v" + i));
+        }
+        btClient.flush();
+        Assertions.assertEquals(40, fake.getTable(tableId).getRowCount());
+
+        fake.setSampleInterval(10);
+        btClient.createTableLike("copy_table", tableId, 3);
+
+        List<String> splits = fake.getTable("copy_table").getSplitKeys().stream()
+            .map(ByteString::toStringUtf8)
+            .collect(Collectors.toList());
+        Assertions.assertEquals(Arrays.asList("k10#b#c", "k20#b#c", "k30#b#c"), splits);
+        Assertions.assertEquals(Arrays.asList("cf"), Arrays.asList(
+            fake.getTable("copy_table").getFamilies().keySet().toArray()
+        ));
+    }
+
+    @Test
+    public void dataClient_givenFake_applyAtomicMutationsAndRejectUnknownFamilies() {
+        BigtableDataClient dataClient = clientManager.getDataClient();
+        dataClient.mutateRow(RowMutation.create(tableId, "row").setCell("cf", "flag", "on"));
+
+        Boolean matched = dataClient.checkAndMutateRow(ConditionalRowMutation.create(tableId, "row")
+            .condition(FILTERS.chain()
+                .filter(FILTERS.qualifier().exactMatch("flag"))
+                .filter(FILTERS.value().exactMatch("on")))
+            .then(Mutation.create().setCell("cf", "state", "matched"))
+            .otherwise(Mutation.create().setCell("cf", "state", "missed")));
+        Row counted = dataClient.readModifyWriteRow(ReadModifyWriteRow.create(tableId, "row")
+            .increment("cf", "count", 2)
+            .increment("cf", "count", 3));
+
+        Assertions.assertTrue(matched);
+        Assertions.assertEquals(
+            5, Longs.fromByteArray(counted.getCells("cf", "count").get(0).getValue().toByteArray())
+        );
+        Assertions.assertEquals("matched",
+            dataClient.readRow(tableId, "row").getCells("cf", "state").get(0).getValue().toStringUtf8());
+        Assertions.assertThrows(NotFoundException.class,
+            () -> dataClient.mutateRow(RowMutation.create(tableId, "row").setCell("missing", "q", "v")));
+    }
+
+    private static DtoExample dto(String segmentA, String segmentB, String fieldA) {
+        return DtoExample.builder()
+            .rowKey(RowKey.builder().segmentA(segmentA).segmentB(segmentB).segmentC("c").build())
+            .fieldA(fieldA)
+            .build();
+    }
+
+    private static List<String> keys(List<Row> rows) {
+        return rows.stream().map(row -> row.getKey().toStringUtf8()).collect(Collectors.toList());
+    }
+
+
+}
@@ -0,0 +1,196 @@
+package org.squidmin.fake;
+
+
+import com.google.bigtable.v2.ColumnRange;
+import com.google.bigtable.v2.RowFilter;
+import com.google.bigtable.v2.ValueRange;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+
+/**
+ * Evaluates a {@link RowFilter} against the cells of one row. Regular expressions are matched with
+ * {@link Pattern} against the bytes read as Latin-1, which agrees with RE2 for the expressions used here.
+ * {@code sink} is not supported and fails with {@code UNIMPLEMENTED}.
+ */
+final class FakeRowFilter {
+
+
+    private static final Comparator<ByteString> byteOrder = ByteString.unsignedLexicographicalComparator();
+
+
+    private FakeRowFilter() { }
+
+    static List<FakeTable.Cell> apply(RowFilter filter, ByteString rowKey, List<FakeTable.Cell> cells) {
+        switch (filter.getFilterCase()) {
+            case FILTER_NOT_SET:
+            case PASS_ALL_FILTER:
+                return cells;
+            case BLOCK_ALL_FILTER:
+                return Collections.emptyList();
+            case CHAIN:
+                List<FakeTable.Cell> chained = cells;
+                for (RowFilter link : filter.getChain().getFiltersList()) {
+                    chained = apply(link, rowKey, chained);
+                    if (chained.isEmpty()) {
+                        break;
+                    }
+                }
+                return chained;
+            case INTERLEAVE:
+                List<FakeTable.Cell> interleaved = new ArrayList<>();
+                for (RowFilter branch : filter.getInterleave().getFiltersList()) {
+                    interleaved.addAll(apply(branch, rowKey, cells));
+                }
+                interleaved.sort(FakeTable.Cell.order);
+                return interleaved;
+            case CONDITION:
+                RowFilter.Condition condition = filter.getCondition();
+                boolean matched = !apply(condition.getPredicateFilter(), rowKey, cells).isEmpty();
+                if (matched) {
+                    return condition.hasTrueFilter()
+                        ? apply(condition.getTrueFilter(), rowKey, cells) : Collections.emptyList();
+                }
+                return condition.hasFalseFilter()
+                    ? apply(condition.getFalseFilter(), rowKey, cells) : Collections.emptyList();
+            case ROW_KEY_REGEX_FILTER:
+                return matches(filter.getRowKeyRegexFilter(), rowKey) ? cells : Collections.emptyList();
+            case ROW_SAMPLE_FILTER:
+                return ThreadLocalRandom.current().nextDouble() < filter.getRowSampleFilter()
+                    ? cells : Collections.emptyList();
+            case FAMILY_NAME_REGEX_FILTER:
+                Pattern family = Pattern.compile(filter.getFamilyNameRegexFilter());
+                return select(cells, cell -> family.matcher(cell.family).matches());
+            case COLUMN_QUALIFIER_REGEX_FILTER:
+                ByteString qualifierRegex = filter.getColumnQualifierRegexFilter();
+                return select(cells, cell -> matches(qualifierRegex, cell.qualifier));
+            case COLUMN_RANGE_FILTER:
+                return select(cells, cell -> inRange(filter.getColumnRangeFilter(), cell));
+            case TIMESTAMP_RANGE_FILTER:
+                return select(cells, cell -> FakeTable.inRange(filter.getTimestampRangeFilter(), cell.timestamp));
+            case VALUE_REGEX_FILTER:
+                ByteString valueRegex = filter.getValueRegexFilter();
+                return select(cells, cell -> matches(valueRegex, cell.value));
+            case VALUE_RANGE_FILTER:
+                return select(cells, cell -> inRange(filter.getValueRangeFilter(), cell.value));
+            case CELLS_PER_ROW_OFFSET_FILTER:
+                int offset = Math.min(filter.getCellsPerRowOffsetFilter(), cells.size());
+                return cells.subList(offset, cells.size());
+            case CELLS_PER_ROW_LIMIT_FILTER:
+                return cells.subList(0, Math.min(filter.getCellsPerRowLimitFilter(), cells.size()));
+            case CELLS_PER_COLUMN_LIMIT_FILTER:
+                return limitPerColumn(cells, filter.getCellsPerColumnLimitFilter());
+            case STRIP_VALUE_TRANSFORMER:
+                List<FakeTable.Cell> stripped = new ArrayList<>(cells.size());
+                cells.forEach(cell -> stripped.add(cell.withValue(ByteString.EMPTY)));
+                return stripped;
+            case APPLY_LABEL_TRANSFORMER:
+                List<FakeTable.Cell> labelled = new ArrayList<>(cells.size());
+                cells.forEach(cell -> labelled.add(cell.withLabel(filter.getApplyLabelTransformer())));
+                return labelled;
+            default:
+                throw Status.UNIMPLEMENTED
+                    .withDescription("The fake does not support " + filter.getFilterCase() + " filters")
+                    .asRuntimeException();
+        }
+    }
+
+    private static List<FakeTable.Cell> select(List<FakeTable.Cell> cells, Predicate<FakeTable.Cell> predicate) {
+        List<FakeTable.Cell> selected = new ArrayList<>();
+        for (FakeTable.Cell cell : cells) {
+            if (predicate.test(cell)) {
+                selected.add(cell);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Cells are sorted by column and newest first, so the first {@code limit} cells of each column are kept.
+     */
+    private static List<FakeTable.Cell> limitPerColumn(List<FakeTable.Cell> cells, int limit) {
+        List<FakeTable.Cell> limited = new ArrayList<>();
+        FakeTable.Cell column = null;
+        int count = 0;
+        for (FakeTable.Cell cell : cells) {
+            if (null == column || !column.family.equals(cell.family) || !column.qualifier.equals(cell.qualifier)) {
+                column = cell;
+                count = 0;
+            }
+            if (count++ < limit) {
+                limited.add(cell);
+            }
+        }
+        return limited;
+    }
+
+    private static boolean matches(ByteString regex, ByteString bytes) {
+        return Pattern.compile(latin1(regex), Pattern.DOTALL).matcher(latin1(bytes)).matches();
+    }
+
+    private static String latin1(ByteString bytes) {
+        return bytes.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean inRange(ColumnRange range, FakeTable.Cell cell) {
+        if (!range.getFamilyName().equals(cell.family)) {
+            return false;
+        }
+        switch (range.getStartQualifierCase()) {
+            case START_QUALIFIER_CLOSED:
+                if (byteOrder.compare(cell.qualifier, range.getStartQualifierClosed()) < 0) {
+                    return false;
+                }
+                break;
+            case START_QUALIFIER_OPEN:
+                if (byteOrder.compare(cell.qualifier, range.getStartQualifierOpen()) <= 0) {
+                    return false;
+                }
+                break;
+            default:
+        }
+        switch (range.getEndQualifierCase()) {
+            case END_QUALIFIER_CLOSED:
+                return byteOrder.compare(cell.qualifier, range.getEndQualifierClosed()) <= 0;
+            case END_QUALIFIER_OPEN:
+                return byteOrder.compare(cell.qualifier, range.getEndQualifierOpen()) < 0;
+            default:
+                return true;
+        }
+    }
+
+    private static boolean inRange(ValueRange range, ByteString value) {
+        switch (range.getStartValueCase()) {
+            case START_VALUE_CLOSED:
+                if (byteOrder.compare(value, range.getStartValueClosed()) < 0) {
+                    return false;
+                }
+                break;
+            case START_VALUE_OPEN:
+                if (byteOrder.compare(value, range.getStartValueOpen()) <= 0) {
+                    return false;
+                }
+                break;
+            default:
+        }
+        switch (range.getEndValueCase()) {
+            case END_VALUE_CLOSED:
+                return byteOrder.compare(value, range.getEndValueClosed()) <= 0;
+            case END_VALUE_OPEN:
+                return byteOrder.compare(value, range.getEndValueOpen()) < 0;
+            default:
+                return true;
+        }
+    }
+
+
+}
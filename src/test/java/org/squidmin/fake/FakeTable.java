@@ -0,0 +1,414 @@
+package org.squidmin.fake;
+
+
+import com.google.bigtable.admin.v2.ColumnFamily;
+import com.google.bigtable.v2.Mutation;
+import com.google.bigtable.v2.ReadModifyWriteRule;
+import com.google.bigtable.v2.RowFilter;
+import com.google.bigtable.v2.RowRange;
+import com.google.bigtable.v2.RowSet;
+import com.google.bigtable.v2.TimestampRange;
+import com.google.common.primitives.Longs;
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+
+/**
+ * Rows of one fake table, sorted by key in a {@link ConcurrentSkipListMap}. Each row is an immutable, sorted list of
+ * versioned cells that is replaced on every mutation, so reads never block and always see whole mutations. Mutations
+ * of the same row are serialized by a striped lock.
+ * <p>
+ * Garbage collection policies are stored but not applied.
+ */
+public class FakeTable {
+
+
+    private static final Comparator<ByteString> byteOrder = ByteString.unsignedLexicographicalComparator();
+
+    private static final int lockStripes = 64;
+
+    private final String tableId;
+    private final Map<String, ColumnFamily> families = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<ByteString, List<Cell>> rows = new ConcurrentSkipListMap<>(byteOrder);
+    private final ReentrantLock[] locks = new ReentrantLock[lockStripes];
+    private final List<ByteString> splitKeys;
+
+
+    FakeTable(String tableId, Map<String, ColumnFamily> families, List<ByteString> splitKeys) {
+        this.tableId = tableId;
+        this.families.putAll(families);
+        this.splitKeys = Collections.unmodifiableList(new ArrayList<>(splitKeys));
+        for (int i = 0; i < lockStripes; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public String getTableId() { return tableId; }
+
+    public Map<String, ColumnFamily> getFamilies() { return families; }
+
+    /**
+     * Split keys the table was created with. The fake keeps all rows in one map regardless.
+     */
+    public List<ByteString> getSplitKeys() { return splitKeys; }
+
+    public int getRowCount() { return rows.size(); }
+
+    /**
+     * Cells of a row, sorted by family, qualifier and newest timestamp first, or an empty list.
+     */
+    public List<Cell> getRow(ByteString rowKey) {
+        return rows.getOrDefault(rowKey, Collections.emptyList());
+    }
+
+    /**
+     * Applies the mutations of one row atomically.
+     *
+     * @throws io.grpc.StatusRuntimeException {@code NOT_FOUND} if a mutation names an unknown column family
+     */
+    public void mutate(ByteString rowKey, List<Mutation> mutations) {
+        checkFamilies(mutations);
+        update(rowKey, cells -> {
+            for (Mutation mutation : mutations) {
+                apply(cells, mutation);
+            }
+        });
+    }
+
+    /**
+     * Applies {@code trueMutations} if the filtered row has any cells and {@code falseMutations} otherwise, under the
+     * row's lock.
+     *
+     * @return whether the predicate matched
+     */
+    public boolean checkAndMutate(
+        ByteString rowKey,
+        RowFilter predicate,
+        List<Mutation> trueMutations,
+        List<Mutation> falseMutations) {
+        checkFamilies(trueMutations);
+        checkFamilies(falseMutations);
+        boolean[] matched = new boolean[1];
+        update(rowKey, cells -> {
+            matched[0] = !FakeRowFilter.apply(predicate, rowKey, cells).isEmpty();
+            for (Mutation mutation : matched[0] ? trueMutations : falseMutations) {
+                apply(cells, mutation);
+            }
+        });
+        return matched[0];
+    }
+
+    /**
+     * Applies append and increment rules atomically and returns the cells they wrote.
+     */
+    public List<Cell> readModifyWrite(ByteString rowKey, List<ReadModifyWriteRule> rules) {
+        List<Cell> written = new ArrayList<>();
+        update(rowKey, cells -> {
+            written.clear();
+            long now = nowMicros();
+            for (ReadModifyWriteRule rule : rules) {
+                if (!families.containsKey(rule.getFamilyName())) {
+                    throw Status.NOT_FOUND
+                        .withDescription("Column family " + rule.getFamilyName() + " does not exist")
+                        .asRuntimeException();
+                }
+                Cell latest = null;
+                for (Cell cell : cells) {
+                    if (cell.family.equals(rule.getFamilyName()) && cell.qualifier.equals(rule.getColumnQualifier())) {
+                        latest = cell;
+                        break;
+                    }
+                }
+                ByteString value;
+                if (ReadModifyWriteRule.RuleCase.APPEND_VALUE == rule.getRuleCase()) {
+                    value = null == latest ? rule.getAppendValue() : latest.value.concat(rule.getAppendValue());
+                } else {
+                    if (null != latest && 8 != latest.value.size()) {
+                        throw Status.FAILED_PRECONDITION
+                            .withDescription("Cannot increment a value that is not a 64-bit integer")
+                            .asRuntimeException();
+                    }
+                    long current = null == latest ? 0 : Longs.fromByteArray(latest.value.toByteArray());
+                    value = ByteString.copyFrom(Longs.toByteArray(current + rule.getIncrementAmount()));
+                }
+                long timestamp = null == latest ? now : Math.max(now, latest.timestamp + 1);
+                Cell cell = new Cell(rule.getFamilyName(), rule.getColumnQualifier(), timestamp, value);
+                insert(cells, cell);
+                written.add(cell);
+            }
+        });
+        return written;
+    }
+
+    /**
+     * Visits the rows of a row set in key order, after the filter, skipping rows left without cells.
+     *
+     * @param limit maximum number of rows to visit, 0 for no limit
+     */
+    public void read(RowSet rowSet, RowFilter filter, long limit, RowVisitor visitor) {
+        long visited = 0;
+        ByteString last = null;
+        for (RowRange range : ranges(rowSet)) {
+            for (Map.Entry<ByteString, List<Cell>> row : subMap(range).entrySet()) {
+                if (null != last && byteOrder.compare(row.getKey(), last) <= 0) {
+                    continue;
+                }
+                last = row.getKey();
+                List<Cell> cells = FakeRowFilter.apply(filter, row.getKey(), row.getValue());
+                if (cells.isEmpty()) {
+                    continue;
+                }
+                if (!visitor.visit(row.getKey(), cells) || (limit > 0 && ++visited >= limit)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Row keys about every {@code interval} rows, each with the approximate number of bytes before it, ending with
+     * the empty key and the size of the table, like {@code SampleRowKeys}.
+     */
+    public List<Map.Entry<ByteString, Long>> sampleRowKeys(int interval) {
+        List<Map.Entry<ByteString, Long>> samples = new ArrayList<>();
+        long offset = 0;
+        long count = 0;
+        for (Map.Entry<ByteString, List<Cell>> row : rows.entrySet()) {
+            if (count > 0 && 0 == count % interval) {
+                samples.add(Map.entry(row.getKey(), offset));
+            }
+            count++;
+            offset += row.getKey().size();
+            for (Cell cell : row.getValue()) {
+                offset += cell.qualifier.size() + cell.value.size();
+            }
+        }
+        samples.add(Map.entry(ByteString.EMPTY, offset));
+        return samples;
+    }
+
+    /**
+     * Deletes every row, or every row whose key starts with {@code prefix} when it is not empty.
+     */
+    public void dropRows(ByteString prefix) {
+        if (prefix.isEmpty()) {
+            rows.clear();
+        } else {
+            rows.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    private void update(ByteString rowKey, Consumer<List<Cell>> change) {
+        ReentrantLock lock = locks[Math.floorMod(rowKey.hashCode(), lockStripes)];
+        lock.lock();
+        try {
+            List<Cell> cells = new ArrayList<>(rows.getOrDefault(rowKey, Collections.emptyList()));
+            change.accept(cells);
+            if (cells.isEmpty()) {
+                rows.remove(rowKey);
+            } else {
+                rows.put(rowKey, Collections.unmodifiableList(cells));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkFamilies(List<Mutation> mutations) {
+        for (Mutation mutation : mutations) {
+            String family = familyOf(mutation);
+            if (null != family && !families.containsKey(family)) {
+                throw Status.NOT_FOUND
+                    .withDescription("Column family " + family + " does not exist in table " + tableId)
+                    .asRuntimeException();
+            }
+        }
+    }
+
+    private static String familyOf(Mutation mutation) {
+        switch (mutation.getMutationCase()) {
+            case SET_CELL:
+                return mutation.getSetCell().getFamilyName();
+            case DELETE_FROM_COLUMN:
+                return mutation.getDeleteFromColumn().getFamilyName();
+            case DELETE_FROM_FAMILY:
+                return mutation.getDeleteFromFamily().getFamilyName();
+            default:
+                return null;
+        }
+    }
+
+    private static void apply(List<Cell> cells, Mutation mutation) {
+        switch (mutation.getMutationCase()) {
+            case SET_CELL:
+                Mutation.SetCell setCell = mutation.getSetCell();
+                long timestamp = -1 == setCell.getTimestampMicros() ? nowMicros() : setCell.getTimestampMicros();
+                insert(cells, new Cell(
+                    setCell.getFamilyName(), setCell.getColumnQualifier(), timestamp, setCell.getValue()
+                ));
+                break;
+            case DELETE_FROM_COLUMN:
+                Mutation.DeleteFromColumn column = mutation.getDeleteFromColumn();
+                cells.removeIf(cell -> cell.family.equals(column.getFamilyName())
+                    && cell.qualifier.equals(column.getColumnQualifier())
+                    && inRange(column.getTimeRange(), cell.timestamp));
+                break;
+            case DELETE_FROM_FAMILY:
+                cells.removeIf(cell -> cell.family.equals(mutation.getDeleteFromFamily().getFamilyName()));
+                break;
+            case DELETE_FROM_ROW:
+                cells.clear();
+                break;
+            default:
+                throw Status.INVALID_ARGUMENT.withDescription("Mutation is not set").asRuntimeException();
+        }
+    }
+
+    /**
+     * Inserts a cell in order, replacing a cell with the same column and timestamp.
+     */
+    private static void insert(List<Cell> cells, Cell cell) {
+        int index = Collections.binarySearch(cells, cell, Cell.order);
+        if (index >= 0) {
+            cells.set(index, cell);
+        } else {
+            cells.add(-index - 1, cell);
+        }
+    }
+
+    static boolean inRange(TimestampRange range, long timestamp) {
+        return timestamp >= range.getStartTimestampMicros()
+            && (0 == range.getEndTimestampMicros() || timestamp < range.getEndTimestampMicros());
+    }
+
+    private static long nowMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+
+    /**
+     * The ranges of a row set, each row key as a closed single-key range, sorted by start key. An empty row set
+     * is the whole table.
+     */
+    private static List<RowRange> ranges(RowSet rowSet) {
+        List<RowRange> ranges = new ArrayList<>(rowSet.getRowRangesList());
+        for (ByteString rowKey : rowSet.getRowKeysList()) {
+            ranges.add(RowRange.newBuilder().setStartKeyClosed(rowKey).setEndKeyClosed(rowKey).build());
+        }
+        if (ranges.isEmpty()) {
+            ranges.add(RowRange.getDefaultInstance());
+        }
+        ranges.sort(Comparator.comparing(FakeTable::startKey, byteOrder));
+        return ranges;
+    }
+
+    private static ByteString startKey(RowRange range) {
+        switch (range.getStartKeyCase()) {
+            case START_KEY_CLOSED:
+                return range.getStartKeyClosed();
+            case START_KEY_OPEN:
+                return range.getStartKeyOpen();
+            default:
+                return ByteString.EMPTY;
+        }
+    }
+
+    private NavigableMap<ByteString, List<Cell>> subMap(RowRange range) {
+        NavigableMap<ByteString, List<Cell>> subMap = rows;
+        switch (range.getStartKeyCase()) {
+            case START_KEY_CLOSED:
+                subMap = subMap.tailMap(range.getStartKeyClosed(), true);
+                break;
+            case START_KEY_OPEN:
+                subMap = subMap.tailMap(range.getStartKeyOpen(), false);
+                break;
+            default:
+        }
+        switch (range.getEndKeyCase()) {
+            case END_KEY_CLOSED:
+                subMap = subMap.headMap(range.getEndKeyClosed(), true);
+                break;
+            case END_KEY_OPEN:
+                if (!range.getEndKeyOpen().isEmpty()) {
+                    subMap = subMap.headMap(range.getEndKeyOpen(), false);
+                }
+                break;
+            default:
+        }
+        return subMap;
+    }
+
+
+    public interface RowVisitor {
+
+        /**
+         * Receives a row; returns {@code false} to stop reading.
+         */
+        boolean visit(ByteString rowKey, List<Cell> cells);
+
+    }
+
+
+    /**
+     * An immutable cell version.
+     */
+    public static class Cell {
+
+        static final Comparator<Cell> order = Comparator
+            .comparing((Cell cell) -> cell.family)
+            .thenComparing(cell -> cell.qualifier, byteOrder)
+            .thenComparing(Comparator.comparingLong((Cell cell) -> cell.timestamp).reversed());
+
+        final String family;
+        final ByteString qualifier;
+        final long timestamp;
+        final ByteString value;
+        final List<String> labels;
+
+        Cell(String family, ByteString qualifier, long timestamp, ByteString value) {
+            this(family, qualifier, timestamp, value, Collections.emptyList());
+        }
+
+        Cell(String family, ByteString qualifier, long timestamp, ByteString value, List<String> labels) {
+            this.family = family;
+            this.qualifier = qualifier;
+            this.timestamp = timestamp;
+            this.value = value;
+            this.labels = labels;
+        }
+
+        Cell withValue(ByteString value) {
+            return new Cell(family, qualifier, timestamp, value, labels);
+        }
+
+        Cell withLabel(String label) {
+            List<String> labels = new ArrayList<>(this.labels);
+            labels.add(label);
+            return new Cell(family, qualifier, timestamp, value, Collections.unmodifiableList(labels));
+        }
+
+        public String getFamily() { return family; }
+
+        public ByteString getQualifier() { return qualifier; }
+
+        public long getTimestamp() { return timestamp; }
+
+        public ByteString getValue() { return value; }
+
+        public List<String> getLabels() { return labels; }
+
+    }
+
+
+}
@@ -0,0 +1,174 @@
+package org.squidmin.model;
+
+
+import com.google.cloud.bigtable.data.v2.models.Range;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+public class RowKeyCodecUnitTest {
+
+
+    private static final Comparator<ByteString> byteOrder = ByteString.unsignedLexicographicalComparator();
+
+    private static final Comparator<RowKey> segmentOrder = Comparator
+        .comparing(RowKey::getSegmentA)
+        .thenComparing(RowKey::getSegmentB)
+        .thenComparing(rowKey -> Long.parseLong(rowKey.getSegmentC()));
+
+    private final RowKeyCodec codec = RowKeyCodec.ordered(Arrays.asList(
+        segment(RowKeyFormat.SegmentType.STRING, 0),
+        segment(RowKeyFormat.SegmentType.FIXED, 4),
+        segment(RowKeyFormat.SegmentType.LONG, 0)
+    ));
+
+
+    @Test
+    public void encode_givenOrderedCodec_preserveSegmentOrder() {
+        List<RowKey> keys = Arrays.asList(
+            new RowKey("a", "x", "-5"),
+            new RowKey("a", "x", "3"),
+            new RowKey("a", "y", "-100"),
+            new RowKey("a\u0000", "x", "0"),
+            new RowKey("a#b", "x", "0"),
+            new RowKey("ab", "x", "0"),
+            new RowKey("b", "x", "0")
+        );
+
+        List<RowKey> byEncoding = keys.stream()
+            .sorted(Comparator.comparing(rowKey -> rowKey.toByteString(codec), byteOrder))
+            .collect(Collectors.toList());
+
+        Assertions.assertEquals(keys.stream().sorted(segmentOrder).collect(Collectors.toList()), byEncoding);
+    }
+
+    @Test
+    public void decode_givenEncodedKey_returnOriginalKey() {
+        for (RowKey rowKey : Arrays.asList(new RowKey("a\u0000#", "xy", "-42"), new RowKey("", "wxyz", "0"))) {
+            Assertions.assertEquals(rowKey, codec.decode(rowKey.toByteString(codec)));
+        }
+        RowKey delimited = new RowKey("a", "b", "c#d");
+        Assertions.assertEquals(delimited, RowKeyCodec.delimited().decode(delimited.toByteString(RowKeyCodec.delimited())));
+    }
+
+    @Test
+    public void toByteString_givenSameCodec_reuseCachedEncodingUntilSegmentChanges() {
+        RowKey rowKey = new RowKey("a", "b", "1");
+
+        ByteString first = rowKey.toByteString(codec);
+        Assertions.assertSame(first, rowKey.toByteString(codec));
+
+        rowKey.setSegmentC("2");
+        Assertions.assertNotEquals(first, rowKey.toByteString(codec));
+        Assertions.assertEquals(ByteString.copyFromUtf8("a#b#2"), rowKey.toByteString(RowKeyCodec.delimited()));
+    }
+
+    @Test
+    public void prefixRange_givenOrderedCodec_excludeLongerStringSegments() {
+        ByteStringRange range = codec.prefixRange("a");
+
+        ByteString matching = new RowKey("a", "x", "1").toByteString(codec);
+        ByteString longer = new RowKey("ab", "x", "1").toByteString(codec);
+        Assertions.assertTrue(byteOrder.compare(range.getStart(), matching) <= 0);
+        Assertions.assertTrue(byteOrder.compare(matching, range.getEnd()) < 0);
+        Assertions.assertTrue(byteOrder.compare(longer, range.getEnd()) >= 0);
+    }
+
+    @Test
+    public void encode_givenFixedSegmentTooLong_throwIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new RowKey("a", "toolong", "1").toByteString(codec));
+    }
+
+    @Test
+    public void encode_givenSaltedCodec_prefixDeterministicBucketAndDecode() {
+        RowKeyCodec salted = RowKeyCodec.salted(RowKeyCodec.delimited(), 16);
+        RowKey rowKey = new RowKey("1700000000", "b", "c");
+
+        ByteString stored = rowKey.toByteString(salted);
+
+        Assertions.assertEquals(stored, new RowKey("1700000000", "b", "c").toByteString(salted));
+        Assertions.assertTrue(stored.toStringUtf8().matches("[0-9a-f]{2}#1700000000#b#c"));
+        Assertions.assertEquals(ByteString.copyFromUtf8("1700000000#b#c"), salted.unsalted(stored));
+        Assertions.assertEquals(rowKey, salted.decode(stored));
+    }
+
+    @Test
+    public void prefixRanges_givenSaltedCodec_coverEveryBucket() {
+        RowKeyCodec salted = RowKeyCodec.salted(codec, 4);
+
+        List<ByteStringRange> ranges = salted.prefixRanges("a");
+
+        Assertions.assertEquals(4, ranges.size());
+        for (int i = 0; i < 20; i++) {
+            ByteString stored = new RowKey("a", "x", Integer.toString(i)).toByteString(salted);
+            Assertions.assertEquals(1, ranges.stream().filter(range -> contains(range, stored)).count());
+            Assertions.assertTrue(ranges.stream().noneMatch(
+                range -> contains(range, new RowKey("ab", "x", "1").toByteString(salted))
+            ));
+        }
+    }
+
+    @Test
+    public void ranges_givenSaltedCodec_coverLogicalRangeInEveryBucket() {
+        RowKeyCodec salted = RowKeyCodec.salted(codec, 4);
+
+        List<ByteStringRange> ranges = salted.ranges(new RowKey("a", "x", "5"), new RowKey("a", "x", "15"));
+
+        Assertions.assertEquals(4, ranges.size());
+        for (int i = 0; i < 20; i++) {
+            ByteString stored = new RowKey("a", "x", Integer.toString(i)).toByteString(salted);
+            long matches = ranges.stream().filter(range -> contains(range, stored)).count();
+            Assertions.assertEquals(i >= 5 && i < 15 ? 1 : 0, matches, "key " + i);
+        }
+    }
+
+    @Test
+    public void splitKeys_givenUnsaltedCodec_returnOrderedDistinctKeys() {
+        List<ByteString> splits = codec.splitKeys(15);
+
+        Assertions.assertEquals(15, splits.size());
+        Assertions.assertEquals(splits.stream().sorted(byteOrder).distinct().collect(Collectors.toList()), splits);
+        Assertions.assertEquals(0x10, splits.get(0).byteAt(0) & 0xFF);
+        Assertions.assertTrue(RowKeyCodec.delimited().splitKeys(3).stream()
+            .allMatch(key -> key.byteAt(0) >= 0x20 && key.byteAt(0) <= 0x7E));
+    }
+
+    @Test
+    public void splitKeys_givenSaltedCodec_splitAtBucketsThenWithinBuckets() {
+        RowKeyCodec salted = RowKeyCodec.salted(codec, 4);
+
+        Assertions.assertEquals(
+            Arrays.asList(ByteString.copyFrom(new byte[]{2})),
+            salted.splitKeys(1)
+        );
+        List<ByteString> splits = salted.splitKeys(7);
+        Assertions.assertEquals(7, splits.size());
+        Assertions.assertEquals(splits.stream().sorted(byteOrder).collect(Collectors.toList()), splits);
+        for (int bucket = 1; bucket < 4; bucket++) {
+            Assertions.assertTrue(splits.contains(ByteString.copyFrom(new byte[]{(byte) bucket})));
+        }
+        Assertions.assertEquals(4, splits.stream().filter(key -> 3 == key.size()).count());
+    }
+
+    private static boolean contains(ByteStringRange range, ByteString key) {
+        return byteOrder.compare(range.getStart(), key) <= 0
+            && (Range.BoundType.UNBOUNDED == range.getEndBound()
+                || byteOrder.compare(key, range.getEnd()) < 0);
+    }
+
+    private static RowKeyFormat.Segment segment(RowKeyFormat.SegmentType type, int width) {
+        RowKeyFormat.Segment segment = new RowKeyFormat.Segment();
+        segment.setType(type);
+        segment.setWidth(width);
+        return segment;
+    }
+
+
+}
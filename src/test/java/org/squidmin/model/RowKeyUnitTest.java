@@ -0,0 +1,48 @@
+package org.squidmin.model;
+
+
+import com.google.cloud.bigtable.data.v2.models.Range;
+import com.google.cloud.bigtable.data.v2.models.Range.ByteStringRange;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+
+public class RowKeyUnitTest {
+
+
+    @Test
+    public void prefixRange_givenSegmentA_coverOnlyKeysWithThatSegment() {
+        ByteStringRange range = RowKey.prefixRange("a");
+
+        Assertions.assertEquals(Range.BoundType.CLOSED, range.getStartBound());
+        Assertions.assertEquals("a#", range.getStart().toStringUtf8());
+        Assertions.assertEquals(Range.BoundType.OPEN, range.getEndBound());
+        Assertions.assertEquals("a$", range.getEnd().toStringUtf8());
+        Assertions.assertTrue("ab#b#c".compareTo(range.getEnd().toStringUtf8()) > 0);
+    }
+
+    @Test
+    public void prefixRange_givenSegmentAAndB_includeBothDelimiters() {
+        ByteStringRange range = RowKey.prefixRange("a", "b");
+
+        Assertions.assertEquals("a#b#", range.getStart().toStringUtf8());
+        Assertions.assertEquals("a#b$", range.getEnd().toStringUtf8());
+    }
+
+    @Test
+    public void prefixRange_givenSegmentWithDelimiter_throwIllegalArgumentException() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RowKey.prefixRange("a#b"));
+    }
+
+    @Test
+    public void range_givenTwoKeys_returnHalfOpenRange() {
+        ByteStringRange range = RowKey.range(new RowKey("a", "b", "c"), new RowKey("a", "b", "f"));
+
+        Assertions.assertEquals(Range.BoundType.CLOSED, range.getStartBound());
+        Assertions.assertEquals("a#b#c", range.getStart().toStringUtf8());
+        Assertions.assertEquals(Range.BoundType.OPEN, range.getEndBound());
+        Assertions.assertEquals("a#b#f", range.getEnd().toStringUtf8());
+    }
+
+
+}
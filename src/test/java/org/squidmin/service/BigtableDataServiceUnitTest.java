@@ -0,0 +1,156 @@
+package org.squidmin.service;
+
+
+import com.google.api.core.SettableApiFuture;
+import com.google.api.gax.rpc.ResponseObserver;
+import com.google.api.gax.rpc.StreamController;
+import com.google.cloud.bigtable.data.v2.BigtableDataClient;
+import com.google.cloud.bigtable.data.v2.models.Query;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowMutation;
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.client.BigtableClient;
+import org.squidmin.client.BigtableTables;
+import org.squidmin.client.WriteThrottle;
+import org.squidmin.config.BigtableClientManager;
+import org.squidmin.config.CacheProperties;
+import org.squidmin.config.DataServiceProperties;
+import org.squidmin.config.ReadProperties;
+import org.squidmin.config.TablesProperties;
+import org.squidmin.config.WriteThrottleProperties;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableDataServiceUnitTest {
+
+
+    private static final String tableId = "service_table";
+
+    private BigtableDataClient dataClient;
+
+    private BigtableClientManager clientManager;
+
+    private BigtableDataService service;
+
+
+    @Before
+    public void before() {
+        dataClient = mock(BigtableDataClient.class);
+        clientManager = mock(BigtableClientManager.class);
+        when(clientManager.getDataClient()).thenReturn(dataClient);
+        BigtableClient btClient = new BigtableClient(tableId, clientManager, new ReadProperties(), new CacheProperties());
+        service = new BigtableDataService(
+            btClient, new BigtableTables(btClient, new TablesProperties()), new DataServiceProperties()
+        );
+    }
+
+
+    @Test
+    public void readRow_givenCancelledFuture_cancelRpc() throws Exception {
+        SettableApiFuture<Row> rpc = SettableApiFuture.create();
+        when(dataClient.readRowAsync(tableId, "key")).thenReturn(rpc);
+
+        CompletableFuture<Row> row = service.readRow(tableId, "key");
+        Assertions.assertFalse(row.isDone());
+        row.cancel(true);
+
+        Assertions.assertTrue(rpc.isCancelled());
+
+        SettableApiFuture<Row> next = SettableApiFuture.create();
+        when(dataClient.readRowAsync(tableId, "other")).thenReturn(next);
+        CompletableFuture<Row> other = service.readRow(tableId, "other");
+        next.set(Row.create(ByteString.copyFromUtf8("other"), Collections.emptyList()));
+        Assertions.assertEquals("other", other.get(1, TimeUnit.SECONDS).getKey().toStringUtf8());
+    }
+
+    @Test
+    public void readRow_givenDeadline_failWithTimeoutAndCancelRpc() {
+        SettableApiFuture<Row> rpc = SettableApiFuture.create();
+        when(dataClient.readRowAsync(tableId, "key")).thenReturn(rpc);
+
+        CompletableFuture<Row> row = service.readRow(tableId, "key", Duration.ofMillis(50));
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> row.get(5, TimeUnit.SECONDS));
+        Assertions.assertTrue(e.getCause() instanceof TimeoutException);
+        Assertions.assertTrue(rpc.isCancelled());
+    }
+
+    @Test
+    public void readRow_givenCompletionBeforeDeadline_cancelDeadlineTimer() throws Exception {
+        SettableApiFuture<Row> rpc = SettableApiFuture.create();
+        when(dataClient.readRowAsync(tableId, "key")).thenReturn(rpc);
+        int pending = BigtableDataService.getPendingDeadlines();
+
+        CompletableFuture<Row> row = service.readRow(tableId, "key", Duration.ofHours(1));
+        Assertions.assertEquals(pending + 1, BigtableDataService.getPendingDeadlines());
+        rpc.set(null);
+
+        Assertions.assertNull(row.get(1, TimeUnit.SECONDS));
+        Assertions.assertEquals(pending, BigtableDataService.getPendingDeadlines());
+    }
+
+    @Test
+    public void write_givenThrottleAtLimit_returnWithoutBlockingAndStartOnRelease() throws Exception {
+        WriteThrottleProperties throttleProperties = new WriteThrottleProperties();
+        throttleProperties.setInitialInFlight(1);
+        WriteThrottle throttle = new WriteThrottle(throttleProperties);
+        WriteThrottle.Permit held = throttle.acquire(1);
+        when(clientManager.getWriteThrottle()).thenReturn(throttle);
+        RowMutation mutation = RowMutation.create(tableId, "key").setCell("cf", "q", "v");
+        SettableApiFuture<Void> rpc = SettableApiFuture.create();
+        when(dataClient.mutateRowAsync(mutation)).thenReturn(rpc);
+
+        CompletableFuture<Void> write = service.write("key", mutation);
+
+        Assertions.assertFalse(write.isDone());
+        verify(dataClient, never()).mutateRowAsync(any(RowMutation.class));
+        throttle.release(held, null);
+        verify(dataClient, timeout(1000)).mutateRowAsync(mutation);
+        rpc.set(null);
+        write.get(1, TimeUnit.SECONDS);
+        Assertions.assertEquals(0, throttle.getInFlight());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void scan_givenFailingConsumer_cancelStream() {
+        StreamController controller = mock(StreamController.class);
+        doAnswer(invocation -> {
+            ResponseObserver<Row> observer = invocation.getArgument(1);
+            observer.onStart(controller);
+            for (int i = 0; i < 3; i++) {
+                observer.onResponse(Row.create(ByteString.copyFromUtf8("key" + i), Collections.emptyList()));
+            }
+            return null;
+        }).when(dataClient).readRowsAsync(any(Query.class), any(ResponseObserver.class));
+
+        CompletableFuture<Long> scan = service.scan(Query.create(tableId), row -> {
+            if (row.getKey().toStringUtf8().equals("key1")) {
+                throw new IllegalStateException("consumer failed");
+            }
+        });
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, scan::get);
+        Assertions.assertTrue(e.getCause() instanceof IllegalStateException);
+        verify(controller).cancel();
+    }
+
+
+}
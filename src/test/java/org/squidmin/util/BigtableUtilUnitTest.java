@@ -0,0 +1,166 @@
+package org.squidmin.util;
+
+
+import com.google.api.gax.rpc.ServerStream;
+import com.google.bigtable.v2.Mutation.SetCell;
+import com.google.cloud.bigtable.data.v2.internal.RequestContext;
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.fixture.BigtableTestFixture;
+import org.squidmin.model.BigtableRowWrapper;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.FamilyToQualifierMapping;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class BigtableUtilUnitTest {
+
+
+    private List<Row> rows;
+
+
+    @Before
+    public void before() {
+        rows = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            rows.add(row("segmentA#segmentB#" + i, BigtableTestFixture.timestamp + i));
+        }
+    }
+
+
+    @Test
+    public void stream_givenEarlyClose_cancelServerStream() {
+        ServerStream<Row> rowStream = mock(ServerStream.class);
+        when(rowStream.iterator()).thenReturn(rows.iterator());
+
+        List<Row> firstRows;
+        try (Stream<Row> stream = BigtableUtil.stream(rowStream)) {
+            firstRows = stream.limit(2).collect(Collectors.toList());
+        }
+
+        Assertions.assertEquals(2, firstRows.size());
+        verify(rowStream).cancel();
+    }
+
+    @Test
+    public void echo_givenServerStream_returnAllRows() {
+        ServerStream<Row> rowStream = mock(ServerStream.class);
+        when(rowStream.iterator()).thenReturn(rows.iterator());
+
+        Assertions.assertEquals(rows, BigtableUtil.echo(rowStream, 0));
+    }
+
+    @Test
+    public void stream_givenNullServerStream_returnEmptyStream() {
+        Assertions.assertEquals(0, BigtableUtil.stream(null).count());
+    }
+
+    @Test
+    public void getLatestRow_givenNewestRowNotLast_returnNewestRow() {
+        List<Row> unordered = new ArrayList<>();
+        unordered.add(row("a", 10));
+        unordered.add(row("b", 30));
+        unordered.add(row("c", 20));
+        unordered.add(row("d", 25));
+
+        BigtableRowWrapper latest = BigtableUtil.getLatestRow(unordered);
+
+        Assertions.assertEquals(1, latest.getIndex());
+        Assertions.assertEquals("b", latest.getValue().getKey().toStringUtf8());
+    }
+
+    @Test
+    public void mergeSorted_givenSortedStreams_returnOneSortedStreamAndCloseSources() {
+        AtomicInteger closed = new AtomicInteger();
+        List<Stream<Integer>> streams = Arrays.asList(
+            Stream.of(1, 4, 7).onClose(closed::incrementAndGet),
+            Stream.<Integer>empty().onClose(closed::incrementAndGet),
+            Stream.of(2, 3, 9).onClose(closed::incrementAndGet)
+        );
+
+        List<Integer> merged;
+        try (Stream<Integer> stream = BigtableUtil.mergeSorted(streams, Comparator.naturalOrder())) {
+            merged = stream.collect(Collectors.toList());
+        }
+
+        Assertions.assertEquals(Arrays.asList(1, 2, 3, 4, 7, 9), merged);
+        Assertions.assertEquals(3, closed.get());
+    }
+
+    @Test
+    public void getRowMutation_givenNullMiddleField_keepLaterValuesOnTheirQualifiers() throws InvalidSchemaException {
+        CompiledSchema schema = CompiledSchema.compile(structure("val_1", "val_2", "val_3"));
+        DtoExample dto = DtoExample.builder().fieldA("A").fieldC("C").build();
+
+        List<SetCell> cells = BigtableUtil.getRowMutation("table", "a#b#c", schema, BigtableUtil.createValuesList(dto))
+            .toProto(RequestContext.create("project", "instance", ""))
+            .getMutationsList().stream()
+            .map(com.google.bigtable.v2.Mutation::getSetCell)
+            .collect(Collectors.toList());
+
+        Assertions.assertEquals(
+            Arrays.asList("val_1", "val_3"),
+            cells.stream().map(cell -> cell.getColumnQualifier().toStringUtf8()).collect(Collectors.toList())
+        );
+        Assertions.assertEquals(
+            Arrays.asList("A", "C"),
+            cells.stream().map(cell -> cell.getValue().toStringUtf8()).collect(Collectors.toList())
+        );
+    }
+
+    @Test
+    public void getRowMutation_givenValueWithoutQualifier_throwInvalidSchemaException() throws InvalidSchemaException {
+        CompiledSchema schema = CompiledSchema.compile(structure("val_1", "val_2"));
+
+        Assertions.assertNotNull(BigtableUtil.getRowMutation("table", "a#b#c", schema, Arrays.asList("A", "B", null)));
+        Assertions.assertThrows(
+            InvalidSchemaException.class,
+            () -> BigtableUtil.getRowMutation("table", "a#b#c", schema, Arrays.asList("A", "B", "C"))
+        );
+    }
+
+    private static Row row(String rowKey, long timestamp) {
+        return Row.create(
+            ByteString.copyFromUtf8(rowKey),
+            Collections.singletonList(
+                RowCell.create(
+                    "test_col_fam",
+                    ByteString.copyFromUtf8("val_1"),
+                    timestamp,
+                    Collections.emptyList(),
+                    ByteString.copyFromUtf8("value_" + rowKey)
+                )
+            )
+        );
+    }
+
+    private static BigtableStructure structure(String... qualifiers) {
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName("test_col_fam");
+        mapping.setQualifierNames(new LinkedHashSet<>(Arrays.asList(qualifiers)));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        return btStructure;
+    }
+
+
+}
@@ -0,0 +1,86 @@
+package org.squidmin.util;
+
+
+import com.google.bigtable.v2.MutateRowsRequest;
+import com.google.bigtable.v2.Mutation.SetCell;
+import com.google.cloud.bigtable.data.v2.internal.RequestContext;
+import com.google.cloud.bigtable.data.v2.models.BulkMutation;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKey;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+public class CompiledSchemaUnitTest {
+
+
+    private static final String family = "test_col_fam";
+
+
+    @Test
+    public void toEntry_givenDto_encodeFieldsInQualifierOrder() throws InvalidSchemaException {
+        CompiledSchema schema = CompiledSchema.compile(structure("val_1", "val_2", "val_3"));
+
+        MutateRowsRequest.Entry entry = schema.toEntry(dto("a", "A", "B", "C"), 1000).toProto();
+
+        Assertions.assertEquals("a#segmentB#segmentC", entry.getRowKey().toStringUtf8());
+        List<SetCell> cells = entry.getMutationsList().stream()
+            .map(com.google.bigtable.v2.Mutation::getSetCell)
+            .collect(Collectors.toList());
+        Assertions.assertEquals(
+            Arrays.asList("val_1", "val_2", "val_3"),
+            cells.stream().map(cell -> cell.getColumnQualifier().toStringUtf8()).collect(Collectors.toList())
+        );
+        Assertions.assertEquals(
+            Arrays.asList("A", "B", "C"),
+            cells.stream().map(cell -> cell.getValue().toStringUtf8()).collect(Collectors.toList())
+        );
+        Assertions.assertTrue(cells.stream().allMatch(cell -> family.equals(cell.getFamilyName())));
+        Assertions.assertTrue(cells.stream().allMatch(cell -> 1000 == cell.getTimestampMicros()));
+    }
+
+    @Test
+    public void toBulkMutation_givenBatch_encodeEveryRowAndSkipNullFields() throws InvalidSchemaException {
+        CompiledSchema schema = CompiledSchema.compile(structure("val_1", "val_2", "val_3"));
+
+        BulkMutation bulkMutation = schema.toBulkMutation("table", Arrays.asList(dto("a", "A", null, "C"), dto("b", "A", "B", "C")));
+        MutateRowsRequest request = bulkMutation.toProto(RequestContext.create("project", "instance", ""));
+
+        Assertions.assertEquals(2, bulkMutation.getEntryCount());
+        Assertions.assertEquals(2, request.getEntries(0).getMutationsCount());
+        Assertions.assertEquals(3, request.getEntries(1).getMutationsCount());
+    }
+
+    @Test
+    public void compile_givenNoColumnFamilies_throwInvalidSchemaException() {
+        Assertions.assertThrows(InvalidSchemaException.class, () -> CompiledSchema.compile(new BigtableStructure()));
+    }
+
+    private static DtoExample dto(String segmentA, String fieldA, String fieldB, String fieldC) {
+        return DtoExample.builder()
+            .rowKey(new RowKey(segmentA, "segmentB", "segmentC"))
+            .fieldA(fieldA)
+            .fieldB(fieldB)
+            .fieldC(fieldC)
+            .build();
+    }
+
+    private static BigtableStructure structure(String... qualifiers) {
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName(family);
+        mapping.setQualifierNames(new LinkedHashSet<>(Arrays.asList(qualifiers)));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        return btStructure;
+    }
+
+
+}
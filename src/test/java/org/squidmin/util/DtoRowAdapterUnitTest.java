@@ -0,0 +1,88 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.RowAdapter;
+import com.google.protobuf.ByteString;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.exception.InvalidSchemaException;
+import org.squidmin.model.BigtableStructure;
+import org.squidmin.model.DtoExample;
+import org.squidmin.model.FamilyToQualifierMapping;
+import org.squidmin.model.RowKey;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+
+public class DtoRowAdapterUnitTest {
+
+
+    private static final String family = "test_col_fam";
+
+    private DtoRowAdapter<DtoExample> adapter;
+
+
+    @Before
+    public void before() throws InvalidSchemaException {
+        adapter = DtoRowAdapter.forDtoExample(structure("val_1", "val_2", "val_3"));
+    }
+
+
+    @Test
+    public void finishRow_givenBoundCells_decodeIntoDto() {
+        RowAdapter.RowBuilder<DtoExample> builder = adapter.createRowBuilder();
+        builder.startRow(ByteString.copyFromUtf8("a#b#c"));
+        cell(builder, family, "val_2", 20, "new_b");
+        cell(builder, family, "val_2", 10, "old_b");
+        cell(builder, "other_fam", "val_1", 20, "ignored");
+        builder.startCell(family, ByteString.copyFromUtf8("val_1"), 20, Collections.emptyList(), 6);
+        builder.cellValue(ByteString.copyFromUtf8("chu"));
+        builder.cellValue(ByteString.copyFromUtf8("nks"));
+        builder.finishCell();
+        DtoExample dto = builder.finishRow();
+
+        Assertions.assertEquals(new RowKey("a", "b", "c"), dto.getRowKey());
+        Assertions.assertEquals("chunks", dto.getFieldA());
+        Assertions.assertEquals("new_b", dto.getFieldB());
+        Assertions.assertNull(dto.getFieldC());
+        Assertions.assertFalse(adapter.isScanMarkerRow(dto));
+        Assertions.assertEquals(ByteString.copyFromUtf8("a#b#c"), adapter.getKey(dto));
+    }
+
+    @Test
+    public void createScanMarkerRow_givenAnyKey_recognizeMarker() {
+        DtoExample marker = adapter.createRowBuilder().createScanMarkerRow(ByteString.copyFromUtf8("not_a_row_key"));
+
+        Assertions.assertTrue(adapter.isScanMarkerRow(marker));
+        Assertions.assertFalse(adapter.isScanMarkerRow(new DtoExample()));
+        Assertions.assertEquals(ByteString.copyFromUtf8("not_a_row_key"), adapter.getKey(marker));
+    }
+
+    @Test
+    public void forDtoExample_givenTooManyQualifiers_throwInvalidSchemaException() {
+        Assertions.assertThrows(
+            InvalidSchemaException.class,
+            () -> DtoRowAdapter.forDtoExample(structure("val_1", "val_2", "val_3", "val_4"))
+        );
+    }
+
+    private static void cell(RowAdapter.RowBuilder<DtoExample> builder, String family, String qualifier, long timestamp, String value) {
+        builder.startCell(family, ByteString.copyFromUtf8(qualifier), timestamp, Collections.emptyList(), value.length());
+        builder.cellValue(ByteString.copyFromUtf8(value));
+        builder.finishCell();
+    }
+
+    private static BigtableStructure structure(String... qualifiers) {
+        FamilyToQualifierMapping mapping = new FamilyToQualifierMapping();
+        mapping.setColumnFamilyName(family);
+        mapping.setQualifierNames(new LinkedHashSet<>(Arrays.asList(qualifiers)));
+        BigtableStructure btStructure = new BigtableStructure();
+        btStructure.getColumnFamilies().add(mapping);
+        return btStructure;
+    }
+
+
+}
@@ -0,0 +1,52 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.Filters.Filter;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+
+import static com.google.cloud.bigtable.data.v2.models.Filters.FILTERS;
+
+
+public class FilterFingerprintUnitTest {
+
+
+    @Test
+    public void of_givenSameShapeWithDifferentValues_returnSameFingerprint() {
+        Filter a = FILTERS.chain().filter(FILTERS.key().regex("a.*")).filter(FILTERS.limit().cellsPerColumn(1));
+        Filter b = FILTERS.chain().filter(FILTERS.key().regex("b#.*")).filter(FILTERS.limit().cellsPerColumn(5));
+
+        Assertions.assertEquals(FilterFingerprint.of(a), FilterFingerprint.of(b));
+        Assertions.assertEquals("chain(row_key_regex, cells_per_column_limit)", FilterFingerprint.shape(a));
+    }
+
+    @Test
+    public void of_givenDifferentShapes_returnDifferentFingerprints() {
+        Filter keyThenLimit = FILTERS.chain().filter(FILTERS.key().regex("a")).filter(FILTERS.limit().cellsPerColumn(1));
+        Filter limitThenKey = FILTERS.chain().filter(FILTERS.limit().cellsPerColumn(1)).filter(FILTERS.key().regex("a"));
+        Filter interleave = FILTERS.interleave().filter(FILTERS.key().regex("a")).filter(FILTERS.limit().cellsPerColumn(1));
+        Filter nested = FILTERS.chain()
+            .filter(FILTERS.chain().filter(FILTERS.key().regex("a")).filter(FILTERS.limit().cellsPerColumn(1)))
+            .filter(FILTERS.limit().cellsPerColumn(1));
+
+        Assertions.assertNotEquals(FilterFingerprint.of(keyThenLimit), FilterFingerprint.of(limitThenKey));
+        Assertions.assertNotEquals(FilterFingerprint.of(keyThenLimit), FilterFingerprint.of(interleave));
+        Assertions.assertNotEquals(FilterFingerprint.of(keyThenLimit), FilterFingerprint.of(nested));
+        Assertions.assertEquals(
+            "chain(chain(row_key_regex, cells_per_column_limit), cells_per_column_limit)", FilterFingerprint.shape(nested)
+        );
+        Assertions.assertNotEquals(FilterFingerprint.NONE, FilterFingerprint.of(FILTERS.pass()));
+        Assertions.assertEquals(FilterFingerprint.NONE, FilterFingerprint.of((Filter) null));
+    }
+
+    @Test
+    public void shape_givenCondition_renderBranches() {
+        Filter condition = FILTERS.condition(FILTERS.value().regex("x"))
+            .then(FILTERS.pass())
+            .otherwise(FILTERS.block());
+
+        Assertions.assertEquals("condition(value_regex ? pass_all : block_all)", FilterFingerprint.shape(condition));
+    }
+
+
+}
@@ -0,0 +1,68 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.squidmin.model.BigtableRowWrapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+
+public class LatestRowReducerUnitTest {
+
+
+    @Test
+    public void getLatestRows_givenK_returnNewestRowsNewestFirst() {
+        LatestRowReducer reducer = new LatestRowReducer(2);
+        reducer.accept(row("a", 10, 40));
+        reducer.accept(row("b", 50));
+        reducer.accept(row("c", 20));
+        reducer.accept(row("d", 30));
+
+        List<BigtableRowWrapper> latest = reducer.getLatestRows();
+
+        Assertions.assertEquals(4, reducer.getCount());
+        Assertions.assertEquals(
+            Arrays.asList("b", "a"),
+            latest.stream().map(wrapper -> wrapper.getValue().getKey().toStringUtf8()).collect(Collectors.toList())
+        );
+        Assertions.assertEquals(Arrays.asList(1, 0), latest.stream().map(BigtableRowWrapper::getIndex).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void getLatest_givenTimestampTie_keepFirstRow() {
+        LatestRowReducer reducer = new LatestRowReducer(1);
+        reducer.accept(row("a", 10));
+        reducer.accept(row("b", 10));
+
+        Assertions.assertEquals("a", reducer.getLatest().getValue().getKey().toStringUtf8());
+    }
+
+    @Test
+    public void getLatest_givenNoRows_returnNull() {
+        Assertions.assertNull(new LatestRowReducer(3).getLatest());
+    }
+
+    private static Row row(String rowKey, long... timestamps) {
+        return Row.create(
+            ByteString.copyFromUtf8(rowKey),
+            Arrays.stream(timestamps)
+                .mapToObj(timestamp -> RowCell.create(
+                    "test_col_fam",
+                    ByteString.copyFromUtf8("col_" + timestamp),
+                    timestamp,
+                    Collections.emptyList(),
+                    ByteString.copyFromUtf8("value")
+                ))
+                .collect(Collectors.toList())
+        );
+    }
+
+
+}
@@ -0,0 +1,122 @@
+package org.squidmin.util;
+
+
+import com.google.cloud.bigtable.data.v2.models.Row;
+import com.google.cloud.bigtable.data.v2.models.RowCell;
+import com.google.protobuf.ByteString;
+import org.junit.Test;
+import org.junit.jupiter.api.Assertions;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.squidmin.config.EchoProperties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+
+public class RowEchoUnitTest {
+
+
+    @Test
+    public void echo_givenLevelDisabled_renderNothing() {
+        Logger logger = mock(Logger.class);
+        RowRenderer renderer = mock(RowRenderer.class);
+        RowEcho rowEcho = new RowEcho(logger, Level.DEBUG, 1, 0, renderer, true);
+
+        List<Row> echoed = rowEcho.echo(rows(5).stream()).collect(Collectors.toList());
+
+        Assertions.assertEquals(5, echoed.size());
+        verifyNoInteractions(renderer);
+        verify(logger, never()).debug(anyString());
+    }
+
+    @Test
+    public void echo_givenSampleRateAndLimit_logSampledRowsUpToLimit() {
+        Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        List<String> renderedKeys = new ArrayList<>();
+        RowEcho rowEcho = new RowEcho(logger, Level.INFO, 3, 2, (row, out) -> {
+            renderedKeys.add(row.getKey().toStringUtf8());
+            out.append(row.getKey().toStringUtf8());
+        }, true);
+
+        try (Stream<Row> rows = rowEcho.echo(rows(10).stream())) {
+            Assertions.assertEquals(10, rows.collect(Collectors.toList()).size());
+        }
+
+        Assertions.assertEquals(Arrays.asList("row0", "row3"), renderedKeys);
+        verify(logger, times(2)).info(anyString());
+    }
+
+    @Test
+    public void echo_givenSingleRowCallsAndSampleRate_logEverySampleRateThCall() {
+        Logger logger = mock(Logger.class);
+        when(logger.isInfoEnabled()).thenReturn(true);
+        List<String> renderedKeys = new ArrayList<>();
+        RowEcho rowEcho = new RowEcho(logger, Level.INFO, 4, 2, (row, out) -> {
+            renderedKeys.add(row.getKey().toStringUtf8());
+            out.append(row.getKey().toStringUtf8());
+        }, true);
+
+        rows(10).forEach(rowEcho::echo);
+        rowEcho.echo((Row) null);
+
+        Assertions.assertEquals(Arrays.asList("row0", "row4", "row8"), renderedKeys);
+        verify(logger, times(3)).info(anyString());
+    }
+
+    @Test
+    public void forSite_givenSiteOverride_applyOverride() {
+        EchoProperties properties = new EchoProperties();
+        EchoProperties.Site site = new EchoProperties.Site();
+        site.setEnabled(false);
+        properties.getSites().put("read-table", site);
+
+        Assertions.assertSame(RowEcho.disabled, RowEcho.forSite(properties, "read-table", new TabularRowRenderer(5)));
+        Assertions.assertNotSame(RowEcho.disabled, RowEcho.forSite(properties, "read-filter", new TabularRowRenderer(5)));
+    }
+
+    @Test
+    public void render_givenCells_alignValuesAfterLongestQualifier() {
+        Row row = Row.create(ByteString.copyFromUtf8("a#b#c"), Arrays.asList(
+            cell("q", "v1"),
+            cell("qualifier", "v2")
+        ));
+        StringBuilder out = new StringBuilder();
+
+        new TabularRowRenderer(9).render(row, out);
+
+        String[] lines = out.toString().split("\n");
+        Assertions.assertEquals(3, lines.length);
+        Assertions.assertTrue(lines[0].contains("Row key: a#b#c"));
+        Assertions.assertEquals(lines[1].indexOf("Value: v1"), lines[2].indexOf("Value: v2"));
+    }
+
+    private static RowCell cell(String qualifier, String value) {
+        return RowCell.create(
+            "cf", ByteString.copyFromUtf8(qualifier), 0, Collections.emptyList(), ByteString.copyFromUtf8(value)
+        );
+    }
+
+    private static List<Row> rows(int count) {
+        List<Row> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(Row.create(ByteString.copyFromUtf8("row" + i), Collections.emptyList()));
+        }
+        return rows;
+    }
+
+
+}